@@ -2,8 +2,10 @@ package com.appyads.services;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.view.View;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 
 /**
@@ -13,17 +15,28 @@ import java.net.URL;
 public class AppyAd {
 
     private static final String TAG = "AppyAd";
+    private static final String[] IN_ANIMATION_NAMES = {"slide_in_from_left", "slide_in_from_right", "slide_in_from_top", "slide_in_from_bottom",
+            "zoom_in_from_left", "zoom_in_from_right", "zoom_in_from_center", "none"};
+    private static final int[] IN_ANIMATIONS = {AppyAdStatic.SLIDE_IN_FROM_LEFT, AppyAdStatic.SLIDE_IN_FROM_RIGHT, AppyAdStatic.SLIDE_IN_FROM_TOP, AppyAdStatic.SLIDE_IN_FROM_BOTTOM,
+            AppyAdStatic.ZOOM_IN_FROM_LEFT, AppyAdStatic.ZOOM_IN_FROM_RIGHT, AppyAdStatic.ZOOM_IN_FROM_CENTER, AppyAdStatic.NO_ANIMATION};
+    private static final String[] OUT_ANIMATION_NAMES = {"slide_out_to_left", "slide_out_to_right", "slide_out_to_top", "slide_out_to_bottom",
+            "zoom_out_to_left", "zoom_out_to_right", "zoom_out_to_center", "none"};
+    private static final int[] OUT_ANIMATIONS = {AppyAdStatic.SLIDE_OUT_TO_LEFT, AppyAdStatic.SLIDE_OUT_TO_RIGHT, AppyAdStatic.SLIDE_OUT_TO_TOP, AppyAdStatic.SLIDE_OUT_TO_BOTTOM,
+            AppyAdStatic.ZOOM_OUT_TO_LEFT, AppyAdStatic.ZOOM_OUT_TO_RIGHT, AppyAdStatic.ZOOM_OUT_TO_CENTER, AppyAdStatic.NO_ANIMATION};
 
     public String mAdID;
+    public String mAdSrc;
 	public String mTitle;
 	public String mLink;
     public boolean mTracking;
 	public Bitmap mAd;
+    public String mCacheKey;
     public int mType;
     public int mAnimationIn;
     public int mAnimationOut;
     public int mAnimationDuration;
     public int mAdDuration;
+    public View mView;
 
     /**
      * This constructor is provided as an alternative signature to define the different properties of the class.
@@ -55,73 +68,196 @@ public class AppyAd {
      * @param addur - A String representation of the number of milliseconds the ad view will be displayed.
      */
     public AppyAd (int atype, String adSrc, String id, String title, String link, String track, String animin, String animout, String animdur, String addur) {
+        this(atype,adSrc,id,title,link,track,animin,animout,animdur,addur,null);
+    }
 
-        int animIn = AppyAdStatic.FADE_IN;
-        int animOut = AppyAdStatic.FADE_OUT;
-        int animDur = AppyAdStatic.NORMAL_ANIMATION_DURATION;
-        int displayDur = AppyAdStatic.NORMAL_AD_DURATION;
+    /**
+     * This constructor sets the main values for all the properties of this object, using the given
+     * {@link AppyAdStore} to load the ad element when it has been stored previously, and to store it
+     * when it has to be downloaded.
+     *
+     * @param atype - An int value representing the type of ad. See the {@link AppyAdStatic} class for more information.
+     * @param adSrc - A String value containing a URL to the ad element
+     * @param id - A String value representing the id of this ad view.
+     * @param title - A String value representing the title of this ad view.
+     * @param link - A String value representing the link the user will be taken to when clicked/tapped.
+     * @param track - A String value representing "true" or "false" for tracking to be on or off for this ad view.
+     * @param animin - A String value representing the animation to use for introducing this ad view.
+     * @param animout - A String value representing the animation to use when this ad view is no longer visible.
+     * @param animdur - A String representation of the number of milliseconds the animations will take to process.
+     * @param addur - A String representation of the number of milliseconds the ad view will be displayed.
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     */
+    public AppyAd (int atype, String adSrc, String id, String title, String link, String track, String animin, String animout, String animdur, String addur, AppyAdStore store) {
+        this(atype,adSrc,id,title,link,track,animin,animout,animdur,addur,store,false);
+    }
 
-        if (addur != null) {
-            try {
-                displayDur = Integer.parseInt(addur);
-                if (displayDur <= 0) displayDur = AppyAdStatic.NORMAL_AD_DURATION;
-            } catch (NumberFormatException nfe) {
-                displayDur = AppyAdStatic.NORMAL_AD_DURATION;
+    /**
+     * This constructor sets the main values for all the properties of this object and optionally defers
+     * loading the ad element, so that a campaign package can be parsed without waiting on the network.
+     * A deferred ad element is loaded later by calling {@link #loadCreative(AppyAdStore) loadCreative}.
+     *
+     * @param atype - An int value representing the type of ad. See the {@link AppyAdStatic} class for more information.
+     * @param adSrc - A String value containing a URL to the ad element
+     * @param id - A String value representing the id of this ad view.
+     * @param title - A String value representing the title of this ad view.
+     * @param link - A String value representing the link the user will be taken to when clicked/tapped.
+     * @param track - A String value representing "true" or "false" for tracking to be on or off for this ad view.
+     * @param animin - A String value representing the animation to use for introducing this ad view.
+     * @param animout - A String value representing the animation to use when this ad view is no longer visible.
+     * @param animdur - A String representation of the number of milliseconds the animations will take to process.
+     * @param addur - A String representation of the number of milliseconds the ad view will be displayed.
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     * @param deferLoad - A boolean value indicating whether or not loading the ad element should be left for later.
+     */
+    AppyAd (int atype, String adSrc, String id, String title, String link, String track, String animin, String animout, String animdur, String addur, AppyAdStore store, boolean deferLoad) {
+
+        int displayDur = parseDuration(addur, AppyAdStatic.NORMAL_AD_DURATION);
+        int animDur = parseDuration(animdur, AppyAdStatic.NORMAL_ANIMATION_DURATION);
+        int animIn = parseAnimation(animin, IN_ANIMATION_NAMES, IN_ANIMATIONS, AppyAdStatic.FADE_IN);
+        int animOut = parseAnimation(animout, OUT_ANIMATION_NAMES, OUT_ANIMATIONS, AppyAdStatic.FADE_OUT);
+
+        mType = atype;
+        mAdSrc = adSrc;
+        mAdID = id;
+		mTitle = title;
+		mLink = link;
+        mTracking = "true".equalsIgnoreCase(track);
+        mAnimationIn = animIn;
+        mAnimationOut = animOut;
+        mAnimationDuration = animDur;
+        mAdDuration = displayDur;
+        if (!deferLoad) loadCreative(store);
+	}
+
+    /**
+     * This method converts an animation attribute of a campaign package into its {@link AppyAdStatic} value.
+     * Names are matched regardless of case, without creating a lower case copy of the attribute.
+     *
+     * @param name - A String value containing the animation attribute (may be null).
+     * @param names - A String array holding the known animation names, in lower case.
+     * @param values - An int array holding the {@link AppyAdStatic} value of each known name.
+     * @param fallback - An int value representing the animation to use when the name is missing or unknown.
+     * @return - An int value representing the animation.
+     */
+    static int parseAnimation(String name, String[] names, int[] values, int fallback) {
+        if (name != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(name)) return (values[i]);
             }
         }
+        return (fallback);
+    }
 
-        if (animdur != null) {
+    /**
+     * This method converts a duration attribute of a campaign package into milliseconds.
+     *
+     * @param duration - A String representation of the number of milliseconds (may be null).
+     * @param fallback - An int value representing the duration to use when the attribute is missing, invalid or not positive.
+     * @return - An int value representing the number of milliseconds.
+     */
+    static int parseDuration(String duration, int fallback) {
+        if (duration == null) return (fallback);
+        try {
+            int value = Integer.parseInt(duration);
+            return ((value > 0) ? value : fallback);
+        } catch (NumberFormatException nfe) {
+            return (fallback);
+        }
+    }
+
+    /**
+     * This method loads the ad element, either from the given {@link AppyAdStore} when it has been stored
+     * previously, or from its URL, in which case it is also saved to the store.
+     *
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     */
+    public void loadCreative(AppyAdStore store) {
+        if ((mAdSrc != null) && !loadCachedCreative(null)) {
             try {
-                animDur = Integer.parseInt(animdur);
-                if (animDur <= 0) animDur = AppyAdStatic.NORMAL_ANIMATION_DURATION;
-            } catch (NumberFormatException nfe) {
-                animDur = AppyAdStatic.NORMAL_ANIMATION_DURATION;
+                decodeCreative(fetchCreative(store));
+            } catch(IOException e) {
+                AppyAdLog.error(TAG, "Unable to load image at {}. {}", mAdSrc, e.getMessage());
+                mAd = null;
             }
         }
+    }
 
-        if (animin != null) {
-            animin = animin.toLowerCase();
-            if (animin.equals("slide_in_from_left")) animIn = AppyAdStatic.SLIDE_IN_FROM_LEFT;
-            else if (animin.equals("slide_in_from_right")) animIn = AppyAdStatic.SLIDE_IN_FROM_RIGHT;
-            else if (animin.equals("slide_in_from_top")) animIn = AppyAdStatic.SLIDE_IN_FROM_TOP;
-            else if (animin.equals("slide_in_from_bottom")) animIn = AppyAdStatic.SLIDE_IN_FROM_BOTTOM;
-            else if (animin.equals("zoom_in_from_left")) animIn = AppyAdStatic.ZOOM_IN_FROM_LEFT;
-            else if (animin.equals("zoom_in_from_right")) animIn = AppyAdStatic.ZOOM_IN_FROM_RIGHT;
-            else if (animin.equals("zoom_in_from_center")) animIn = AppyAdStatic.ZOOM_IN_FROM_CENTER;
-            else if (animin.equals("none")) animIn = AppyAdStatic.NO_ANIMATION;
-        }
+    /**
+     * This method takes the ad element from the {@link AppyAdBitmapCache} when it has already been decoded
+     * at the size the given {@link AppyAdDecoder} object produces.
+     *
+     * @param decoder - The {@link AppyAdDecoder} object the ad element would be decoded with (null for full resolution).
+     * @return - A boolean value indicating whether or not the ad element was found in the cache.
+     */
+    public boolean loadCachedCreative(AppyAdDecoder decoder) {
+        mCacheKey = AppyAdBitmapCache.key(mAdSrc, decoder);
+        Bitmap bm = AppyAdBitmapCache.get(mCacheKey);
+        if (bm == null) return (false);
+        mAd = bm;
+        AppyAdLog.debug(TAG, "Using cached image for {}", mAdSrc);
+        return (true);
+    }
 
-        if (animout != null) {
-            animout = animout.toLowerCase();
-            if (animout.equals("slide_out_to_left")) animOut = AppyAdStatic.SLIDE_OUT_TO_LEFT;
-            else if (animout.equals("slide_out_to_right")) animOut = AppyAdStatic.SLIDE_OUT_TO_RIGHT;
-            else if (animout.equals("slide_out_to_top")) animOut = AppyAdStatic.SLIDE_OUT_TO_TOP;
-            else if (animout.equals("slide_out_to_bottom")) animOut = AppyAdStatic.SLIDE_OUT_TO_BOTTOM;
-            else if (animout.equals("zoom_out_to_left")) animOut = AppyAdStatic.ZOOM_OUT_TO_LEFT;
-            else if (animout.equals("zoom_out_to_right")) animOut = AppyAdStatic.ZOOM_OUT_TO_RIGHT;
-            else if (animout.equals("zoom_out_to_center")) animOut = AppyAdStatic.ZOOM_OUT_TO_CENTER;
-            else if (animout.equals("none")) animOut = AppyAdStatic.NO_ANIMATION;
-        }
+    /**
+     * This method readies the decoded ad element for drawing ahead of the time it is shown.
+     * It may be called from any thread.
+     */
+    public void prepareCreative() {
+        Bitmap bm = (mAd != null) ? mAd : AppyAdBitmapCache.get(mCacheKey);
+        if (bm != null) bm.prepareToDraw();
+    }
 
-        mType = atype;
- 		if (adSrc != null) {
- 		    //mAd = BitmapFactory.decodeFile(adSrc.getAbsolutePath(),new BitmapFactory.Options());
+    /**
+     * This method retrieves the encoded ad element, either from the given {@link AppyAdStore} when it has been
+     * stored previously, or from its URL, in which case it is also saved to the store.
+     *
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     * @return - A byte array holding the encoded ad element, or null if this ad has no source.
+     * @throws IOException - If the ad element could not be downloaded.
+     */
+    public byte[] fetchCreative(AppyAdStore store) throws IOException {
+        if (mAdSrc == null) return (null);
+        byte[] data = (store != null) ? store.readCreative(mAdSrc) : null;
+        if (data == null) {
+            long start = AppyAdScheduler.now();
+            InputStream in = new URL(mAdSrc).openConnection().getInputStream();
             try {
-                URL url = new URL(adSrc);
-                mAd = BitmapFactory.decodeStream(url.openConnection().getInputStream());
-            } catch(IOException e) {
-                System.out.println(e);
-                AppyAdService.getInstance().errorOut(TAG,"Unable to load image at "+adSrc);
-                mAd = null;
+                data = AppyAdStore.readFully(in);
+            } finally {
+                in.close();
             }
+            AppyAdService.getInstance().getMetrics().recordSince(AppyAdMetrics.CREATIVE_DOWNLOAD, start);
+            if (store != null) store.writeCreative(mAdSrc, data);
         }
-        mAdID = id;
-		mTitle = title;
-		mLink = link;
-        mTracking = ((track != null) && (track.toLowerCase().equals("true")));
-        mAnimationIn = animIn;
-        mAnimationOut = animOut;
-        mAnimationDuration = animDur;
-        mAdDuration = displayDur;
-	}
-}
\ No newline at end of file
+        else AppyAdLog.debug(TAG, "Loaded stored image for {}", mAdSrc);
+        return (data);
+    }
+
+    /**
+     * This method decodes an encoded ad element into the bitmap displayed by this ad, at its full resolution.
+     *
+     * @param data - A byte array holding the encoded ad element (may be null).
+     */
+    public void decodeCreative(byte[] data) {
+        decodeCreative(data, null);
+    }
+
+    /**
+     * This method decodes an encoded ad element into the bitmap displayed by this ad, using the given
+     * {@link AppyAdDecoder} object to size it for the view it is shown in.
+     *
+     * @param data - A byte array holding the encoded ad element (may be null).
+     * @param decoder - The {@link AppyAdDecoder} object to decode with (null to decode at full resolution).
+     */
+    public void decodeCreative(byte[] data, AppyAdDecoder decoder) {
+        mCacheKey = AppyAdBitmapCache.key(mAdSrc, decoder);
+        long start = AppyAdScheduler.now();
+        if (data == null) mAd = null;
+        else if (decoder != null) mAd = decoder.decode(data);
+        else mAd = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (data != null) AppyAdService.getInstance().getMetrics().recordSince(AppyAdMetrics.CREATIVE_DECODE, start);
+        AppyAdBitmapCache.put(mCacheKey, mAd);
+        if ((mAd == null) && (mAdSrc != null)) AppyAdLog.error(TAG, "Unable to decode image at {}", mAdSrc);
+    }
+}
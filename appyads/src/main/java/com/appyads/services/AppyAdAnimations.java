@@ -0,0 +1,79 @@
+package com.appyads.services;
+
+import android.util.LongSparseArray;
+import android.view.animation.Animation;
+
+import java.util.List;
+
+/**
+ * This class keeps the transition animations of an {@link AppyAdManager} view object, so that each flip reuses
+ * Animation objects instead of building new ones.  Animations are keyed by their type and duration, and are built
+ * for the whole campaign when it is put in place.  A finished animation is reset when it is handed out again, while
+ * one still running is left alone, as starting it on a view restarts it anyway.
+ * An "in" and an "out" animation are never of the same type, so the two animations of a transition are always
+ * different objects.  Because a running Animation object belongs to the view it is running on, one object of this
+ * class is kept per {@link AppyAdManager}, and it is only used on the UI thread.
+ */
+public class AppyAdAnimations {
+
+    private static final String TAG = "AppyAdAnimations";
+
+    private LongSparseArray<Animation> mAnimations = new LongSparseArray<Animation>();
+
+    /**
+     * This method builds the animations used by the ads of a campaign, and drops those no longer used.
+     * @param campaign - A List of the {@link AppyAd} objects of the campaign.
+     */
+    public void prepare(List<AppyAd> campaign) {
+        LongSparseArray<Animation> animations = new LongSparseArray<Animation>();
+        for (AppyAd toa : campaign) {
+            keep(animations, AppyAdService.animationType("in", toa), toa.mAnimationDuration);
+            keep(animations, AppyAdService.animationType("out", toa), toa.mAnimationDuration);
+        }
+        mAnimations = animations;
+        AppyAdLog.debug(TAG, "Prepared {} transition animations.", animations.size());
+    }
+
+    /**
+     * This method returns the "in" or "out" animation of an ad, ready to be started.
+     * @param dir - A String indicating whether the animation is an "in" or "out" animation
+     * @param toa - An {@link AppyAd} object containing the specifics of the ad, which includes the animation properties
+     * @return - An {@link Animation} object, or null if the ad has no animation.
+     */
+    public Animation get(String dir, AppyAd toa) {
+        int type = AppyAdService.animationType(dir, toa);
+        if (type == AppyAdStatic.NO_ANIMATION) return (null);
+        long key = key(type, toa.mAnimationDuration);
+        Animation a = mAnimations.get(key);
+        if (a == null) {
+            a = AppyAdService.createAnimation(type, toa.mAnimationDuration);
+            mAnimations.put(key, a);
+        }
+        else if (a.hasEnded()) a.reset();
+        return (a);
+    }
+
+    /**
+     * This method moves an animation into a new set, building it if it has not been built yet.
+     * @param animations - The LongSparseArray of the new set.
+     * @param type - An int value representing the animation type.
+     * @param duration - An int value representing the number of milliseconds the animation takes.
+     */
+    private void keep(LongSparseArray<Animation> animations, int type, int duration) {
+        if (type == AppyAdStatic.NO_ANIMATION) return;
+        long key = key(type, duration);
+        if (animations.get(key) != null) return;
+        Animation a = mAnimations.get(key);
+        animations.put(key, (a != null) ? a : AppyAdService.createAnimation(type, duration));
+    }
+
+    /**
+     * This method builds the key an animation is kept under.
+     * @param type - An int value representing the animation type.
+     * @param duration - An int value representing the number of milliseconds the animation takes.
+     * @return - A long value combining both.
+     */
+    private static long key(int type, int duration) {
+        return (((long) type << 32) | (duration & 0xffffffffL));
+    }
+}
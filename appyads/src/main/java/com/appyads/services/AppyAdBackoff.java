@@ -0,0 +1,118 @@
+package com.appyads.services;
+
+import java.util.Random;
+
+/**
+ * This class decides when a failed campaign fetch is retried, and acts as a circuit breaker for the
+ * AppyAds server.  It has three states:
+ *      <ul><li>{@link #CLOSED} - Fetches go ahead normally.  Each failure is retried after an exponentially
+ *          growing delay, picked at random between {@link #MIN_DELAY} and the exponential ceiling ("full jitter"),
+ *          so that devices which failed together do not retry together.</li></ul>
+ *      <ul><li>{@link #OPEN} - Once {@link AppyAdService#maxErrors() maxErrors} weighted failures have been counted,
+ *          the ad rotation is paused and nothing is sent until the retry delay has passed.</li></ul>
+ *      <ul><li>{@link #HALF_OPEN} - A single probe fetch is let through.  Success closes the circuit, failure opens
+ *          it again for a longer delay.</li></ul>
+ * A delay asked for by the server in a Retry-After header is never undercut.  The state of the circuit is kept here
+ * only, apart from whether the application has switched ad processing on or off.
+ * One object is kept by each {@link AppyAdManager} view object.  All methods are thread safe.
+ */
+public class AppyAdBackoff {
+
+    private static final String TAG = "AppyAdBackoff";
+    public static final int CLOSED = 0;
+    public static final int OPEN = 1;
+    public static final int HALF_OPEN = 2;
+    public static final int MIN_DELAY = 1000;  // 1 second
+    public static final int MAX_DELAY = 900000;  // 15 minutes
+    private static final int MAX_EXPONENT = 20;
+
+    private static final Random random = new Random();
+
+    private int mState = CLOSED;
+    private int mFailures = 0;
+    private long mRetryDelay = 0;
+
+    /**
+     * This method records a successful fetch, which closes the circuit and clears the failure count.
+     * @return - A boolean value indicating whether or not the circuit was open, or being probed, until now.
+     */
+    public synchronized boolean onSuccess() {
+        boolean reopened = (mState != CLOSED);
+        if (reopened) AppyAdLog.debug(TAG, "Server reachable again. Circuit closed.");
+        mState = CLOSED;
+        mFailures = 0;
+        mRetryDelay = 0;
+        return (reopened);
+    }
+
+    /**
+     * This method records a failed fetch and works out how long to wait before the next attempt.
+     *
+     * @param weight - An int value representing how many failures this one counts as.
+     * @param retryAfter - A long value representing the minimum delay in milliseconds asked for by the server (0 if none).
+     * @return - A long value representing the delay in milliseconds before the next attempt.
+     */
+    public synchronized long onFailure(int weight, long retryAfter) {
+        mFailures += Math.max(1, weight);
+        if ((mState == HALF_OPEN) || ((mState == CLOSED) && (mFailures >= AppyAdService.getInstance().maxErrors()))) {
+            mState = OPEN;
+        }
+        long ceiling = Math.min((long) MAX_DELAY, (long) AppyAdService.getInstance().getErrorWaitInterval() << Math.min(mFailures - 1, MAX_EXPONENT));
+        long delay = MIN_DELAY + (long) (random.nextDouble() * Math.max(0, ceiling - MIN_DELAY));
+        if (retryAfter > delay) delay = retryAfter;
+        mRetryDelay = delay;
+        AppyAdLog.debug(TAG, "Failure {}{}. Next attempt in {} ms.", mFailures, ((mState == OPEN) ? ", circuit open" : ""), delay);
+        return (delay);
+    }
+
+    /**
+     * This method lets a single probe through an open circuit.
+     * @return - A boolean value indicating whether or not the circuit was open.
+     */
+    public synchronized boolean probe() {
+        if (mState != OPEN) return (false);
+        mState = HALF_OPEN;
+        AppyAdLog.debug(TAG, "Retry delay has passed. Probing server.");
+        return (true);
+    }
+
+    /**
+     * This method reveals whether the circuit is open, in which case nothing should be sent until the retry delay has passed.
+     * @return - A boolean value indicating whether or not the circuit is open.
+     */
+    public synchronized boolean isOpen() {
+        return (mState == OPEN);
+    }
+
+    /**
+     * This method reveals whether the circuit is closed, in which case fetches go ahead and ads are rotated.
+     * @return - A boolean value indicating whether or not the circuit is closed.
+     */
+    public synchronized boolean isClosed() {
+        return (mState == CLOSED);
+    }
+
+    /**
+     * This method returns the current state of the circuit.
+     * @return - An int value representing the state ({@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}).
+     */
+    public synchronized int getState() {
+        return (mState);
+    }
+
+    /**
+     * This method returns the weighted number of failures since the last success.
+     * @return - An int value representing the failure count.
+     */
+    public synchronized int getFailures() {
+        return (mFailures);
+    }
+
+    /**
+     * This method returns the delay worked out at the last failure.
+     * @return - A long value representing the delay in milliseconds before the next attempt (0 after a success).
+     */
+    public synchronized long getRetryDelay() {
+        return (mRetryDelay);
+    }
+}
@@ -0,0 +1,300 @@
+package com.appyads.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This module is run on the {@link AppyAdExecutor} in place of several {@link AppyAdRetriever} objects, when the
+ * campaign refreshes of several {@link AppyAdManager} view objects are due together, as when a screen holding
+ * several placements is started.  The campaign packages of all the views are asked for in a single request
+ * instead of one request each.
+ * The request carries the usual campaign request parameters of each view, with its validators, as one "e"
+ * parameter per view, after a "count" parameter.  The response is a series of parts, in any order, each made of:
+ *      <ul><li>A header line of url encoded parameters: "index" (the position of the view in the request),
+ *          "status" (200, or 304 when the campaign has not changed), "length" (the number of bytes of the
+ *          package which follows), and optionally "etag" and "last_modified".</li></ul>
+ *      <ul><li>The campaign package of the view, which is handed to the view's {@link AppyAdRetriever} as it arrives.</li></ul>
+ * Each view is then dealt with exactly as its {@link AppyAdRetriever} would have.  Views the server left out of
+ * an otherwise good response fall back to a request of their own.  When the server does not accept requests for
+ * several campaigns, all the views fall back, and no more such requests are sent.  This includes a server answering
+ * with a successful response code but something other than parts, such as a plain text message.  Any other failure
+ * is recorded against every view left, so that each one backs off as if its own request had failed.
+ */
+public class AppyAdBatchRetriever implements Runnable, AppyAdSendServer.ResponseReader {
+
+    private static final String TAG = "AppyAdBatchRetriever";
+    private static final int MAX_HEADER_LENGTH = 2048;
+
+    static volatile boolean unsupported = false;  // Package-private, so that tests can start over
+
+    private final List<AppyAdManager> mManagers;
+    private List<AppyAdRetriever> mRetrievers;
+    private boolean[] mDone;
+    private int mParts;
+
+    /**
+     * This constructor defines the {@link AppyAdManager} view objects whose campaigns are refreshed.
+     * @param managers - A List of the {@link AppyAdManager} objects.
+     */
+    public AppyAdBatchRetriever(List<AppyAdManager> managers) {
+        mManagers = new ArrayList<AppyAdManager>(managers);
+    }
+
+    /**
+     * This method refreshes the campaigns of all the views, in a single request when more than one of them is due,
+     * and on their own for any view the server left out of the single request.
+     */
+    @Override
+    public void run() {
+        AppyAdService service = AppyAdService.getInstance();
+        begin();
+
+        if ((mRetrievers.size() > 1) && !unsupported && service.isNetworkAvailable(mRetrievers.get(0).getManager())) {
+            AppyAdLog.debug(TAG, "Requesting {} campaigns at once.", mRetrievers.size());
+            AppyAdSendServer tgsd = new AppyAdSendServer(buildRequest());
+            boolean ok = tgsd.queryServer(this);
+            settle(ok, tgsd.getResponseCode(), tgsd.getSpecError(), tgsd.getRetryAfter());
+        }
+
+        for (int i = 0; i < mRetrievers.size(); i++) {
+            if (!mDone[i]) mRetrievers.get(i).fetch();
+        }
+    }
+
+    /**
+     * This method readies the refresh of every view whose application has not switched ads off.  Those views make up
+     * the request, in order.
+     */
+    void begin() {
+        mRetrievers = new ArrayList<AppyAdRetriever>();
+        for (AppyAdManager toam : mManagers) {
+            AppyAdRetriever retriever = new AppyAdRetriever(toam);
+            if (retriever.begin()) mRetrievers.add(retriever);
+        }
+        mDone = new boolean[mRetrievers.size()];
+        mParts = 0;
+    }
+
+    /**
+     * This method acts on the outcome of the request for several campaigns, once the parts which arrived have been
+     * handed to their views.  The views left are either left to a request of their own, or, when the server or the
+     * network is in trouble, have the failure recorded against them.
+     *
+     * @param ok - A boolean value indicating whether or not the request and the reading of its response were successful.
+     * @param code - An int value representing the response code.
+     * @param error - An array of String values describing the error, when the request failed.
+     * @param retryAfter - A long value representing the delay in milliseconds the server asked for (0 if none).
+     */
+    void settle(boolean ok, int code, String[] error, long retryAfter) {
+        if (isSuccess(code) && (mParts == 0)) {
+            // The server answered, but not with parts, so it does not know the request for several campaigns.
+            unsupported = true;
+            AppyAdLog.debug(TAG, "Server did not answer a request for several campaigns with parts. Response code {}", code);
+        }
+        else if (!ok && isSuccess(code)) {
+            AppyAdLog.error(TAG, "Response for several campaigns broke off after {} parts. Requesting the rest on their own.", mParts);
+        }
+        else if (!ok) {
+            if ((code == HttpURLConnection.HTTP_BAD_REQUEST) || (code == HttpURLConnection.HTTP_NOT_FOUND)
+                    || (code == HttpURLConnection.HTTP_BAD_METHOD) || (code == HttpURLConnection.HTTP_NOT_IMPLEMENTED)) {
+                unsupported = true;
+                AppyAdLog.debug(TAG, "Server does not accept requests for several campaigns. Response code {}", code);
+            }
+            else {
+                // The server or the network is in trouble, so every view backs off rather than asking again on its own.
+                AppyAdLog.error(TAG, "Unable to request several campaigns at once. Response code {}", code);
+                for (int i = 0; i < mRetrievers.size(); i++) {
+                    if (mDone[i]) continue;
+                    mDone[i] = true;
+                    mRetrievers.get(i).finish(false, false, error, retryAfter);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method reveals whether a response code is one of success.
+     * @param code - An int value representing the response code.
+     * @return - A boolean value indicating whether or not the code is in the 2xx range.
+     */
+    private static boolean isSuccess(int code) {
+        return ((code >= HttpURLConnection.HTTP_OK) && (code < HttpURLConnection.HTTP_MULT_CHOICE));
+    }
+
+    /**
+     * This method reveals whether the view at the given position in the request has been dealt with.
+     * @param index - An int value representing the position of the view in the request.
+     * @return - A boolean value indicating whether or not the view was dealt with, rather than left to a request of its own.
+     */
+    boolean isDone(int index) {
+        return (mDone[index]);
+    }
+
+    /**
+     * This method builds the request for the campaigns of all the views.
+     * @return - An {@link AppyAdRequest} object.
+     */
+    private AppyAdRequest buildRequest() {
+        AppyAdService service = AppyAdService.getInstance();
+        List<String> placements = new ArrayList<String>();
+        for (AppyAdRetriever retriever : mRetrievers) {
+            AppyAdManager toam = retriever.getManager();
+            AppyAdRequest single = service.addCampaignValidators(toam, new AppyAdRequest(AppyAdStatic.GETADSET, null, null, null));
+            StringBuilder pars = new StringBuilder(toam.getRequestTemplate().getAdSetParams());
+            try {
+                if (single.eTag != null) pars.append("&etag=").append(URLEncoder.encode(single.eTag, "UTF-8"));
+                if (single.lastModified != null) pars.append("&last_modified=").append(URLEncoder.encode(single.lastModified, "UTF-8"));
+            }
+            catch (Exception e) {
+                AppyAdLog.error(TAG, "Exception while building placement parameters. \n - {}", e.getMessage());
+            }
+            placements.add(pars.toString());
+        }
+        AppyAdRequest request = new AppyAdRequest(AppyAdStatic.GETADSETS, placements);
+        request.referer = mRetrievers.get(0).getManager().getRequestTemplate().getReferer();
+        return (request);
+    }
+
+    /**
+     * This method splits the response into its parts and hands each one to the {@link AppyAdRetriever} of its view.
+     *
+     * @param server - The {@link AppyAdSendServer} object making the request.
+     * @param in - The InputStream containing the parts.
+     * @throws IOException - If the response could not be read, or is not made of valid parts.
+     */
+    @Override
+    public void readResponse(AppyAdSendServer server, InputStream in) throws IOException {
+        String header;
+        while ((header = readLine(in)) != null) {
+            if (header.trim().length() == 0) continue;
+            int index = -1;
+            int status = 0;
+            long length = -1;
+            String eTag = null;
+            String lastModified = null;
+            for (String par : header.trim().split("&")) {
+                int eq = par.indexOf('=');
+                if (eq <= 0) continue;
+                String name = par.substring(0, eq);
+                String value = URLDecoder.decode(par.substring(eq + 1), "UTF-8");
+                try {
+                    if (name.equals("index")) index = Integer.parseInt(value);
+                    else if (name.equals("status")) status = Integer.parseInt(value);
+                    else if (name.equals("length")) length = Long.parseLong(value);
+                    else if (name.equals("etag")) eTag = value;
+                    else if (name.equals("last_modified")) lastModified = value;
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid part header: " + header);
+                }
+            }
+            if (length < 0) throw new IOException("Invalid part header: " + header);
+            mParts++;
+
+            PartInputStream part = new PartInputStream(in, length);
+            if ((index >= 0) && (index < mRetrievers.size()) && !mDone[index]) {
+                AppyAdRetriever retriever = mRetrievers.get(index);
+                if (status == HttpURLConnection.HTTP_OK) {
+                    retriever.readCampaign(part, eTag, lastModified);
+                    mDone[index] = true;
+                    retriever.finish(true, false, null, 0);
+                }
+                else if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    mDone[index] = true;
+                    retriever.finish(true, true, null, 0);
+                }
+                else AppyAdLog.debug(TAG, "Placement {} answered with status {}. Requesting it on its own.", index, status);
+            }
+            part.skipRest();
+        }
+    }
+
+    /**
+     * This method reads a header line.
+     * @param in - The InputStream containing the response.
+     * @return - A String containing the line without its line end, or null at the end of the response.
+     * @throws IOException - If the response could not be read, or the line is too long.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while (((b = in.read()) != -1) && (b != '\n')) {
+            if (line.size() >= MAX_HEADER_LENGTH) throw new IOException("Part header too long.");
+            line.write(b);
+        }
+        if ((b == -1) && (line.size() == 0)) return (null);
+        return (line.toString("UTF-8"));
+    }
+
+    /**
+     * This class reads one part of the response, ending where the part ends.  Closing it leaves the response open.
+     */
+    private static class PartInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        /**
+         * This constructor defines the part.
+         * @param in - The InputStream containing the response.
+         * @param length - A long value representing the number of bytes of the part.
+         */
+        private PartInputStream(InputStream in, long length) {
+            super(in);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return (-1);
+            int b = super.read();
+            if (b == -1) throw new IOException("Response ended inside a part.");
+            remaining--;
+            return (b);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (remaining <= 0) return (-1);
+            int n = super.read(buf, off, (int) Math.min(len, remaining));
+            if (n == -1) throw new IOException("Response ended inside a part.");
+            remaining -= n;
+            return (n);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return (skipped);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return ((int) Math.min(super.available(), remaining));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return (false);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * This method reads whatever is left of the part.
+         * @throws IOException - If the response could not be read.
+         */
+        private void skipRest() throws IOException {
+            byte[] buf = new byte[512];
+            while (read(buf, 0, buf.length) != -1) { }
+        }
+    }
+}
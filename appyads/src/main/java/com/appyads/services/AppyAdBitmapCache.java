@@ -0,0 +1,110 @@
+package com.appyads.services;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * This class holds decoded ad elements in memory for the whole process, so that an ad element which is
+ * still part of the campaign after a refresh, or which is shown by more than one {@link AppyAdManager}
+ * view object, is decoded only once.  Entries are keyed by the URL of the ad element and the size it was
+ * decoded at, and the least recently used entries are evicted once the total size of the bitmaps held
+ * goes over the limit.  The total size is kept up to date in the {@link AppyAdMetrics#BITMAP_BYTES} gauge as entries
+ * are added, evicted or removed.
+ */
+public class AppyAdBitmapCache {
+
+    private static final String TAG = "AppyAdBitmapCache";
+    private static final int MEMORY_FRACTION = 8;   // Use 1/8th of the available heap.
+
+    private static LruCache<String, Bitmap> cache;
+
+    /**
+     * This method returns the cache, creating it when first needed.
+     * @return - An LruCache object sized in bytes.
+     */
+    private static synchronized LruCache<String, Bitmap> getCache() {
+        if (cache == null) {
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+            AppyAdLog.debug(TAG, "Creating bitmap cache of {} bytes", maxBytes);
+            cache = new LruCache<String, Bitmap>(maxBytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap bm) {
+                    return (bm.getByteCount());
+                }
+
+                @Override
+                protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                    updateGauge(this);
+                }
+            };
+        }
+        return (cache);
+    }
+
+    /**
+     * This method builds the key under which an ad element is cached.
+     *
+     * @param src - A String value containing the URL of the ad element.
+     * @param decoder - The {@link AppyAdDecoder} object the ad element is decoded with (null for full resolution).
+     * @return - A String value containing the cache key, or null if the ad element has no URL.
+     */
+    public static String key(String src, AppyAdDecoder decoder) {
+        if (src == null) return (null);
+        return (src + "|" + ((decoder != null) ? decoder.getKey() : "full:default"));
+    }
+
+    /**
+     * This method looks up a decoded ad element.
+     *
+     * @param key - A String value containing the cache key (may be null).
+     * @return - The cached {@link Bitmap} object, or null if it is not in the cache.
+     */
+    public static Bitmap get(String key) {
+        if (key == null) return (null);
+        Bitmap bm = getCache().get(key);
+        if ((bm != null) && bm.isRecycled()) {
+            getCache().remove(key);
+            bm = null;
+        }
+        return (bm);
+    }
+
+    /**
+     * This method adds a decoded ad element to the cache.
+     *
+     * @param key - A String value containing the cache key (may be null).
+     * @param bm - The decoded {@link Bitmap} object (may be null).
+     */
+    public static void put(String key, Bitmap bm) {
+        if ((key != null) && (bm != null)) {
+            LruCache<String, Bitmap> c = getCache();
+            c.put(key, bm);
+            updateGauge(c);
+        }
+    }
+
+    /**
+     * This method records the total size of the bitmaps held in the {@link AppyAdMetrics#BITMAP_BYTES} gauge.
+     * @param c - The LruCache object holding the bitmaps.
+     */
+    private static void updateGauge(LruCache<String, Bitmap> c) {
+        AppyAdService.getInstance().getMetrics().setGauge(AppyAdMetrics.BITMAP_BYTES, c.size());
+    }
+
+    /**
+     * This method returns the total size of the bitmaps held.
+     * @return - An int value representing the size in bytes.
+     */
+    public static int getSize() {
+        return (getCache().size());
+    }
+
+    /**
+     * This method empties the cache, for example when the application is asked to release memory.
+     */
+    public static void clear() {
+        LruCache<String, Bitmap> c = getCache();
+        c.evictAll();
+        updateGauge(c);
+    }
+}
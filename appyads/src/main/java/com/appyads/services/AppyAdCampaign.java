@@ -0,0 +1,124 @@
+package com.appyads.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is an immutable snapshot of an ad campaign package, built completely by the {@link AppyAdConfig}
+ * object on a background thread.  It is handed to the {@link AppyAdManager} view object with
+ * {@link AppyAdManager#publishCampaign(AppyAdCampaign) publishCampaign}, a single atomic swap, and put in place on the UI thread.
+ * Nothing the UI thread reads is changed while the next campaign is being built, so it never sees a partly built campaign.
+ * The settings of the campaign element are kept as they were read, and are interpreted by the {@link AppyAdManager}
+ * when the campaign is put in place.
+ */
+public class AppyAdCampaign {
+
+    private final List<AppyAd> mAds;
+    private final boolean mHasElements;
+    private final boolean mHasCampaignElement;
+    private final String mAccount;
+    private final String mId;
+    private final String mBaseViewIndex;
+    private final String mFinalViewIndex;
+    private final String mRepeatCycle;
+    private final String mRefreshInterval;
+
+    /**
+     * This constructor defines the whole snapshot.
+     *
+     * @param ads - A List of the {@link AppyAd} objects of the campaign, in order.  The list is copied.
+     * @param hasElements - A boolean value indicating whether or not the campaign package held any ad elements.
+     * @param hasCampaignElement - A boolean value indicating whether or not the campaign package held a campaign element.
+     * @param account - A String value representing the campaign account (may be null).
+     * @param id - A String value representing the campaign id (may be null).
+     * @param baseViewIndex - A String value representing the base view index (null if not set).
+     * @param finalViewIndex - A String value representing the final view index (null if not set).
+     * @param repeatCycle - A String value representing the repeat cycle (null if not set).
+     * @param refreshInterval - A String value representing the refresh interval in milliseconds (null if not set).
+     */
+    public AppyAdCampaign(List<AppyAd> ads, boolean hasElements, boolean hasCampaignElement, String account, String id,
+                          String baseViewIndex, String finalViewIndex, String repeatCycle, String refreshInterval) {
+        mAds = Collections.unmodifiableList(new ArrayList<AppyAd>(ads));
+        mHasElements = hasElements;
+        mHasCampaignElement = hasCampaignElement;
+        mAccount = account;
+        mId = id;
+        mBaseViewIndex = baseViewIndex;
+        mFinalViewIndex = finalViewIndex;
+        mRepeatCycle = repeatCycle;
+        mRefreshInterval = refreshInterval;
+    }
+
+    /**
+     * This method returns the ads of the campaign.
+     * @return - An unmodifiable List of {@link AppyAd} objects.
+     */
+    public List<AppyAd> getAds() {
+        return (mAds);
+    }
+
+    /**
+     * This method reveals whether the campaign package held any ad elements, in which case the previous campaign settings are cleared.
+     * @return - A boolean value indicating whether or not there were ad elements.
+     */
+    public boolean hasElements() {
+        return (mHasElements);
+    }
+
+    /**
+     * This method reveals whether the campaign package held a campaign element, whose settings then replace the current ones.
+     * @return - A boolean value indicating whether or not there was a campaign element.
+     */
+    public boolean hasCampaignElement() {
+        return (mHasCampaignElement);
+    }
+
+    /**
+     * This method returns the campaign account.
+     * @return - A String value representing the campaign account (may be null).
+     */
+    public String getAccount() {
+        return (mAccount);
+    }
+
+    /**
+     * This method returns the campaign id.
+     * @return - A String value representing the campaign id (may be null).
+     */
+    public String getId() {
+        return (mId);
+    }
+
+    /**
+     * This method returns the base view index, as read from the campaign element.
+     * @return - A String value representing the base view index (null if not set).
+     */
+    public String getBaseViewIndex() {
+        return (mBaseViewIndex);
+    }
+
+    /**
+     * This method returns the final view index, as read from the campaign element.
+     * @return - A String value representing the final view index (null if not set).
+     */
+    public String getFinalViewIndex() {
+        return (mFinalViewIndex);
+    }
+
+    /**
+     * This method returns the repeat cycle, as read from the campaign element.
+     * @return - A String value representing the repeat cycle (null if not set).
+     */
+    public String getRepeatCycle() {
+        return (mRepeatCycle);
+    }
+
+    /**
+     * This method returns the refresh interval, as read from the campaign element.
+     * @return - A String value representing the refresh interval in milliseconds (null if not set).
+     */
+    public String getRefreshInterval() {
+        return (mRefreshInterval);
+    }
+}
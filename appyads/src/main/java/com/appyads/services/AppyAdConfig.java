@@ -1,25 +1,45 @@
 package com.appyads.services;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import android.util.Xml;
 
-import java.io.StringReader;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This class parses an AppyAds campaign package (xml format) and creates the individual {@link AppyAd}
- * objects within the {@link AppyAdManager} as well as the campaign's base settings.
+ * objects as well as the campaign's base settings, which are handed to the {@link AppyAdManager} as an {@link AppyAdCampaign}.
+ * The package is read in a single pass with a pull parser, so it can be consumed straight from the
+ * network stream without first being collected into a String or a document tree.
  *
  */
 public class AppyAdConfig {
 
     private static final String TAG = "AppyAdConfig";
+    private static final String AD_ELEMENT = "AppyAdsElement";
+    private static final String CAMPAIGN_ELEMENT = "AppyAdsCampaign";
+    private static final String RESOURCE_MARKER = "/resources/?rc=";
+
+    private AppyAdManager mManager;
+    private ArrayList<AppyAd> mAds = new ArrayList<AppyAd>();
+    private Set<String> mSources = new HashSet<String>();
+    private int mElementCount = 0;
+    private boolean mCampaignFound = false;
+    private boolean mValid = false;
+    private String mCampaignAccount = null;
+    private String mCampaignId = null;
+    private String mBaseViewIndex = null;
+    private String mFinalViewIndex = null;
+    private String mRepeatCycle = null;
+    private String mRefreshInterval = null;
 
     /**
      * This method is the main constructor and handles the parsing of the xml campaign package file
@@ -30,152 +50,221 @@ public class AppyAdConfig {
      *
      */
     public AppyAdConfig(AppyAdManager toam, String adXmlDriver) {
-        String campAcct = null;
+        this(toam, adXmlDriver, null);
+    }
+
+    /**
+     * This constructor parses the xml campaign package file, loading previously stored ad elements from
+     * the given {@link AppyAdStore} object and storing any ad elements which have to be downloaded.
+     *
+     * @param toam - The {@link AppyAdManager} object which will receive the ad campaign information
+     * @param adXmlDriver - A String containing an AppyAds ad campaign details in XML format
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     *
+     */
+    public AppyAdConfig(AppyAdManager toam, String adXmlDriver, AppyAdStore store) {
+        this(toam);
         if ((adXmlDriver.length() > 50) && (toam != null)) {
             try {
-                String defaultTrack = AppyAdService.getInstance().getDefaultTracking() ? "true" : "false";
-                String defaultInAnimation = AppyAdService.getInstance().getDefaultInAnimation();
-                String defaultOutAnimation = AppyAdService.getInstance().getDefaultOutAnimation();
-                String defaultAnimationDuration = String.valueOf(AppyAdService.getInstance().getDefaultAnimationDuration());
-                String defaultAdDuration = String.valueOf(AppyAdService.getInstance().getDefaultDisplayInterval());
-                //String defaultLink = AppyAdService.getInstance().getDefaultLink();
-                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                InputSource is = new InputSource();
-                is.setCharacterStream(new StringReader(adXmlDriver));
-                Document doc = db.parse(is);
-                doc.getDocumentElement().normalize();
-                AppyAdService.getInstance().debugOut(TAG,"Root element " + doc.getDocumentElement().getNodeName());
-
-                NodeList nodeLst = doc.getElementsByTagName("AppyAdsElement");
-                AppyAdService.getInstance().debugOut(TAG,"Information for all ads.....");
-
-                int nodeLength = nodeLst.getLength();
-                if (nodeLength > 0) toam.initCampaignData();
-
-                for (int s = 0; s < nodeLength; s++) {
-
-                    Node adNode = nodeLst.item(s);
-
-                    if (adNode.getNodeType() == Node.ELEMENT_NODE) {
-
-                        String imgSrc = getAdAttribute(adNode, "src", null);
-                        AppyAdService.getInstance().debugOut(TAG,"src="+imgSrc);
-
-                        if (campAcct == null && imgSrc != null && imgSrc.contains("/resources/?rc=")) {
-                            campAcct = imgSrc.substring(imgSrc.indexOf("/resources/?rc=")+15);
-                            if (campAcct.indexOf('/') > 0) campAcct = campAcct.substring(0,campAcct.indexOf('/'));
-                            else campAcct = null;
-                        }
-
-                        String title = getAdAttribute(adNode, "title", null);
-                        AppyAdService.getInstance().debugOut(TAG,"title="+title);
-
-                        String link = getAdAttribute(adNode, "link", null);
-                        AppyAdService.getInstance().debugOut(TAG,"link="+link);
-
-                        String id = getAdAttribute(adNode, "id", null);
-                        AppyAdService.getInstance().debugOut(TAG,"id="+id);
-
-                        String adType = getAdAttribute(adNode, "type", null);
-                        AppyAdService.getInstance().debugOut(TAG,"type="+adType);
-
-                        String dd = getAdAttribute(adNode, "displayDuration", defaultAdDuration);
-                        AppyAdService.getInstance().debugOut(TAG,"displayDuration="+dd);
-
-                        String inA = getAdAttribute(adNode, "inAnimation", defaultInAnimation);
-                        AppyAdService.getInstance().debugOut(TAG,"inAnimation="+inA);
-
-                        String outA = getAdAttribute(adNode, "outAnimation", defaultOutAnimation);
-                        AppyAdService.getInstance().debugOut(TAG,"outAnimation="+outA);
-
-                        String ad = getAdAttribute(adNode, "animationDuration", defaultAnimationDuration);
-                        AppyAdService.getInstance().debugOut(TAG,"animationDuration="+ad);
+                parse(new StringReader(adXmlDriver));
+                apply(store);
+            } catch (Exception e) {
+                AppyAdLog.error(TAG, "Exception reading campaign package xml file. \n - {}", e.getMessage());
+            }
+        }
+    }
 
-                        String tracking = getAdAttribute(adNode, "tracking", defaultTrack);
-                        AppyAdService.getInstance().debugOut(TAG,"tracking="+tracking);
+    /**
+     * This constructor prepares an empty configuration for the given {@link AppyAdManager} object.  The campaign
+     * package is then read with {@link #parse(InputStream) parse} and handed to the manager with {@link #apply(AppyAdStore) apply}.
+     *
+     * @param toam - The {@link AppyAdManager} object which will receive the ad campaign information
+     */
+    public AppyAdConfig(AppyAdManager toam) {
+        mManager = toam;
+    }
 
-                        if (adType != null) {
-                            if (adType.toLowerCase().equals("image")) {
-                                toam.addAd(new AppyAd(AppyAdStatic.TOZIMAGE,imgSrc,id,title,link,tracking,inA,outA,ad,dd));
-                            }
-                        }
+    /**
+     * This method reads an AppyAds campaign package from a stream, creating an {@link AppyAd} object for
+     * each ad element.  Nothing is changed in the {@link AppyAdManager} object and no ad elements are
+     * downloaded until {@link #apply(AppyAdStore) apply} is called.
+     *
+     * @param in - The InputStream containing the campaign package.
+     * @return - A boolean value indicating whether or not a complete campaign package was read.
+     * @throws IOException - If the stream could not be read.
+     */
+    public boolean parse(InputStream in) throws IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in, null);
+            return (parse(parser));
+        } catch (XmlPullParserException e) {
+            AppyAdLog.error(TAG, "Exception reading campaign package xml file. \n - {}", e.getMessage());
+            return (false);
+        }
+    }
 
-                    }
+    /**
+     * This method reads an AppyAds campaign package from a character stream.
+     *
+     * @param in - The Reader containing the campaign package.
+     * @return - A boolean value indicating whether or not a complete campaign package was read.
+     * @throws IOException - If the stream could not be read.
+     */
+    public boolean parse(Reader in) throws IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in);
+            return (parse(parser));
+        } catch (XmlPullParserException e) {
+            AppyAdLog.error(TAG, "Exception reading campaign package xml file. \n - {}", e.getMessage());
+            return (false);
+        }
+    }
 
+    /**
+     * This method walks through the parser events once, picking up the ad elements and the campaign element.
+     *
+     * @param parser - The {@link XmlPullParser} positioned at the start of the campaign package.
+     * @return - A boolean value indicating whether or not a complete campaign package was read.
+     * @throws XmlPullParserException - If the campaign package is not well formed.
+     * @throws IOException - If the stream could not be read.
+     */
+    private boolean parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+        long start = AppyAdScheduler.now();
+        String defaultTrack = mManager.getDefaultTracking() ? "true" : "false";
+        String defaultInAnimation = mManager.getDefaultInAnimation();
+        String defaultOutAnimation = mManager.getDefaultOutAnimation();
+        String defaultAnimationDuration = String.valueOf(mManager.getDefaultAnimationDuration());
+        String defaultAdDuration = String.valueOf(mManager.getDefaultDisplayInterval());
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                if (AD_ELEMENT.equals(name)) {
+                    readAdElement(parser, defaultTrack, defaultInAnimation, defaultOutAnimation, defaultAnimationDuration, defaultAdDuration);
                 }
-
-                NodeList campLst = doc.getElementsByTagName("AppyAdsCampaign");
-                Node cNode = campLst.item(0);
-                if (cNode.getNodeType() == Node.ELEMENT_NODE) {
-                    toam.setCampaignAccount(campAcct);
-
-                    String campId = getAdAttribute(cNode, "id", null);
-                    AppyAdService.getInstance().debugOut(TAG,"campaignID="+campId);
-                    toam.setCampaignId(campId);
-
-                    String baseIdx = getAdAttribute(cNode, "baseViewIndex", null);
-                    AppyAdService.getInstance().debugOut(TAG,"baseViewIndex="+baseIdx);
-                    if (baseIdx != null) toam.setBaseViewIndex(baseIdx);
-
-                    String finIdx = getAdAttribute(cNode, "finalViewIndex", null);
-                    AppyAdService.getInstance().debugOut(TAG,"finalViewIndex="+finIdx);
-                    if (finIdx != null) toam.setFinalViewIndex(finIdx);
-
-                    String repCy = getAdAttribute(cNode, "repeatCycle", null);
-                    AppyAdService.getInstance().debugOut(TAG,"repeatCycle="+repCy);
-                    if (repCy != null) toam.setRepeatCycle(repCy);
-
-                    String refInt = getAdAttribute(cNode, "refreshInterval", null);
-                    AppyAdService.getInstance().debugOut(TAG,"refreshInterval="+refInt);
-                    if (refInt != null) toam.setRefreshInterval(refInt);
+                else if (CAMPAIGN_ELEMENT.equals(name) && !mCampaignFound) {
+                    readCampaignElement(parser);
                 }
-
-            } catch (Exception e) {
-                AppyAdService.getInstance().errorOut(TAG,"Exception reading campaign package xml file. \n - "+e.getMessage());
             }
+            eventType = parser.next();
         }
+        mValid = (mElementCount > 0) && mCampaignFound;
+        AppyAdService.getInstance().getMetrics().recordSince(AppyAdMetrics.CONFIG_PARSE, start);
+        AppyAdLog.debug(TAG, "Read {} ads from {} elements. Campaign id is {}", mAds.size(), mElementCount, mCampaignId);
+        return (mValid);
     }
 
     /**
-     * This is a utility method to help the constructor parse a certain value from the xml file
-     *
-     * @param adElmnt - The {@link Element} of an xml entity
-     * @param piece - A String representing the name of an attribute of the xml entity
-     * @return - Returns a value representing the value of the named attribute
+     * This method reads the attributes of an ad element and creates the corresponding {@link AppyAd} object.
      *
+     * @param parser - The {@link XmlPullParser} positioned on the start tag of the ad element.
+     * @param defaultTrack - A String representing the default tracking setting.
+     * @param defaultInAnimation - A String representing the default "in" animation.
+     * @param defaultOutAnimation - A String representing the default "out" animation.
+     * @param defaultAnimationDuration - A String representing the default animation duration.
+     * @param defaultAdDuration - A String representing the default display duration.
      */
-    public String getAdElementValue(Element adElmnt, String piece) {
-        NodeList pLst = adElmnt.getElementsByTagName(piece);
-        if (pLst != null) {
-            Element pEle = (Element) pLst.item(0);
-            if (pEle != null) {
-                NodeList pNdLst = pEle.getChildNodes();
-                if (pNdLst != null) {
-                    return (((Node) pNdLst.item(0)).getNodeValue());
-                }
+    private void readAdElement(XmlPullParser parser, String defaultTrack, String defaultInAnimation, String defaultOutAnimation, String defaultAnimationDuration, String defaultAdDuration) {
+        String imgSrc = null;
+        String title = null;
+        String link = null;
+        String id = null;
+        String adType = null;
+        String dd = defaultAdDuration;
+        String inA = defaultInAnimation;
+        String outA = defaultOutAnimation;
+        String ad = defaultAnimationDuration;
+        String tracking = defaultTrack;
+
+        mElementCount++;
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String attr = parser.getAttributeName(i);
+            String value = parser.getAttributeValue(i);
+            if (attr.equals("src")) imgSrc = value;
+            else if (attr.equals("title")) title = value;
+            else if (attr.equals("link")) link = value;
+            else if (attr.equals("id")) id = value;
+            else if (attr.equals("type")) adType = value;
+            else if (attr.equals("displayDuration")) dd = value;
+            else if (attr.equals("inAnimation")) inA = value;
+            else if (attr.equals("outAnimation")) outA = value;
+            else if (attr.equals("animationDuration")) ad = value;
+            else if (attr.equals("tracking")) tracking = value;
+        }
+        AppyAdLog.debug(TAG, "Ad element id={}, type={}, src={}, link={}, displayDuration={}, inAnimation={}, outAnimation={}, animationDuration={}, tracking={}", id, adType, imgSrc, link, dd, inA, outA, ad, tracking);
+
+        if (mCampaignAccount == null && imgSrc != null && imgSrc.contains(RESOURCE_MARKER)) {
+            String campAcct = imgSrc.substring(imgSrc.indexOf(RESOURCE_MARKER)+RESOURCE_MARKER.length());
+            if (campAcct.indexOf('/') > 0) mCampaignAccount = campAcct.substring(0,campAcct.indexOf('/'));
+        }
+
+        if (adType != null) {
+            if (adType.equalsIgnoreCase("image")) {
+                mAds.add(new AppyAd(AppyAdStatic.TOZIMAGE,imgSrc,id,title,link,tracking,inA,outA,ad,dd,null,true));
+                if (imgSrc != null) mSources.add(imgSrc);
             }
         }
-        return (null);
     }
 
     /**
-     * This is a utility method that helps the constructor determine the values of {@link Node} attributes
-     * within the xml file.
+     * This method reads the attributes of the campaign element.
      *
-     * @param adNode - The {@link Node} object being parsed
-     * @param attr - A String representing the name of the attribute of the Node
-     * @param def - A String defining the default value (in case the attribute was not specified).
+     * @param parser - The {@link XmlPullParser} positioned on the start tag of the campaign element.
+     */
+    private void readCampaignElement(XmlPullParser parser) {
+        mCampaignFound = true;
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String attr = parser.getAttributeName(i);
+            String value = parser.getAttributeValue(i);
+            if (attr.equals("id")) mCampaignId = value;
+            else if (attr.equals("baseViewIndex")) mBaseViewIndex = value;
+            else if (attr.equals("finalViewIndex")) mFinalViewIndex = value;
+            else if (attr.equals("repeatCycle")) mRepeatCycle = value;
+            else if (attr.equals("refreshInterval")) mRefreshInterval = value;
+        }
+        AppyAdLog.debug(TAG, "Campaign element id={}, baseViewIndex={}, finalViewIndex={}, repeatCycle={}, refreshInterval={}", mCampaignId, mBaseViewIndex, mFinalViewIndex, mRepeatCycle, mRefreshInterval);
+    }
+
+    /**
+     * This method loads the ad elements of the parsed campaign through the {@link AppyAdCreativeLoader} and
+     * publishes the complete campaign to the {@link AppyAdManager} object as one {@link AppyAdCampaign} snapshot.
+     * Ads whose ID and ad element are unchanged from the current campaign are not loaded again, as they will
+     * take over the views of the current ones.
      *
-     * @return - A String representing the value of the attribute (or the default value supplied by def if the attribute was not specified in the xml)
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
      */
-    public String getAdAttribute(Node adNode, String attr, String def) {
-        NamedNodeMap nm = adNode.getAttributes();
-        if (nm != null) {
-            for (int i = 0; i < nm.getLength(); i++) {
-                if (nm.item(i).getNodeName().equals(attr)) return (nm.item(i).getNodeValue());
-            }
+    public void apply(AppyAdStore store) {
+        if (mManager == null) return;
+        List<AppyAd> changed = new ArrayList<AppyAd>();
+        for (AppyAd toa : mAds) {
+            AppyAd old = mManager.findUnchangedAd(toa);
+            if (old != null) toa.mCacheKey = old.mCacheKey;
+            else changed.add(toa);
         }
-        return (def);
+        if (changed.size() < mAds.size()) {
+            AppyAdLog.debug(TAG, "Loading {} new or changed ad elements of {}", changed.size(), mAds.size());
+        }
+        AppyAdCreativeLoader.load(changed, store, mManager.getCreativeDecoder(), null);
+        mManager.publishCampaign(new AppyAdCampaign(mAds, (mElementCount > 0), mCampaignFound, mCampaignAccount, mCampaignId,
+                mBaseViewIndex, mFinalViewIndex, mRepeatCycle, mRefreshInterval));
+    }
+
+    /**
+     * This method reveals whether or not the campaign package was parsed completely.
+     * @return - A boolean value indicating whether or not the campaign package was valid.
+     */
+    public boolean isValid() {
+        return (mValid);
+    }
+
+    /**
+     * This method returns the URLs of all the ad elements referred to by the campaign package.
+     * @return - A Set of String values containing the ad element URLs.
+     */
+    public Set<String> getSources() {
+        return (mSources);
     }
-}
\ No newline at end of file
+}
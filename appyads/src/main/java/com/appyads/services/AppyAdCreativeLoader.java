@@ -0,0 +1,212 @@
+package com.appyads.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class loads the ad elements of a campaign in stages, so that the ads of a campaign are not
+ * downloaded one after the other.  Ad elements already held by the {@link AppyAdBitmapCache} skip the stages:
+ *      <ul><li>A fetch stage retrieves the encoded ad elements, a few at a time, from the {@link AppyAdStore} or the network.</li></ul>
+ *      <ul><li>A decode stage, sized to the number of processor cores, turns them into bitmaps.</li></ul>
+ *      <ul><li>The calling thread hands each finished {@link AppyAd} object over, in campaign order, to a {@link Receiver}.</li></ul>
+ * Both stages are lanes of the shared {@link AppyAdExecutor}.  While the calling thread waits for an ad, it runs
+ * any stage of that ad which no pool thread has picked up yet, so loading never stalls on a busy pool.
+ * Only a limited number of ads are allowed to be in flight ahead of the one being handed over, which
+ * keeps the number of decoded bitmaps waiting in memory bounded.
+ */
+public class AppyAdCreativeLoader {
+
+    private static final String TAG = "AppyAdCreativeLoader";
+    private static final int MAX_CONCURRENT_FETCHES = 4;
+    private static final int MAX_PENDING_ADS = 8;
+
+    private static Executor fetchLane;
+    private static Executor decodeLane;
+
+    /**
+     * This interface is implemented by objects that receive the {@link AppyAd} objects once their ad element has been loaded.
+     */
+    public interface Receiver {
+
+        /**
+         * This method is called on the loading thread for each ad, in campaign order.
+         * @param toa - The {@link AppyAd} object whose ad element has been loaded (or failed to load).
+         */
+        void onAdReady(AppyAd toa);
+    }
+
+    /**
+     * This method loads the ad elements of the given ads and hands each ad to the receiver in order.
+     * It returns once every ad has been handed over.
+     *
+     * @param ads - A List of {@link AppyAd} objects to load.
+     * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+     * @param decoder - The {@link AppyAdDecoder} object used in the decode stage (null to decode at full resolution).
+     * @param receiver - The {@link Receiver} object the loaded ads are handed to (may be null).
+     */
+    public static void load(List<AppyAd> ads, AppyAdStore store, AppyAdDecoder decoder, Receiver receiver) {
+        int count = ads.size();
+        Job[] jobs = new Job[count];
+        for (int i = 0; i < count; i++) jobs[i] = new Job(ads.get(i), store, decoder);
+
+        int submitted = 0;
+        boolean interrupted = false;
+        for (int i = 0; i < count; i++) {
+            while ((submitted < count) && (submitted < i + MAX_PENDING_ADS)) {
+                jobs[submitted].start();
+                submitted++;
+            }
+            interrupted |= jobs[i].finish();
+            if (receiver != null) receiver.onAdReady(jobs[i].ad);
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * This method returns the lane used for the fetch stage, creating it when first needed.
+     * @return - An Executor running at most {@link #MAX_CONCURRENT_FETCHES} fetches at a time.
+     */
+    private static synchronized Executor getFetchLane() {
+        if (fetchLane == null) fetchLane = AppyAdService.getInstance().getExecutor().newLane("fetch", MAX_CONCURRENT_FETCHES);
+        return (fetchLane);
+    }
+
+    /**
+     * This method returns the lane used for the decode stage, creating it when first needed.
+     * @return - An Executor running one decode per processor core.
+     */
+    private static synchronized Executor getDecodeLane() {
+        if (decodeLane == null) decodeLane = AppyAdService.getInstance().getExecutor().newLane("decode", Runtime.getRuntime().availableProcessors());
+        return (decodeLane);
+    }
+
+    /**
+     * This method waits for a latch, carrying on through interruptions.
+     * @param latch - The CountDownLatch to wait for.
+     * @return - A boolean value indicating whether or not the thread was interrupted while waiting.
+     */
+    private static boolean await(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                return (interrupted);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    /**
+     * This class carries one ad through the fetch and decode stages.  Each stage is run exactly once, by
+     * whichever thread claims it first.
+     */
+    private static class Job {
+
+        private final AppyAd ad;
+        private final AppyAdStore store;
+        private final AppyAdDecoder decoder;
+        private final AtomicBoolean fetchClaimed = new AtomicBoolean(false);
+        private final AtomicBoolean decodeClaimed = new AtomicBoolean(false);
+        private final CountDownLatch fetched = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] data = null;
+
+        private final Runnable fetchTask = new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        };
+
+        private final Runnable decodeTask = new Runnable() {
+            @Override
+            public void run() {
+                decode();
+            }
+        };
+
+        /**
+         * This constructor defines the ad to load.
+         * @param toa - The {@link AppyAd} object to load.
+         * @param store - The {@link AppyAdStore} object holding stored creatives (may be null).
+         * @param decoder - The {@link AppyAdDecoder} object to decode with (may be null).
+         */
+        private Job(AppyAd toa, AppyAdStore store, AppyAdDecoder decoder) {
+            this.ad = toa;
+            this.store = store;
+            this.decoder = decoder;
+        }
+
+        /**
+         * This method completes the job straight away when the ad element is already in the {@link AppyAdBitmapCache},
+         * and otherwise queues it for the fetch stage.
+         */
+        private void start() {
+            if (ad.loadCachedCreative(decoder)) {
+                fetchClaimed.set(true);
+                decodeClaimed.set(true);
+                fetched.countDown();
+                done.countDown();
+            }
+            else submit(getFetchLane(), fetchTask);
+        }
+
+        /**
+         * This method runs whatever stages of the job are still unclaimed on the calling thread, then waits for the job to be done.
+         * @return - A boolean value indicating whether or not the thread was interrupted while waiting.
+         */
+        private boolean finish() {
+            fetch();
+            boolean interrupted = await(fetched);
+            decode();
+            return (await(done) || interrupted);
+        }
+
+        /**
+         * This method queues a stage of the job.  If the lane refuses it, the stage is left for {@link #finish() finish}.
+         * @param lane - The Executor for the stage.
+         * @param task - The Runnable for the stage.
+         */
+        private void submit(Executor lane, Runnable task) {
+            try {
+                lane.execute(task);
+            } catch (RejectedExecutionException e) {
+                AppyAdLog.error(TAG, "Unable to queue image load for {}", ad.mAdSrc);
+            }
+        }
+
+        /**
+         * This method retrieves the encoded ad element and passes the job on to the decode stage, unless another thread already has.
+         */
+        private void fetch() {
+            if (!fetchClaimed.compareAndSet(false, true)) return;
+            try {
+                data = ad.fetchCreative(store);
+            } catch (IOException e) {
+                AppyAdLog.error(TAG, "Unable to load image at {}", ad.mAdSrc);
+            } finally {
+                fetched.countDown();
+            }
+            if (data != null) submit(getDecodeLane(), decodeTask);
+            else decode();
+        }
+
+        /**
+         * This method decodes the ad element, if one was fetched, and marks the job as done, unless another thread already has.
+         */
+        private void decode() {
+            if (!decodeClaimed.compareAndSet(false, true)) return;
+            try {
+                if (data != null) ad.decodeCreative(data, decoder);
+                data = null;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.appyads.services;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * This class decodes ad elements into bitmaps for a particular {@link AppyAdManager} view object.
+ * In the viewport decoding mode the bounds of the ad element are read first, and the ad element is then
+ * subsampled and scaled so that it just covers the view, rather than being held at its full resolution.
+ */
+public class AppyAdDecoder {
+
+    private static final String TAG = "AppyAdDecoder";
+
+    private int mMode;
+    private Bitmap.Config mConfig;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * This constructor defines how ad elements are decoded.
+     *
+     * @param mode - An int value representing the decoding mode ({@link AppyAdStatic#DECODE_FULL} or {@link AppyAdStatic#DECODE_VIEWPORT}).
+     * @param config - The {@link Bitmap.Config} to decode to (null for the system default).
+     * @param width - An int value representing the width in pixels of the view the ad elements are shown in.
+     * @param height - An int value representing the height in pixels of the view the ad elements are shown in.
+     */
+    public AppyAdDecoder(int mode, Bitmap.Config config, int width, int height) {
+        mMode = mode;
+        mConfig = config;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * This method returns a String identifying the size and format this decoder produces, used to key the {@link AppyAdBitmapCache}.
+     *
+     * @return - A String value identifying the decoded output.
+     */
+    public String getKey() {
+        String cfg = (mConfig != null) ? mConfig.name() : "default";
+        if ((mMode != AppyAdStatic.DECODE_VIEWPORT) || (mWidth <= 0) || (mHeight <= 0)) return ("full:" + cfg);
+        return (mWidth + "x" + mHeight + ":" + cfg);
+    }
+
+    /**
+     * This method decodes an encoded ad element.
+     *
+     * @param data - A byte array holding the encoded ad element.
+     * @return - A {@link Bitmap} object, or null if the ad element could not be decoded.
+     */
+    public Bitmap decode(byte[] data) {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        if (mConfig != null) opts.inPreferredConfig = mConfig;
+        if ((mMode != AppyAdStatic.DECODE_VIEWPORT) || (mWidth <= 0) || (mHeight <= 0)) {
+            return (BitmapFactory.decodeByteArray(data, 0, data.length, opts));
+        }
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if ((bounds.outWidth <= 0) || (bounds.outHeight <= 0)) return (null);
+
+        float scale = Math.max((float) mWidth / bounds.outWidth, (float) mHeight / bounds.outHeight);
+        if (scale >= 1) return (BitmapFactory.decodeByteArray(data, 0, data.length, opts));
+
+        int sample = 1;
+        while (((bounds.outWidth / (sample * 2)) >= mWidth) && ((bounds.outHeight / (sample * 2)) >= mHeight)) sample *= 2;
+        opts.inSampleSize = sample;
+        Bitmap bm = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+        if (bm == null) return (null);
+
+        int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+        if ((bm.getWidth() > targetWidth) || (bm.getHeight() > targetHeight)) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bm, targetWidth, targetHeight, true);
+            if (scaled != bm) bm.recycle();
+            bm = scaled;
+        }
+        AppyAdLog.debug(TAG, "Decoded {}x{} ad element at {}x{} (sample size {})", bounds.outWidth, bounds.outHeight, bm.getWidth(), bm.getHeight(), sample);
+        return (bm);
+    }
+}
@@ -0,0 +1,219 @@
+package com.appyads.services;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs all the background network, disk and decode work of the AppyAds system on one shared
+ * pool of named threads, owned by the {@link AppyAdService} object.  The number of pool threads is fixed
+ * by {@link #setParallelism(int) setParallelism}, so bursts of work queue up rather than creating threads.
+ * Work which must be limited further, or run in order, is given a lane with {@link #newLane(String, int) newLane}.
+ * A lane runs its tasks on the shared pool, but never more than its own limit at a time.
+ * On runtimes which support them, virtual threads can be used instead of the pool with {@link #setVirtualThreads(boolean) setVirtualThreads}.
+ */
+public class AppyAdExecutor {
+
+    private static final String TAG = "AppyAdExecutor";
+    private static final int IDLE_THREAD_TIMEOUT = 30;  // seconds
+
+    private int mParallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private boolean mVirtualThreads = false;
+    private ExecutorService mPool;
+
+    /**
+     * This method sets the number of pool threads.  It only takes effect if called before any work has been submitted.
+     *
+     * @param parallelism - An int value representing the maximum number of pool threads (at least 1).
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (mPool != null) AppyAdLog.error(TAG, "Executor already started. Parallelism not changed.");
+        else mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * This method returns the number of pool threads.
+     * @return - An int value representing the maximum number of pool threads.
+     */
+    public synchronized int getParallelism() {
+        return (mParallelism);
+    }
+
+    /**
+     * This method selects virtual threads, one per task, in place of the pool on runtimes which support them.
+     * It only takes effect if called before any work has been submitted.  Where virtual threads are not available
+     * (including on Android) the pool is used.
+     *
+     * @param onoff - A boolean value. If set to true, virtual threads will be used when available.
+     */
+    public synchronized void setVirtualThreads(boolean onoff) {
+        if (mPool != null) AppyAdLog.error(TAG, "Executor already started. Thread mode not changed.");
+        else mVirtualThreads = onoff;
+    }
+
+    /**
+     * This method runs a task on the shared pool.
+     *
+     * @param task - The Runnable to run.
+     * @throws RejectedExecutionException - If the task could not be queued.
+     */
+    public void execute(Runnable task) {
+        getPool().execute(task);
+    }
+
+    /**
+     * This method creates a lane which runs its tasks on the shared pool, at most the given number at a time,
+     * in the order they were submitted.  A lane with a limit of 1 runs its tasks one after the other.
+     *
+     * @param name - A String value naming the lane (used for logging).
+     * @param limit - An int value representing the maximum number of the lane's tasks running at once.
+     * @return - An Executor object for the lane.
+     */
+    public Executor newLane(String name, int limit) {
+        return (new Lane(name, Math.max(1, limit)));
+    }
+
+    /**
+     * This method creates a named, low priority thread for long running work which would otherwise hold a pool thread for good.
+     *
+     * @param name - A String value naming the thread.
+     * @param task - The Runnable for the thread to run.
+     * @return - A Thread object, not yet started.
+     */
+    public Thread newThread(String name, Runnable task) {
+        Thread t = new Thread(lowPriority(task), name);
+        t.setDaemon(true);
+        return (t);
+    }
+
+    /**
+     * This method returns the shared pool, creating it when first needed.
+     * @return - An ExecutorService object.
+     */
+    private synchronized ExecutorService getPool() {
+        if (mPool == null) {
+            if (mVirtualThreads) mPool = newVirtualThreadPool();
+            if (mPool == null) {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(mParallelism, mParallelism, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return (AppyAdExecutor.this.newThread("AppyAds-io-" + counter.getAndIncrement(), r));
+                    }
+                });
+                pool.allowCoreThreadTimeOut(true);
+                mPool = pool;
+                AppyAdLog.debug(TAG, "Started pool of {} threads.", mParallelism);
+            }
+        }
+        return (mPool);
+    }
+
+    /**
+     * This method creates an executor which starts a named virtual thread for each task, if the runtime supports it.
+     * @return - An ExecutorService object, or null if virtual threads are not available.
+     */
+    private ExecutorService newVirtualThreadPool() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "AppyAds-vt-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method m = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            AppyAdLog.debug(TAG, "Using virtual threads.");
+            return ((ExecutorService) m.invoke(null, factory));
+        } catch (Exception e) {
+            AppyAdLog.debug(TAG, "Virtual threads not available. Using pool of {} threads.", mParallelism);
+            return (null);
+        }
+    }
+
+    /**
+     * This method wraps a task so that it runs at background priority.
+     * @param task - The Runnable to wrap.
+     * @return - A Runnable object.
+     */
+    private static Runnable lowPriority(final Runnable task) {
+        return (new Runnable() {
+            @Override
+            public void run() {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * This class limits the number of its tasks running on the shared pool at once.
+     */
+    private class Lane implements Executor {
+
+        private final String mName;
+        private final int mLimit;
+        private final ArrayDeque<Runnable> mQueue = new ArrayDeque<Runnable>();
+        private int mActive = 0;
+
+        /**
+         * This constructor defines the lane.
+         * @param name - A String value naming the lane.
+         * @param limit - An int value representing the maximum number of the lane's tasks running at once.
+         */
+        private Lane(String name, int limit) {
+            mName = name;
+            mLimit = limit;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (mQueue) {
+                mQueue.add(task);
+            }
+            schedule();
+        }
+
+        /**
+         * This method hands queued tasks to the shared pool while the lane is under its limit.
+         */
+        private void schedule() {
+            while (true) {
+                final Runnable task;
+                synchronized (mQueue) {
+                    if ((mActive >= mLimit) || mQueue.isEmpty()) return;
+                    task = mQueue.poll();
+                    mActive++;
+                }
+                try {
+                    getPool().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                task.run();
+                            } catch (RuntimeException e) {
+                                AppyAdLog.error(TAG, "Task failed in lane {}. {}", mName, e.getMessage());
+                            } finally {
+                                synchronized (mQueue) {
+                                    mActive--;
+                                }
+                                schedule();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    synchronized (mQueue) {
+                        mActive--;
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+}
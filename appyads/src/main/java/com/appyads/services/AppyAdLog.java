@@ -0,0 +1,325 @@
+package com.appyads.services;
+
+import android.util.Log;
+
+/**
+ * This class is the logging facade of the AppyAds system.  Messages are given as a format, in which each
+ * "{}" stands for the next argument, and are only formatted when their level is enabled, so that a disabled
+ * message costs no more than the level check.  Callers building arguments which are expensive in themselves
+ * should check {@link #isDebug() isDebug} first.
+ * Enabled messages are not written to the Android log by the calling thread.  They are put into a ring buffer of
+ * {@link #CAPACITY} entries, which are allocated once, and a single background thread formats them and writes them out.
+ * When messages arrive faster than they are written, the oldest are dropped and counted.
+ */
+public class AppyAdLog {
+
+    private static final String TAG = "AppyAdLog";
+    public static final int DEBUG = 1;
+    public static final int ERROR = 2;
+    public static final int OFF = 3;
+    public static final int CAPACITY = 256;
+
+    private static volatile int level = OFF;
+
+    static final Object lock = new Object();  // Package-private, so that tests can hold the writer thread back
+    private static final Entry[] ring = new Entry[CAPACITY];
+    private static int head = 0;
+    private static int size = 0;
+    private static int dropped = 0;
+    private static Thread writer = null;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Entry();
+    }
+
+    /**
+     * This method sets the lowest level of message which is logged.
+     * @param newLevel - An int value, either {@link #DEBUG}, {@link #ERROR} or {@link #OFF}.
+     */
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * This method returns the lowest level of message which is logged.
+     * @return - An int value, either {@link #DEBUG}, {@link #ERROR} or {@link #OFF}.
+     */
+    public static int getLevel() {
+        return (level);
+    }
+
+    /**
+     * This method reveals whether debug messages are logged.
+     * @return - A boolean value indicating whether or not debug messages are logged.
+     */
+    public static boolean isDebug() {
+        return (level <= DEBUG);
+    }
+
+    /**
+     * This method reveals whether error messages are logged.
+     * @return - A boolean value indicating whether or not error messages are logged.
+     */
+    public static boolean isError() {
+        return (level <= ERROR);
+    }
+
+    /**
+     * This method logs a debug message.
+     * @param tag - A String representing the module initiating the log message
+     * @param msg - A String representing the message
+     */
+    public static void debug(String tag, String msg) {
+        if (level <= DEBUG) add(DEBUG, tag, msg, 0, null, null, null, null);
+    }
+
+    /**
+     * This method logs a debug message with one argument.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with "{}" standing for the argument
+     * @param a - The argument
+     */
+    public static void debug(String tag, String format, Object a) {
+        if (level <= DEBUG) add(DEBUG, tag, format, 1, a, null, null, null);
+    }
+
+    /**
+     * This method logs a debug message with two arguments.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with each "{}" standing for the next argument
+     * @param a - The first argument
+     * @param b - The second argument
+     */
+    public static void debug(String tag, String format, Object a, Object b) {
+        if (level <= DEBUG) add(DEBUG, tag, format, 2, a, b, null, null);
+    }
+
+    /**
+     * This method logs a debug message with three arguments.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with each "{}" standing for the next argument
+     * @param a - The first argument
+     * @param b - The second argument
+     * @param c - The third argument
+     */
+    public static void debug(String tag, String format, Object a, Object b, Object c) {
+        if (level <= DEBUG) add(DEBUG, tag, format, 3, a, b, c, null);
+    }
+
+    /**
+     * This method logs a debug message with any number of arguments.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with each "{}" standing for the next argument
+     * @param args - The arguments
+     */
+    public static void debug(String tag, String format, Object... args) {
+        if (level <= DEBUG) add(DEBUG, tag, format, -1, null, null, null, args);
+    }
+
+    /**
+     * This method logs an error message.
+     * @param tag - A String representing the module initiating the log message
+     * @param msg - A String representing the message
+     */
+    public static void error(String tag, String msg) {
+        if (level <= ERROR) add(ERROR, tag, msg, 0, null, null, null, null);
+    }
+
+    /**
+     * This method logs an error message with one argument.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with "{}" standing for the argument
+     * @param a - The argument
+     */
+    public static void error(String tag, String format, Object a) {
+        if (level <= ERROR) add(ERROR, tag, format, 1, a, null, null, null);
+    }
+
+    /**
+     * This method logs an error message with two arguments.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with each "{}" standing for the next argument
+     * @param a - The first argument
+     * @param b - The second argument
+     */
+    public static void error(String tag, String format, Object a, Object b) {
+        if (level <= ERROR) add(ERROR, tag, format, 2, a, b, null, null);
+    }
+
+    /**
+     * This method logs an error message with any number of arguments.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message, with each "{}" standing for the next argument
+     * @param args - The arguments
+     */
+    public static void error(String tag, String format, Object... args) {
+        if (level <= ERROR) add(ERROR, tag, format, -1, null, null, null, args);
+    }
+
+    /**
+     * This method returns the number of messages waiting in the ring buffer.
+     * @return - An int value representing the number of messages.
+     */
+    static int getPending() {
+        synchronized (lock) {
+            return (size);
+        }
+    }
+
+    /**
+     * This method returns the number of messages dropped since the writer thread last took one out of the ring buffer.
+     * @return - An int value representing the number of messages.
+     */
+    static int getDropped() {
+        synchronized (lock) {
+            return (dropped);
+        }
+    }
+
+    /**
+     * This method puts a message into the ring buffer, dropping the oldest one when it is full, and wakes the writer thread.
+     * @param lvl - An int value representing the level of the message.
+     * @param tag - A String representing the module initiating the log message
+     * @param format - A String representing the message format.
+     * @param argc - An int value representing the number of single arguments, or -1 when the arguments are in an array.
+     * @param a - The first argument (may be null).
+     * @param b - The second argument (may be null).
+     * @param c - The third argument (may be null).
+     * @param args - The array of arguments (may be null).
+     */
+    private static void add(int lvl, String tag, String format, int argc, Object a, Object b, Object c, Object[] args) {
+        synchronized (lock) {
+            if (size == CAPACITY) {
+                head = (head + 1) % CAPACITY;
+                size--;
+                dropped++;
+            }
+            ring[(head + size) % CAPACITY].set(lvl, tag, format, argc, a, b, c, args);
+            size++;
+            if (writer == null) {
+                writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        write();
+                    }
+                }, "AppyAds-log");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            else if (size == 1) lock.notify();
+        }
+    }
+
+    /**
+     * This method runs the writer thread, which takes messages out of the ring buffer, formats them and writes them
+     * to the Android log.
+     */
+    private static void write() {
+        Entry entry = new Entry();
+        while (true) {
+            int lost;
+            synchronized (lock) {
+                while (size == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        writer = null;
+                        return;
+                    }
+                }
+                entry.copy(ring[head]);
+                ring[head].clear();
+                head = (head + 1) % CAPACITY;
+                size--;
+                lost = dropped;
+                dropped = 0;
+            }
+            if (lost > 0) Log.e(TAG, "Log buffer full. Dropped " + lost + " messages.");
+            String msg = entry.format();
+            if (entry.level == ERROR) Log.e(entry.tag, msg);
+            else Log.i(entry.tag, msg);
+            entry.clear();
+        }
+    }
+
+    /**
+     * This class holds one message in the ring buffer.  Entries are reused, and only formatted by the writer thread.
+     */
+    static class Entry {
+
+        private int level;
+        private String tag;
+        private String format;
+        private int argc;
+        private Object a;
+        private Object b;
+        private Object c;
+        private Object[] args;
+
+        /**
+         * This method fills the entry.
+         * @param lvl - An int value representing the level of the message.
+         * @param tag - A String representing the module initiating the log message
+         * @param format - A String representing the message format.
+         * @param argc - An int value representing the number of single arguments, or -1 when the arguments are in an array.
+         * @param a - The first argument (may be null).
+         * @param b - The second argument (may be null).
+         * @param c - The third argument (may be null).
+         * @param args - The array of arguments (may be null).
+         */
+        void set(int lvl, String tag, String format, int argc, Object a, Object b, Object c, Object[] args) {
+            this.level = lvl;
+            this.tag = tag;
+            this.format = format;
+            this.argc = argc;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.args = args;
+        }
+
+        /**
+         * This method fills the entry with the contents of another one.
+         * @param e - The Entry to copy.
+         */
+        private void copy(Entry e) {
+            set(e.level, e.tag, e.format, e.argc, e.a, e.b, e.c, e.args);
+        }
+
+        /**
+         * This method lets go of the references held by the entry.
+         */
+        private void clear() {
+            set(0, null, null, 0, null, null, null, null);
+        }
+
+        /**
+         * This method returns the argument at the given position.
+         * @param i - An int value representing the position of the argument.
+         * @return - The argument, or the String "{}" when there is no such argument.
+         */
+        private Object arg(int i) {
+            if (argc < 0) return (((args != null) && (i < args.length)) ? args[i] : "{}");
+            if (i >= argc) return ("{}");
+            return ((i == 0) ? a : ((i == 1) ? b : c));
+        }
+
+        /**
+         * This method builds the message, putting each argument in place of the next "{}".
+         * @return - A String containing the message.
+         */
+        String format() {
+            if ((argc == 0) || (format == null)) return (format);
+            StringBuilder sb = new StringBuilder(format.length() + 32);
+            int from = 0;
+            int i = 0;
+            int at;
+            while ((at = format.indexOf("{}", from)) >= 0) {
+                sb.append(format, from, at).append(arg(i++));
+                from = at + 2;
+            }
+            sb.append(format, from, format.length());
+            return (sb.toString());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Message;
@@ -12,10 +13,17 @@ import android.provider.Settings;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.View;
+import android.view.animation.Animation;
 import android.widget.ImageView;
 import android.widget.ViewFlipper;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class is used to display advertising campaign components. Note that although this class
@@ -40,6 +48,12 @@ import java.util.ArrayList;
  *  <ul><li>appyadmgr:baseViewIndex="1"
  *      <ul><li>Optional. Specifies the index of the view to use to start each cycle (after the first cycle). If not specified, the default is index 0. Note that this value will most likely be overridden by ad campaigns retrieved by the server.</li></ul></li></ul>
  *
+ *  <ul><li>appyadmgr:bitmapConfig="rgb_565"
+ *      <ul><li>Optional. Specifies the pixel format ad images are decoded to, either "argb_8888" or "rgb_565".  The "rgb_565" format halves the memory used by each ad, and suits ad images without transparency.  Default is the system default (argb_8888).</li></ul></li></ul>
+ *
+ *  <ul><li>appyadmgr:creativeDecoding="viewport"
+ *      <ul><li>Optional. Specifies how ad images are decoded. With "viewport", ad images larger than this view are subsampled and scaled down to the size of the view.  With "full", ad images are kept at their original resolution.  Default is "viewport".</li></ul></li></ul>
+ *
  *  <ul><li>appyadmgr:customSpec="myspecialpurpose:-)"
  *      <ul><li>Optional. Specifies a user-defined string value to be recorded with the tracking information.</li></ul></li></ul>
  *
@@ -145,19 +159,25 @@ import java.util.ArrayList;
 public class AppyAdManager extends ViewFlipper {
 
     private static final String TAG = "AppyAdManager";
-    private ArrayList<AppyAd> tozAdCampaign = new ArrayList<AppyAd>();
+    private static final int MAX_SPARE_AD_VIEWS = 4;
+    private volatile List<AppyAd> tozAdCampaign = Collections.emptyList();
+    private final AtomicReference<AppyAdCampaign> pendingCampaign = new AtomicReference<AppyAdCampaign>();
     private String tozAdAccountID;
     private String tozCampaignSize;
     private String tozAdCampaignAccount;
     private String tozAdCampaignID;
     private Integer tozAdCampaignRetrievalInterval;
-    private Integer tozAdCampaignRetrievalCounter;
+    private volatile boolean tozAdCampaignRefreshed = false;
+    private volatile long tozAdCampaignRefreshTime = 0;
+    private String tozAdCampaignVersion;
+    private String tozAdCampaignETag;
+    private String tozAdCampaignLastModified;
     private Integer defaultDisplayInterval;
     private Integer baseViewIndex;
     private Integer finalViewIndex;
     private Integer repeatCycle;
     private boolean defaultTracking;
-    private boolean mAdsOn;
+    private volatile boolean mAdsOn;
     private String toAdDefaultLink;
     private String defaultInAnimation;
     private String defaultOutAnimation;
@@ -168,15 +188,21 @@ public class AppyAdManager extends ViewFlipper {
     private String tozAndroidId;
     private int tozAdViewWidth = 0;
     private int tozAdViewHeight = 0;
+    private int creativeDecoding = AppyAdStatic.DECODE_VIEWPORT;
+    private Bitmap.Config creativeBitmapConfig = null;
 
     private int errorCounter,delayCounter;
+    private final AppyAdBackoff tozBackoff = new AppyAdBackoff();
+    private volatile AppyAdRequestTemplate tozRequestTemplate = null;
 
-    private int curAd = 0;
-    private int nextAd = 0;
+    private final AtomicReference<Rotation> rotation = new AtomicReference<Rotation>(new Rotation(Collections.<AppyAd>emptyList(), 0, 0, 0, null, null));
     private int baseAd = 0;
-    private int lastAd = 0;
     private int numInternalChildren = 0;
-    private int saveCampaignSize = 0;
+    private final ArrayDeque<ImageView> spareAdViews = new ArrayDeque<ImageView>();
+    private int preparedAd = -1;
+    private Animation preparedInAnimation = null;
+    private Animation preparedOutAnimation = null;
+    private final AppyAdAnimations transitions = new AppyAdAnimations();
     private boolean reInitializeCampaign = true;
 
     private Handler parentHandler = null;
@@ -354,6 +380,12 @@ public class AppyAdManager extends ViewFlipper {
             mAdsOn = true;
             if (temp != null) if (temp.toLowerCase().equals("false")) mAdsOn = false;
 
+            temp = attrs.getAttributeValue(AppyAdService.getInstance().APPYADS_NAME_SPACE, "creativeDecoding");
+            setCreativeDecoding(temp);
+
+            temp = attrs.getAttributeValue(AppyAdService.getInstance().APPYADS_NAME_SPACE, "bitmapConfig");
+            setBitmapConfig(temp);
+
             temp = attrs.getAttributeValue(AppyAdService.getInstance().APPYADS_NAME_SPACE, "debug");
             if (temp != null) if (temp.toLowerCase().equals("true")) AppyAdService.getInstance().setDebug(true);
 
@@ -387,53 +419,64 @@ public class AppyAdManager extends ViewFlipper {
         tozApplicationName = (String) (ai != null ? pm.getApplicationLabel(ai) : "unknown");
         tozAndroidId = Settings.Secure.getString(getContext().getContentResolver(),Settings.Secure.ANDROID_ID);
 
-        AppyAdService.getInstance().debugOut(TAG, "Initialized state ....." +
-                "\n - App: " + tozApplicationName +
-                "\n - Account: " + tozAdAccountID +
-                "\n - Ad Campaign: " + tozAdCampaignID +
-                "\n - Campaign size designator: " + tozCampaignSize +
-                "\n - Custom Parameter: " + tozCustomSpec +
-                "\n - Campaign retrieval interval is " + tozAdCampaignRetrievalInterval +
-                "\n - Default link " + toAdDefaultLink +
-                "\n - Default In Animation is " + defaultInAnimation +
-                "\n - Default Out Animation is " + defaultOutAnimation +
-                "\n - Default Animation duration " + defaultAnimationDuration +
-                "\n - Default Tracking is " + defaultTracking +
-                "\n - Ad processing is " + mAdsOn +
-                "\n - Default Display Time is " + defaultDisplayInterval +
-                "\n - Campaign Repeat Cycle " + repeatCycle +
-                "\n - Base View Index is " + baseViewIndex +
-                "\n - Final View Index is " + finalViewIndex +
-                "\n - Client Screen Density is " + metrics.densityDpi + " (" + mScreenDensity + ")");
+        if (AppyAdLog.isDebug()) {
+            AppyAdLog.debug(TAG, "Initialized state ....." +
+                    "\n - App: {}" +
+                    "\n - Account: {}" +
+                    "\n - Ad Campaign: {}" +
+                    "\n - Campaign size designator: {}" +
+                    "\n - Custom Parameter: {}" +
+                    "\n - Campaign retrieval interval is {}" +
+                    "\n - Default link {}" +
+                    "\n - Default In Animation is {}" +
+                    "\n - Default Out Animation is {}" +
+                    "\n - Default Animation duration {}" +
+                    "\n - Default Tracking is {}" +
+                    "\n - Ad processing is {}" +
+                    "\n - Default Display Time is {}" +
+                    "\n - Campaign Repeat Cycle {}" +
+                    "\n - Base View Index is {}" +
+                    "\n - Final View Index is {}" +
+                    "\n - Client Screen Density is {} ({})",
+                    tozApplicationName, tozAdAccountID, tozAdCampaignID, tozCampaignSize, tozCustomSpec, tozAdCampaignRetrievalInterval,
+                    toAdDefaultLink, defaultInAnimation, defaultOutAnimation, defaultAnimationDuration, defaultTracking, mAdsOn,
+                    defaultDisplayInterval, repeatCycle, baseViewIndex, finalViewIndex, metrics.densityDpi, mScreenDensity);
+        }
+        publishRotation(tozAdCampaign, 0);
     }
 
     /**
      * SDK's method is overridden to register this AppyAdManager object with the {@link AppyAdService} module
-     * and ensure a background {@link AppyAdRetriever} thread is launched to handle ad campaign retrievals
+     * and ensure the {@link AppyAdScheduler} is running to handle ad campaign retrievals
      * and transition handling.
      */
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         numInternalChildren = getChildCount();
-        AppyAdService.getInstance().debugOut(TAG, "Number of initial placements is " + numInternalChildren);
+        AppyAdLog.debug(TAG, "Number of initial placements is {}", numInternalChildren);
         if (numInternalChildren > 0) {
+            ArrayList<AppyAd> ads = new ArrayList<AppyAd>(tozAdCampaign);
             for (int i=0; i< numInternalChildren; i++) {
                 View cv = this.getChildAt(i);
                 if (cv != null) {
                     baseAd = i+1;
                     int atype = 0;
                     if (cv instanceof ImageView) atype = AppyAdStatic.TOZIMAGE;
-                    tozAdCampaign.add(new AppyAd(atype, toAdDefaultLink, defaultTracking, defaultInAnimation, defaultOutAnimation, defaultAnimationDuration, defaultDisplayInterval));
-                    AppyAdService.getInstance().debugOut(TAG, "Added internal ad slot at index " + i);
+                    AppyAd toa = new AppyAd(atype, toAdDefaultLink, defaultTracking, defaultInAnimation, defaultOutAnimation, defaultAnimationDuration, defaultDisplayInterval);
+                    toa.mView = cv;
+                    ads.add(toa);
+                    AppyAdLog.debug(TAG, "Added internal ad slot at index {}", i);
                 }
             }
+            tozAdCampaign = Collections.unmodifiableList(ads);
+            publishRotation(tozAdCampaign, 0);
         }
     }
 
     /**
-     * SDK's method overridden to ensure that the retriever thread is properly shut down when
-     * this view is destroyed.
+     * SDK's method overridden to ensure that the scheduled ad rotation and campaign refreshes for this
+     * view are stopped when this view is destroyed.
      */
     @Override
     protected void onDetachedFromWindow() {
@@ -441,19 +484,20 @@ public class AppyAdManager extends ViewFlipper {
         Object host = (Object) getContext();
         if (host instanceof Activity) {
             if (((Activity)host).isFinishing()) {
-                AppyAdService.getInstance().unRegisterManager(true);
-                AppyAdService.getInstance().debugOut(TAG, TAG + " is detached, stopping Ad service thread.");
+                AppyAdService.getInstance().unRegisterManager(this, true);
+                AppyAdLog.debug(TAG, "{} is detached, stopping Ad service.", TAG);
             }
             else {
-                AppyAdService.getInstance().unRegisterManager(false);
-                AppyAdService.getInstance().debugOut(TAG, TAG + " is detached, removing from stack, but not stopping Ad service thread.");
+                AppyAdService.getInstance().unRegisterManager(this, false);
+                AppyAdLog.debug(TAG, "{} is detached, unregistering, but not stopping Ad service.", TAG);
 
             }
         }
     }
 
     /**
-     * SDK's method overridden, but currently not altered. (For future use.)
+     * SDK's method overridden to send any queued tracking events once the window holding this view
+     * is hidden, as the application may be going into the background.
      * @param visibility - An integer representing the View's current visibility setting
      */
     @Override
@@ -461,8 +505,8 @@ public class AppyAdManager extends ViewFlipper {
         super.onWindowVisibilityChanged(visibility);
         switch (visibility) {
             case View.GONE:
-                break;
             case View.INVISIBLE:
+                AppyAdService.getInstance().flushTracking();
                 break;
             case View.VISIBLE:
                 break;
@@ -488,11 +532,11 @@ public class AppyAdManager extends ViewFlipper {
 
             if (tozCampaignSize == null || tozCampaignSize.equals("undefined")) {
                 tozCampaignSize = String.valueOf(tozAdViewWidth)+"X"+String.valueOf(tozAdViewHeight);
-                AppyAdService.getInstance().debugOut(TAG, "Set campaign area size to "+tozCampaignSize);
+                AppyAdLog.debug(TAG, "Set campaign area size to {}", tozCampaignSize);
             }
 
-            AppyAdService.getInstance().debugOut(TAG, "Ad view port width is "+tozAdViewWidth+" and height is "+ tozAdViewHeight);
-            AppyAdService.getInstance().debugOut(TAG, "Registering this manager view...");
+            AppyAdLog.debug(TAG, "Ad view port width is {} and height is {}", tozAdViewWidth, tozAdViewHeight);
+            AppyAdLog.debug(TAG, "Registering this manager view...");
             AppyAdService.getInstance().registerManager(tozAndroidId, tozApplicationName, this);
         }
     }
@@ -507,35 +551,144 @@ public class AppyAdManager extends ViewFlipper {
         baseViewIndex = 0;
         finalViewIndex = 0;
         repeatCycle = 0;
+        resetRepeatCycles();
     }
 
     /**
-     * This method is called just before the ad campaign is initialized.  It tells the system
-     * that a new ad campaign is coming.  The existing ad campaign parameters must be saved for the
-     * UI thread to tear the old campaign down, while the background thread builds the new campaign.
+     * This method hands a completely built ad campaign over to this view.  It is called on a background thread,
+     * and only swaps the campaign in as the pending one.  The campaign is put in place on the UI thread, by the next
+     * call to {@link #showNextAd() showNextAd}, so the campaign the UI thread works with never changes under it.
+     * A pending campaign not yet put in place is replaced by a newer one.
+     *
+     * @param campaign - The {@link AppyAdCampaign} object to put in place.
      */
-    public void readyNewCampaign() {
-        reInitializeCampaign = true;
-        saveCampaignSize = tozAdCampaign.size();
+    public void publishCampaign(AppyAdCampaign campaign) {
+        if (campaign == null) return;
+        pendingCampaign.set(campaign);
+        AppyAdLog.debug(TAG, "Published new campaign of {} ads.", campaign.getAds().size());
     }
 
     /**
-     * This method is used to remove entries in the ad campaign's {@link ArrayList} and the corresponding
-     * views.  Called every time there has been a new ad campaign retrieved from the server.
+     * This method puts a pending ad campaign in place, on the UI thread.  The ads of the new campaign follow the
+     * internal ads, their views are merged with those of the previous campaign by {@link #mergeNewCampaign(List, List, int) mergeNewCampaign},
+     * the campaign settings are applied, and the new list of ads is published with a single write.
+     *
+     * @param campaign - The {@link AppyAdCampaign} object to put in place.
+     * @return - An int value representing the index of the ad on display in the new campaign (-1 if it is no longer part of it).
      */
-    private void clearExternalAds() {
-        int numberOfExternalChildrenViews = getChildCount() - numInternalChildren;
-        curAd = 0;
-        nextAd = 0;
-        if (numInternalChildren < getChildCount()) {
-            AppyAdService.getInstance().debugOut(TAG, "Removing previous campaign: " + numberOfExternalChildrenViews + " slots starting at index " + numInternalChildren);
-            setInAnimation(AppyAdService.getInstance().setAnimation("in", tozAdCampaign.get(nextAd)));
-            removeViews(numInternalChildren, numberOfExternalChildrenViews);
+    private int installCampaign(AppyAdCampaign campaign) {
+        List<AppyAd> current = tozAdCampaign;
+        int internal = Math.min(numInternalChildren, current.size());
+        ArrayList<AppyAd> ads = new ArrayList<AppyAd>(internal + campaign.getAds().size());
+        ads.addAll(current.subList(0, internal));
+        ads.addAll(campaign.getAds());
+        int shownIndex = mergeNewCampaign(current.subList(internal, current.size()), ads, internal);
+        if (campaign.hasElements()) initCampaignData();
+        if (campaign.hasCampaignElement()) {
+            setCampaignAccount(campaign.getAccount());
+            setCampaignId(campaign.getId());
+            if (campaign.getBaseViewIndex() != null) setBaseViewIndex(campaign.getBaseViewIndex());
+            if (campaign.getFinalViewIndex() != null) setFinalViewIndex(campaign.getFinalViewIndex());
+            if (campaign.getRepeatCycle() != null) setRepeatCycle(campaign.getRepeatCycle());
+            if (campaign.getRefreshInterval() != null) setRefreshInterval(campaign.getRefreshInterval());
         }
-        for (int i= numInternalChildren; i< saveCampaignSize; i++) {
-            AppyAdService.getInstance().debugOut(TAG,"Removing previous ad at index "+i);
-            tozAdCampaign.remove(numInternalChildren);
+        tozAdCampaign = Collections.unmodifiableList(ads);
+        AppyAdLog.debug(TAG, "Current number of ads in campaign is {}", ads.size());
+        return (shownIndex);
+    }
+
+    /**
+     * This method moves the views of the previous ad campaign over to the ads of a new one.  The two campaigns are matched up by ad ID:
+     *      <ul><li>An ad whose ID and ad element are unchanged takes over the view, and bitmap, of the previous one.</li></ul>
+     *      <ul><li>An ad whose ID is unchanged, but whose ad element has changed, has the previous view rebound to its new bitmap.</li></ul>
+     *      <ul><li>Any other ad gets a view when it is first shown.  The views of ads which are no longer in the campaign are removed.</li></ul>
+     * Called every time there has been a new ad campaign retrieved from the server.
+     *
+     * @param oldAds - A List of the external {@link AppyAd} objects of the previous campaign.
+     * @param ads - A List of all {@link AppyAd} objects of the new campaign.
+     * @param first - An int value representing the index of the first external ad in the new campaign.
+     * @return - An int value representing the index of the ad on display in the new campaign (-1 if it is no longer part of it).
+     */
+    private int mergeNewCampaign(List<AppyAd> oldAds, List<AppyAd> ads, int first) {
+        Map<String, AppyAd> previous = new HashMap<String, AppyAd>();
+        for (AppyAd old : oldAds) {
+            if ((old.mAdID != null) && (old.mView != null)) previous.put(old.mAdID, old);
+        }
+        View shown = getCurrentView();
+        int shownIndex = -1;
+        int kept = 0;
+        int rebound = 0;
+        for (int i = first; i < ads.size(); i++) {
+            AppyAd toa = ads.get(i);
+            AppyAd old = (toa.mAdID != null) ? previous.remove(toa.mAdID) : null;
+            if (old == null) continue;
+            if (isSameCreative(old, toa)) kept++;
+            else {
+                Bitmap bm = (toa.mAd != null) ? toa.mAd : AppyAdBitmapCache.get(toa.mCacheKey);
+                if ((bm == null) || !(old.mView instanceof ImageView) || (toa.mType != AppyAdStatic.TOZIMAGE)) continue;
+                ((ImageView) old.mView).setImageBitmap(bm);
+                toa.mAd = null;
+                rebound++;
+            }
+            toa.mView = old.mView;
+            old.mView = null;
+            if (toa.mView == shown) shownIndex = i;
         }
+        int removed = 0;
+        for (AppyAd old : oldAds) {
+            if (old.mView != null) {
+                recycleAdView(old.mView);
+                removeView(old.mView);
+                old.mView = null;
+                removed++;
+            }
+        }
+        AppyAdLog.debug(TAG, "Merged new campaign: {} ads kept, {} rebound, {} previous ads replaced.", kept, rebound, removed);
+        return (shownIndex);
+    }
+
+    /**
+     * This method reveals whether two ads, typically of successive campaigns, show the same ad element.
+     *
+     * @param a - The first {@link AppyAd} object.
+     * @param b - The second {@link AppyAd} object.
+     * @return - A boolean value indicating whether or not both ads have the same ID and ad element.
+     */
+    private static boolean isSameCreative(AppyAd a, AppyAd b) {
+        return ((a.mAdID != null) && a.mAdID.equals(b.mAdID) && (a.mType == b.mType)
+                && ((a.mAdSrc == null) ? (b.mAdSrc == null) : a.mAdSrc.equals(b.mAdSrc)));
+    }
+
+    /**
+     * This method looks for an ad of the current campaign which shows the same ad element as the given one, and
+     * already has a view.  A new campaign does not need to load the ad element again for such an ad.
+     * Called by the {@link AppyAdConfig} object while it builds a new campaign.
+     *
+     * @param toa - The {@link AppyAd} object of the new campaign.
+     * @return - The {@link AppyAd} object of the current campaign, or null if there is none.
+     */
+    public AppyAd findUnchangedAd(AppyAd toa) {
+        if ((toa == null) || (toa.mAdID == null)) return (null);
+        List<AppyAd> ads = tozAdCampaign;
+        for (int i = numInternalChildren; i < ads.size(); i++) {
+            AppyAd old = ads.get(i);
+            if ((old.mView != null) && isSameCreative(old, toa)) return (old);
+        }
+        return (null);
+    }
+
+    /**
+     * This method returns the ad whose view is on display.
+     * @return - The {@link AppyAd} object on display, or null if there is none.
+     */
+    private AppyAd getShownAd() {
+        View shown = getCurrentView();
+        if (shown != null) {
+            for (AppyAd toa : tozAdCampaign) {
+                if (toa.mView == shown) return (toa);
+            }
+        }
+        return (null);
     }
 
     /**
@@ -544,7 +697,7 @@ public class AppyAdManager extends ViewFlipper {
      */
     public void handleAdClicks(View v) {
         if (!tozAdCampaign.isEmpty()) {
-            AppyAd toa = tozAdCampaign.get(getDisplayedChild());
+            AppyAd toa = getShownAd();
             if (toa != null) {
                 if (toa.mTracking) AppyAdService.getInstance().trackAdCampaign(this, toa);
                 String link = toa.mLink;
@@ -564,7 +717,7 @@ public class AppyAdManager extends ViewFlipper {
                             getContext().startActivity(browserIntent);
                         }
                         catch (Exception e) {
-                            AppyAdService.getInstance().errorOut(TAG, "Unable to navigate to specified link - "+link);
+                            AppyAdLog.error(TAG, "Unable to navigate to specified link - {}", link);
                         }
                     }
                 }
@@ -574,19 +727,24 @@ public class AppyAdManager extends ViewFlipper {
 
     /**
      * This method adds a new ad view, which correlates to a specific entry in the ad campaign's {@link ArrayList}.
+     * A spare view is reused when there is one.
+     * The ad's bitmap is taken from the {@link AppyAdBitmapCache} when the ad no longer holds it itself.
      * @param toa - The {@link AppyAd} object to use to get the information from in order to ad the new ad View.
      */
     public void addAdView(AppyAd toa) {
         if (toa != null) {
-            if (toa.mAd != null) {
+            Bitmap bm = (toa.mAd != null) ? toa.mAd : AppyAdBitmapCache.get(toa.mCacheKey);
+            if (bm != null) {
                 switch (toa.mType) {
                     case AppyAdStatic.TOZIMAGE:
-                        ImageView iv = new ImageView(getContext());
-                        iv.setImageBitmap(toa.mAd);
-                        if ((getChildCount() == 0) && (!tozAdCampaign.isEmpty())) setInAnimation(AppyAdService.getInstance().setAnimation("in", tozAdCampaign.get(nextAd)));
+                        ImageView iv = spareAdViews.poll();
+                        if (iv == null) iv = new ImageView(getContext());
+                        iv.setImageBitmap(bm);
+                        if (getChildCount() == 0) setInAnimation(transitions.get("in", toa));
                         addView(iv, getChildCount());
-                        toa.mAd = null;  // No sense in wasting space.
-                        AppyAdService.getInstance().debugOut(TAG, "Added a view for external ad. Current view count is " + getChildCount());
+                        toa.mView = iv;
+                        AppyAdLog.debug(TAG, "Added a view for external ad. Current view count is {}", getChildCount());
+                        toa.mAd = null;  // No sense in wasting space. The bitmap is kept by the cache while there is room.
                         break;
                 }
             }
@@ -594,41 +752,119 @@ public class AppyAdManager extends ViewFlipper {
     }
 
     /**
-     * This method is called when the handler receives a message from the retriever thread indicating
-     * it is time to switch to the next ad view.  Note that when an ad campaign has just been received,
-     * extra measures are taken to re-initialize the existing views, counters, pointers appropriately.
+     * This method keeps a view which is no longer needed aside, so that it can be reused by a later campaign.
+     * @param v - The View being removed.
+     */
+    private void recycleAdView(View v) {
+        if ((v instanceof ImageView) && (spareAdViews.size() < MAX_SPARE_AD_VIEWS)) {
+            ((ImageView) v).setImageDrawable(null);
+            spareAdViews.push((ImageView) v);
+        }
+    }
+
+    /**
+     * This method is called on the scheduler thread once the next ad has been picked by {@link #prepareNextAd() prepareNextAd},
+     * ahead of its transition.  It asks for the ad's bitmap to be readied for drawing, so that this work is not
+     * done in the frame of the transition.
+     */
+    public void prepareNextCreative() {
+        Rotation r = rotation.get();
+        if ((r.next >= 0) && (r.next < r.ads.size())) r.ads.get(r.next).prepareCreative();
+    }
+
+    /**
+     * This method is called when the handler receives a message from the scheduler indicating that the next
+     * ad is due shortly.  It adds the view of the next ad, if it has not been added yet, and builds the
+     * animations of the transition, so that {@link #showNextAd() showNextAd} only has to flip to it.  Nothing is
+     * prepared while a new ad campaign is waiting to be put in place.
+     */
+    public void prepareNextView() {
+        if (reInitializeCampaign || (pendingCampaign.get() != null)) return;
+        Rotation r = rotation.get();
+        addNextAdView(r.ads, r.current, r.next);
+        if ((r.next < r.ads.size()) && (r.current < r.ads.size()) && (r.ads.get(r.next).mView != getCurrentView())) {
+            preparedInAnimation = transitions.get("in", r.ads.get(r.next));
+            preparedOutAnimation = transitions.get("out", r.ads.get(r.current));
+            preparedAd = r.next;
+            AppyAdLog.debug(TAG, "Prepared view and animations for ad at index {}", r.next);
+        }
+    }
+
+    /**
+     * This method adds the view of the next ad, unless it already has one.
+     * @param ads - A List of the {@link AppyAd} objects of the campaign.
+     * @param current - An int value representing the index of the ad shown.
+     * @param next - An int value representing the index of the next ad.
+     */
+    private void addNextAdView(List<AppyAd> ads, int current, int next) {
+        if (AppyAdLog.isDebug()) AppyAdLog.debug(TAG, "Indexes: current={}, next={}, base={}", current, next, baseAd);
+        if ((next >= numInternalChildren) && (next < ads.size()) && (ads.get(next).mView == null)) {
+            addAdView(ads.get(next));
+        }
+    }
+
+    /**
+     * This method is called when the handler receives a message from the scheduler indicating
+     * it is time to switch to the next ad view.  When the view and animations were prepared by
+     * {@link #prepareNextView() prepareNextView}, this is just the flip.  Note that when an ad campaign has just been published,
+     * it is put in place by {@link #installCampaign(AppyAdCampaign) installCampaign}, and the rotation carries on
+     * from the ad on display when it is still part of the new campaign.
      */
     public void showNextAd() {
-        if (reInitializeCampaign) clearExternalAds();
-        int extViewIndicator = getChildCount() - (1 + numInternalChildren);
-        AppyAdService.getInstance().debugOut(TAG,"External view indicator is "+extViewIndicator+". Indexes: current="+curAd+", next="+nextAd+", base="+baseAd);
-        if ((extViewIndicator < nextAd) && (nextAd > (numInternalChildren-1))) {
-            addAdView(tozAdCampaign.get(nextAd));
+        long start = AppyAdScheduler.now();
+        Integer refreshInterval = tozAdCampaignRetrievalInterval;
+        Rotation r = rotation.get();
+        List<AppyAd> ads = r.ads;
+        int current = r.current;
+        int nextIndex = r.next;
+        AppyAdCampaign campaign = pendingCampaign.getAndSet(null);
+        if (campaign != null) {
+            reInitializeCampaign = true;
+            preparedAd = -1;
+            current = Math.max(0, installCampaign(campaign));
+            nextIndex = current;
+            ads = tozAdCampaign;
+            transitions.prepare(ads);
         }
-        if (reInitializeCampaign && (nextAd == 0) && (numInternalChildren > 0) && (getDisplayedChild() == 0)) {
-            AppyAdService.getInstance().debugOut(TAG,"Leaving root internal ad (index=0) displayed (first pass with new ad campaign)");
+        addNextAdView(ads, current, nextIndex);
+        if (reInitializeCampaign && (nextIndex == 0) && (numInternalChildren > 0) && (getDisplayedChild() == 0)) {
+            AppyAdLog.debug(TAG, "Leaving root internal ad (index=0) displayed (first pass with new ad campaign)");
         }
         else {
-            AppyAdService.getInstance().debugOut(TAG,"Current ad bumped to next index");
-            if (nextAd != getDisplayedChild()) {
-                setInAnimation(AppyAdService.getInstance().setAnimation("in", tozAdCampaign.get(nextAd)));
-                setOutAnimation(AppyAdService.getInstance().setAnimation("out", tozAdCampaign.get(curAd)));
-                setDisplayedChild(nextAd);
+            AppyAdLog.debug(TAG, "Current ad bumped to next index");
+            View next = (nextIndex < ads.size()) ? ads.get(nextIndex).mView : null;
+            if ((next != null) && (next != getCurrentView())) {
+                if (preparedAd == nextIndex) {
+                    setInAnimation(preparedInAnimation);
+                    setOutAnimation(preparedOutAnimation);
+                }
+                else {
+                    setInAnimation(transitions.get("in", ads.get(nextIndex)));
+                    setOutAnimation(transitions.get("out", ads.get(current)));
+                }
+                setDisplayedChild(indexOfChild(next));
             }
-            curAd = nextAd;
+            current = nextIndex;
         }
+        preparedAd = -1;
+        preparedInAnimation = null;
+        preparedOutAnimation = null;
         if (reInitializeCampaign) initializeCounters();
+        publishRotation(ads, current);
+        if ((campaign != null) && hasBeenRefreshed() && !sameValue(refreshInterval, tozAdCampaignRetrievalInterval)) {
+            AppyAdService.getInstance().scheduleRefresh(this, false);
+        }
+        AppyAdService.getInstance().getMetrics().recordSince(AppyAdMetrics.SHOW_NEXT_AD, start);
     }
 
     /**
-     * This method is called by the {@link AppyAdConfig} object when a new ad campaign is being retrieved.
-     * New ads are implemented into the ad campaign's {@link ArrayList}.
-     *
-     * @param toa - The new {@link AppyAd} object to add to the current campaign {@link ArrayList}
+     * This method compares two optional values.
+     * @param a - The first Integer value (may be null).
+     * @param b - The second Integer value (may be null).
+     * @return - A boolean value indicating whether or not both are null or equal.
      */
-    public void addAd(AppyAd toa) {
-        if (toa != null) tozAdCampaign.add(toa);
-        AppyAdService.getInstance().debugOut(TAG,"Current number of ads in campaign is "+tozAdCampaign.size());
+    private static boolean sameValue(Integer a, Integer b) {
+        return ((a == null) ? (b == null) : a.equals(b));
     }
 
     /**
@@ -653,6 +889,45 @@ public class AppyAdManager extends ViewFlipper {
         else tozAdCampaignID = "default";
     }
 
+    /**
+     * This method records the version of the campaign package currently loaded, along with the HTTP
+     * validators the server supplied with it.  These are sent back to the server on the next refresh
+     * so that an unchanged campaign does not need to be downloaded, parsed and rebuilt again.
+     *
+     * @param version - A String value representing a digest of the campaign package.
+     * @param eTag - A String representing the ETag of the campaign package (may be null).
+     * @param lastModified - A String representing the Last-Modified date of the campaign package (may be null).
+     */
+    public void setCampaignVersion(String version, String eTag, String lastModified) {
+        tozAdCampaignVersion = version;
+        tozAdCampaignETag = eTag;
+        tozAdCampaignLastModified = lastModified;
+    }
+
+    /**
+     * This method returns the version of the campaign package currently loaded.
+     * @return version - A String value representing a digest of the campaign package (null if none is loaded).
+     */
+    public String getCampaignVersion() {
+        return (tozAdCampaignVersion);
+    }
+
+    /**
+     * This method returns the ETag of the campaign package currently loaded.
+     * @return eTag - A String representing the ETag (null if the server did not supply one).
+     */
+    public String getCampaignETag() {
+        return (tozAdCampaignETag);
+    }
+
+    /**
+     * This method returns the Last-Modified date of the campaign package currently loaded.
+     * @return lastModified - A String representing the Last-Modified date (null if the server did not supply one).
+     */
+    public String getCampaignLastModified() {
+        return (tozAdCampaignLastModified);
+    }
+
     /**
      * This method returns the Integer value of a String.
      * @param value - A String representing the integer to parse
@@ -687,7 +962,7 @@ public class AppyAdManager extends ViewFlipper {
             internalBuffer = numInternalChildren;
         }
         baseViewIndex = parseIntegerValue(idx,0) + internalBuffer;
-        AppyAdService.getInstance().debugOut(TAG,"Set Base View Index to "+baseViewIndex);
+        AppyAdLog.debug(TAG, "Set Base View Index to {}", baseViewIndex);
     }
 
     /**
@@ -705,7 +980,7 @@ public class AppyAdManager extends ViewFlipper {
         }
         finalViewIndex = parseIntegerValue(idx,null);
         if (finalViewIndex != null) finalViewIndex += internalBuffer;
-        AppyAdService.getInstance().debugOut(TAG,"Set Final View Index to "+finalViewIndex);
+        AppyAdLog.debug(TAG, "Set Final View Index to {}", finalViewIndex);
     }
 
     /**
@@ -718,18 +993,63 @@ public class AppyAdManager extends ViewFlipper {
      */
     public void setRepeatCycle(String rc) {
         repeatCycle = parseIntegerValue(rc,null);
-        AppyAdService.getInstance().debugOut(TAG,"Set Repeat Cycle to "+repeatCycle);
+        resetRepeatCycles();
+        AppyAdLog.debug(TAG, "Set Repeat Cycle to {}", repeatCycle);
+    }
+
+    /**
+     * This method sets how ad images are decoded for this AppyAdManager view object.
+     *
+     * @param mode - A String value, either "viewport" to decode ad images at the size of this view, or "full" to decode them at their original resolution.
+     */
+    public void setCreativeDecoding(String mode) {
+        if ((mode != null) && (mode.toLowerCase().equals("full"))) creativeDecoding = AppyAdStatic.DECODE_FULL;
+        else creativeDecoding = AppyAdStatic.DECODE_VIEWPORT;
+        AppyAdLog.debug(TAG, "Set Creative Decoding to {}", creativeDecoding);
+    }
+
+    /**
+     * This method sets the pixel format ad images are decoded to for this AppyAdManager view object.
+     *
+     * @param config - A String value, either "argb_8888" or "rgb_565".  Any other value selects the system default.
+     */
+    public void setBitmapConfig(String config) {
+        creativeBitmapConfig = null;
+        if (config != null) {
+            if (config.toLowerCase().equals("rgb_565")) creativeBitmapConfig = Bitmap.Config.RGB_565;
+            else if (config.toLowerCase().equals("argb_8888")) creativeBitmapConfig = Bitmap.Config.ARGB_8888;
+        }
+        AppyAdLog.debug(TAG, "Set Bitmap Config to {}", creativeBitmapConfig);
+    }
+
+    /**
+     * This method returns the {@link AppyAdDecoder} object used to decode the ad images of this AppyAdManager
+     * view object.  Until the view has been measured, the size of the screen is used as the target size.
+     *
+     * @return - An {@link AppyAdDecoder} object.
+     */
+    public AppyAdDecoder getCreativeDecoder() {
+        int w = tozAdViewWidth;
+        int h = tozAdViewHeight;
+        if ((w <= 0) || (h <= 0)) {
+            DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
+            w = metrics.widthPixels;
+            h = metrics.heightPixels;
+        }
+        return (new AppyAdDecoder(creativeDecoding, creativeBitmapConfig, w, h));
     }
 
     /**
      * This method is used to check to see if an ad campaign exists. (Either by including static
      * views within the AppyAdManager component in the layout xml file, or with the retrieval of
-     * dynamic ads within an AppyAds campaign from the server.
+     * dynamic ads within an AppyAds campaign from the server.)  A campaign which has been published,
+     * but not yet put in place on the UI thread, counts as well.
      *
      * @return exists - A boolean value indicating whether or not a campaign has been set.
      */
     public boolean hasAdCampaign() {
-        return (!tozAdCampaign.isEmpty());
+        AppyAdCampaign pending = pendingCampaign.get();
+        return (!tozAdCampaign.isEmpty() || ((pending != null) && !pending.getAds().isEmpty()));
     }
 
     /**
@@ -738,7 +1058,7 @@ public class AppyAdManager extends ViewFlipper {
      */
     public void initializeCounters() {
         resetCounters();
-        lastAd = tozAdCampaign.size() - 1;
+        int lastAd = tozAdCampaign.size() - 1;
         if (baseAd > lastAd) baseAd = lastAd;
         if (baseViewIndex > lastAd) baseViewIndex = lastAd;
         if (baseViewIndex < 0) baseViewIndex = 0;
@@ -762,7 +1082,9 @@ public class AppyAdManager extends ViewFlipper {
      * @param sw - A boolean value to turn ad processing on or off.
      */
     public void setAdProcessing(boolean sw) {
+        boolean resume = sw && !mAdsOn;
         mAdsOn = sw;
+        if (resume) AppyAdService.getInstance().resumeManager(this);
     }
 
     /**
@@ -828,10 +1150,10 @@ public class AppyAdManager extends ViewFlipper {
     public void setCustomSpec(String s) {
         if (s.length() <= 128) {
             tozCustomSpec = s;
-            AppyAdService.getInstance().debugOut(TAG, "Set custom parameter to " + tozCustomSpec);
+            AppyAdLog.debug(TAG, "Set custom parameter to {}", tozCustomSpec);
         }
         else {
-            AppyAdService.getInstance().errorOut(TAG, "Custom parameter is too long! Not set.");
+            AppyAdLog.error(TAG, "Custom parameter is too long! Not set.");
         }
     }
 
@@ -849,7 +1171,7 @@ public class AppyAdManager extends ViewFlipper {
         if ((mHandle != null) && (controlValue != null)) {
             parentHandler = mHandle;
             parentControl = controlValue;
-            AppyAdService.getInstance().debugOut(TAG, "Set Parent callback parameters with flag " + parentControl);
+            AppyAdLog.debug(TAG, "Set Parent callback parameters with flag {}", parentControl);
         }
     }
 
@@ -965,16 +1287,16 @@ public class AppyAdManager extends ViewFlipper {
             totalCampaignDuration += tozAdCampaign.get(i).mAdDuration;
             if (i >= numInternalChildren) externalCampaignDuration += tozAdCampaign.get(i).mAdDuration;
         }
-        AppyAdService.getInstance().debugOut(TAG,"Current ad campaign has external ad duration of "+externalCampaignDuration+". Total total campaign duration is "+totalCampaignDuration);
+        AppyAdLog.debug(TAG, "Current ad campaign has external ad duration of {}. Total total campaign duration is {}", externalCampaignDuration, totalCampaignDuration);
 
         if ((tozAdCampaignRetrievalInterval != null) && (tozAdCampaignRetrievalInterval > 0)) {
             int minRefresh = Math.max(totalCampaignDuration,AppyAdService.getInstance().MINIMUM_REFRESH_TIME);
             if (tozAdCampaignRetrievalInterval < minRefresh) {
-                AppyAdService.getInstance().debugOut(TAG,"Adjusting refresh interval upward to "+minRefresh);
+                AppyAdLog.debug(TAG, "Adjusting refresh interval upward to {}", minRefresh);
                 tozAdCampaignRetrievalInterval = minRefresh;
             }
             if (tozAdCampaignRetrievalInterval > AppyAdService.getInstance().MAXIMUM_REFRESH_TIME) {
-                AppyAdService.getInstance().debugOut(TAG,"Adjusting refresh interval downward to "+AppyAdService.getInstance().MAXIMUM_REFRESH_TIME);
+                AppyAdLog.debug(TAG, "Adjusting refresh interval downward to {}", AppyAdService.getInstance().MAXIMUM_REFRESH_TIME);
                 tozAdCampaignRetrievalInterval = AppyAdService.getInstance().MAXIMUM_REFRESH_TIME;
             }
         }
@@ -989,45 +1311,72 @@ public class AppyAdManager extends ViewFlipper {
      */
     public void setRefreshInterval(String interval) {
         tozAdCampaignRetrievalInterval = parseIntegerValue(interval,0);
-        AppyAdService.getInstance().debugOut(TAG,"Set refresh interval to "+tozAdCampaignRetrievalInterval);
+        AppyAdLog.debug(TAG, "Set refresh interval to {}", tozAdCampaignRetrievalInterval);
     }
 
     /**
-     * This value is called by the retriever thread to prepare the next ad view to be shown.
+     * This value is called by the scheduler to prepare the next ad view to be shown.  The next ad is picked from one
+     * snapshot of the campaign and the rotation, and published only if the UI thread has not changed either in
+     * the meantime, as when a new campaign is put in place.  Otherwise it is picked again.
      * @return nextAdPreparedOK - A boolean value indicating whether or not a new ad is ready to be shown.
      */
     public boolean prepareNextAd() {
-        boolean retVal = false;
+        if (pendingCampaign.get() != null) return (true);  // showNextAd puts it in place and picks the ad itself
 
-        if (tozAdCampaign.size() <= 1) return (retVal);
+        while (true) {
+            Rotation r = rotation.get();
+            int lastAd = r.ads.size() - 1;
+            if (lastAd < 1) return (false);
 
-        AppyAdService.getInstance().debugOut(TAG,"Preparing next Ad... indexes: current="+curAd+", next="+nextAd+", base="+baseAd+", last="+lastAd+", repeatCycle="+repeatCycle);
+            if (AppyAdLog.isDebug()) AppyAdLog.debug(TAG, "Preparing next Ad... indexes: current={}, next={}, base={}, last={}, repeatCycle={}", r.current, r.next, r.base, lastAd, r.cycles);
 
-        if ((repeatCycle != null) && (repeatCycle < 0)) return (false);
+            if ((r.cycles != null) && (r.cycles < 0)) return (false);
 
-        if (curAd < lastAd) {
-            nextAd = curAd + 1;
-            retVal = true;
-            AppyAdService.getInstance().debugOut(TAG,"Prepared next Ad... next="+nextAd);
-        }
-        else if ((curAd == lastAd) && (curAd != baseViewIndex)) {
-            nextAd = baseViewIndex;
-            retVal = true;
-            AppyAdService.getInstance().debugOut(TAG,"Prepped next Ad... next="+nextAd+" (Set to base view index, pending repeat cycle check.)");
-            if (repeatCycle != null) {
-                repeatCycle--;
-                if (repeatCycle < 0) {
-                    if (finalViewIndex != null) {
-                        if (finalViewIndex > lastAd) finalViewIndex = lastAd;
-                        if (finalViewIndex < 0) finalViewIndex = 0;
-                        nextAd = finalViewIndex;
-                        AppyAdService.getInstance().debugOut(TAG,"Prepared next Ad... next="+nextAd+" (Set to final view index)");
+            int next;
+            Integer cycles = r.cycles;
+            if (r.current < lastAd) {
+                next = r.current + 1;
+                AppyAdLog.debug(TAG, "Prepared next Ad... next={}", next);
+            }
+            else if ((r.current == lastAd) && (r.current != Math.min(r.base, lastAd))) {
+                next = Math.min(r.base, lastAd);
+                AppyAdLog.debug(TAG, "Prepped next Ad... next={} (Set to base view index, pending repeat cycle check.)", next);
+                if (cycles != null) {
+                    cycles--;
+                    if ((cycles < 0) && (r.finalIndex != null)) {
+                        next = Math.max(0, Math.min(r.finalIndex, lastAd));
+                        AppyAdLog.debug(TAG, "Prepared next Ad... next={} (Set to final view index)", next);
                     }
                 }
             }
+            else return (false);
+
+            if (rotation.compareAndSet(r, new Rotation(r.ads, r.current, next, r.base, r.finalIndex, cycles))) return (true);
+            AppyAdLog.debug(TAG, "Rotation changed while preparing the next Ad. Preparing again.");
         }
+    }
 
-        return (retVal);
+    /**
+     * This method publishes the position of the ad rotation, on the UI thread, once the ad shown or the campaign
+     * has changed.  The base and final view indexes are taken as they stand, and the repeat cycles left carry on.
+     *
+     * @param ads - A List of the {@link AppyAd} objects of the campaign in place.
+     * @param current - An int value representing the index of the ad shown.
+     */
+    private void publishRotation(List<AppyAd> ads, int current) {
+        int base = (baseViewIndex != null) ? baseViewIndex : 0;
+        rotation.set(new Rotation(ads, current, current, base, finalViewIndex, rotation.get().cycles));
+    }
+
+    /**
+     * This method starts the count of repeat cycles over from the repeat cycle setting, leaving the rest of the
+     * position of the ad rotation as it stands.
+     */
+    private void resetRepeatCycles() {
+        while (true) {
+            Rotation r = rotation.get();
+            if (rotation.compareAndSet(r, new Rotation(r.ads, r.current, r.next, r.base, r.finalIndex, repeatCycle))) return;
+        }
     }
 
     /**
@@ -1056,32 +1405,77 @@ public class AppyAdManager extends ViewFlipper {
 
     /**
      * This method increments the error counter and checks to see if the maximum number of errors
-     * has been reached.  If so, it will turn off ad processing.
+     * has been reached.  If so, the circuit of the {@link AppyAdBackoff} object of this view opens.
      *
      * @param increment - An int value specifying the amount to increment the error counter by prior to checking whether or not it has surpassed the limit.
      */
     public void checkErrorLimit(int increment) {
+        recordFailure(increment, 0);
+    }
+
+    /**
+     * This method records a failed campaign fetch with the {@link AppyAdBackoff} object of this view.  If this
+     * opens the circuit, the ad rotation is paused until a probe fetch succeeds.  Whether the application has
+     * switched ad processing on or off is left alone.
+     *
+     * @param increment - An int value specifying the amount to increment the error counter by.
+     * @param retryAfter - A long value representing the minimum delay in milliseconds asked for by the server (0 if none).
+     * @return - A long value representing the delay in milliseconds before the next attempt.
+     */
+    public long recordFailure(int increment, long retryAfter) {
         errorCounter += increment;
-        if (errorCounter >= AppyAdService.getInstance().maxErrors()) {
-            setAdProcessing(false);
-            // todo ????
-        }
+        return (tozBackoff.onFailure(increment, retryAfter));
+    }
+
+    /**
+     * This method records a successful campaign fetch, clearing the error counter.
+     * @return - A boolean value indicating whether or not this success closed an open circuit, so that the ad rotation should resume.
+     */
+    public boolean recordSuccess() {
+        errorCounter = 0;
+        delayCounter = 0;
+        return (tozBackoff.onSuccess());
     }
 
     /**
-     * This method increments the delay counter until the maximum delay time has been reached.
-     * Once it has been reached, it will reset the error counter to just under the error limit
-     * and turn ad processing back on to try one more time.
+     * This method is called once the retry delay of an open circuit has passed.  It lets one probe fetch through.
      */
     public void processDelay() {
-        if (errorCounter > 0) {
-            if (delayCounter >= AppyAdService.getInstance().maxDelay()) {
-                setAdProcessing(true);
-                errorCounter = AppyAdService.getInstance().maxErrors() - 1;
-                delayCounter = 0;
-            }
-            else delayCounter++;
+        if (tozBackoff.probe()) delayCounter = 0;
+    }
+
+    /**
+     * This method reveals whether the ads of this view are rotated: ad processing must be switched on, and the circuit
+     * of its {@link AppyAdBackoff} object must be closed.
+     * @return - A boolean value indicating whether or not the ads are rotated.
+     */
+    public boolean isRotating() {
+        return (mAdsOn && tozBackoff.isClosed());
+    }
+
+    /**
+     * This method returns the object deciding when failed campaign fetches for this view are retried.
+     * @return - The {@link AppyAdBackoff} object of this view.
+     */
+    public AppyAdBackoff getBackoff() {
+        return (tozBackoff);
+    }
+
+    /**
+     * This method returns the encoded fixed part of the requests of this view, building it again if any
+     * of the values it holds has changed since it was built.
+     * @return - The {@link AppyAdRequestTemplate} object of this view.
+     */
+    public AppyAdRequestTemplate getRequestTemplate() {
+        AppyAdService service = AppyAdService.getInstance();
+        AppyAdRequestTemplate template = tozRequestTemplate;
+        if ((template == null) || !template.matches(tozAdAccountID, service.getApplicationID(), tozCampaignSize, service.getUUID(),
+                mScreenDensity, tozAdViewWidth, tozAdViewHeight, defaultTracking, tozApplicationName)) {
+            template = new AppyAdRequestTemplate(tozAdAccountID, service.getApplicationID(), tozCampaignSize, service.getUUID(),
+                    mScreenDensity, tozAdViewWidth, tozAdViewHeight, defaultTracking, tozApplicationName);
+            tozRequestTemplate = template;
         }
+        return (template);
     }
 
     /**
@@ -1118,50 +1512,139 @@ public class AppyAdManager extends ViewFlipper {
     }
 
     /**
-     * This method is called by the retriever thread to determine the time to wait before flagging
+     * This method is called by the scheduler to determine the time to wait before flagging
      * the next ad to be shown.
      *
      * @return interval - An int value representing the number of milliseconds to wait for the next ad to be shown.
      */
     public int getSleepInterval() {
-        if ((curAd < 0) || (tozAdCampaign.isEmpty())) {
-            AppyAdService.getInstance().debugOut(TAG, "Sleep interval defaulting to " + AppyAdService.getInstance().getDefaultSleepInterval());
+        Rotation r = rotation.get();
+        List<AppyAd> ads = r.ads;
+        int index = r.current;
+        if ((index < 0) || (index >= ads.size())) {
+            AppyAdLog.debug(TAG, "Sleep interval defaulting to {}", AppyAdService.getInstance().getDefaultSleepInterval());
             return (AppyAdService.getInstance().getDefaultSleepInterval());
         }
         else {
-            AppyAdService.getInstance().debugOut(TAG,"Sleep interval for current ad is "+tozAdCampaign.get(curAd).mAdDuration);
-            return (tozAdCampaign.get(curAd).mAdDuration);
+            if (AppyAdLog.isDebug()) AppyAdLog.debug(TAG, "Sleep interval for current ad is {}", ads.get(index).mAdDuration);
+            return (ads.get(index).mAdDuration);
         }
         //else return (sleepInterval);
     }
 
     /**
-     * This method is called after a new campaign has been retrieved and prepared.
+     * This method returns the display time of one of the ads in the campaign.
+     *
+     * @param index - An int value representing the index of the ad in the campaign.
+     * @return interval - An int value representing the number of milliseconds the ad is shown for, or the default sleep interval if there is no such ad.
+     */
+    public int getAdDuration(int index) {
+        return (getAdDuration(tozAdCampaign, index));
+    }
+
+    /**
+     * This method returns the display time of one of the ads in the given list.
+     *
+     * @param ads - A List of {@link AppyAd} objects.
+     * @param index - An int value representing the index of the ad in the list.
+     * @return interval - An int value representing the number of milliseconds the ad is shown for, or the default sleep interval if there is no such ad.
+     */
+    private static int getAdDuration(List<AppyAd> ads, int index) {
+        if ((index < 0) || (index >= ads.size())) return (AppyAdService.getInstance().getDefaultSleepInterval());
+        return (ads.get(index).mAdDuration);
+    }
+
+    /**
+     * This method returns the display time of the ad currently shown.
+     *
+     * @return interval - An int value representing the number of milliseconds the current ad is shown for.
+     */
+    public int getCurrentAdDuration() {
+        Rotation r = rotation.get();
+        return (getAdDuration(r.ads, r.current));
+    }
+
+    /**
+     * This method returns the display time of the ad prepared by {@link #prepareNextAd() prepareNextAd}.
+     *
+     * @return interval - An int value representing the number of milliseconds the next ad is shown for.
+     */
+    public int getNextAdDuration() {
+        Rotation r = rotation.get();
+        return (getAdDuration(r.ads, r.next));
+    }
+
+    /**
+     * This method is called after a new campaign has been retrieved and prepared.  The next refresh
+     * is due one refresh interval from now.
      */
     public void markRefreshed() {
-        tozAdCampaignRetrievalCounter = 0;
+        tozAdCampaignRefreshTime = AppyAdScheduler.now();
+        tozAdCampaignRefreshed = true;
+    }
+
+    /**
+     * This method reveals whether or not a campaign package has been received from the server since
+     * this view was created.
+     *
+     * @return refreshed - A boolean value indicating whether or not the campaign has been refreshed from the server.
+     */
+    public boolean hasBeenRefreshed() {
+        return (tozAdCampaignRefreshed);
     }
 
     /**
-     * This method is called by the retriever thread to determine if a new ad campaign package
-     * should be retrieved from the server.  It increments a retriever counter to keep track of
-     * the time that has passed since the last ad campaign refresh.
+     * This method is called to determine if a new ad campaign package should be retrieved from the server.
+     * The time since the last refresh is measured on the monotonic clock of the {@link AppyAdScheduler}.
      *
      * @return refresh - A boolean value indicating whether or not the time has been reached for a new campaign to be fetched.
      */
     public boolean timeToRefresh() {
-        if (tozAdCampaignRetrievalCounter == null) {
-            return (true);
-        }
-        else if (tozAdCampaignRetrievalInterval != 0) {
-            tozAdCampaignRetrievalCounter += getSleepInterval();
+        return (getRefreshDelay() == 0);
+    }
 
-            AppyAdService.getInstance().debugOut(TAG,"Ad Campaign refresh counter="+tozAdCampaignRetrievalCounter);
-            if (tozAdCampaignRetrievalCounter >= tozAdCampaignRetrievalInterval) {
-                tozAdCampaignRetrievalCounter = 0;
-                return (true);
-            }
+    /**
+     * This method returns the time left until a new ad campaign package should be retrieved from the server.
+     *
+     * @return delay - A long value representing the number of milliseconds until the next refresh is due (0 if due now, or -1 if the campaign is never refreshed again).
+     */
+    public long getRefreshDelay() {
+        if (!tozAdCampaignRefreshed) return (0);
+        if ((tozAdCampaignRetrievalInterval == null) || (tozAdCampaignRetrievalInterval <= 0)) return (-1);
+        long elapsed = (AppyAdScheduler.now() - tozAdCampaignRefreshTime) / 1000000L;
+        return (Math.max(0, tozAdCampaignRetrievalInterval - elapsed));
+    }
+
+    /**
+     * This class holds the position of the ad rotation, together with the campaign and the settings it applies to.
+     * A new object is published for every change, so that the scheduler thread, which picks the next ad, and the UI
+     * thread, which shows it and puts new campaigns in place, always work from one consistent position.
+     */
+    private static final class Rotation {
+
+        private final List<AppyAd> ads;
+        private final int current;
+        private final int next;
+        private final int base;
+        private final Integer finalIndex;
+        private final Integer cycles;
+
+        /**
+         * This constructor defines the position.
+         * @param ads - A List of the {@link AppyAd} objects of the campaign.
+         * @param current - An int value representing the index of the ad shown.
+         * @param next - An int value representing the index of the ad to show next.
+         * @param base - An int value representing the index the rotation goes back to after the last ad.
+         * @param finalIndex - An Integer value representing the index to stay on once the cycles are done (may be null).
+         * @param cycles - An Integer value representing the number of cycles left (null to cycle forever).
+         */
+        private Rotation(List<AppyAd> ads, int current, int next, int base, Integer finalIndex, Integer cycles) {
+            this.ads = ads;
+            this.current = current;
+            this.next = next;
+            this.base = base;
+            this.finalIndex = finalIndex;
+            this.cycles = cycles;
         }
-        return (false);
     }
 }
@@ -0,0 +1,313 @@
+package com.appyads.services;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class collects measurements of the AppyAds system, so that its behaviour in production can be seen
+ * without turning debug output on.  Two kinds of metric are kept:
+ *      <ul><li>Distributions, to which every sample is added.  The count, sum, minimum and maximum of the samples
+ *          are kept, along with a histogram of power of two buckets from which percentiles are estimated.
+ *          Counters are distributions whose samples are all 1.</li></ul>
+ *      <ul><li>Gauges, which only hold their latest value.</li></ul>
+ * Host applications can either poll a {@link Snapshot} with {@link #getSnapshot() getSnapshot}, or register a {@link Listener}
+ * to be told of each sample as it is recorded.
+ * Durations are recorded in microseconds, and sizes in bytes.  One object is kept by the {@link AppyAdService}, and
+ * all methods are thread safe.
+ */
+public class AppyAdMetrics {
+
+    private static final String TAG = "AppyAdMetrics";
+    public static final String QUERY_CONNECT = "query.connect";  // Until the request has been sent
+    public static final String QUERY_FIRST_BYTE = "query.firstByte";  // Until the response code has been received
+    public static final String QUERY_TOTAL = "query.total";
+    public static final String QUERY_BYTES_SENT = "query.bytesSent";
+    public static final String QUERY_BYTES_RECEIVED = "query.bytesReceived";
+    public static final String QUERY_FAILURES = "query.failures";
+    public static final String QUERY_COALESCED = "query.coalesced";  // Requests which shared one already in flight
+    public static final String CONFIG_PARSE = "config.parse";
+    public static final String CREATIVE_DOWNLOAD = "creative.download";
+    public static final String CREATIVE_DECODE = "creative.decode";
+    public static final String BITMAP_BYTES = "bitmap.bytes";  // Gauge
+    public static final String SHOW_NEXT_AD = "render.showNextAd";
+    public static final String ROTATION_ERROR = "rotation.error";  // Lateness of rotations on the scheduler thread
+    private static final int BUCKETS = 64;
+
+    private final ConcurrentHashMap<String, Distribution> mDistributions = new ConcurrentHashMap<String, Distribution>();
+    private final ConcurrentHashMap<String, Long> mGauges = new ConcurrentHashMap<String, Long>();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * This interface is implemented by host application objects which want to be told of each sample.
+     */
+    public interface Listener {
+
+        /**
+         * This method is called on the thread which recorded the sample, so it must return quickly.
+         * @param name - A String value containing the name of the metric.
+         * @param value - A long value representing the sample (microseconds for durations, bytes for sizes).
+         */
+        void onSample(String name, long value);
+    }
+
+    /**
+     * This method registers a {@link Listener} object.
+     * @param listener - The {@link Listener} object to register.
+     */
+    public void addListener(Listener listener) {
+        if ((listener != null) && !mListeners.contains(listener)) mListeners.add(listener);
+    }
+
+    /**
+     * This method unregisters a {@link Listener} object.
+     * @param listener - The {@link Listener} object to unregister.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * This method adds a sample to a distribution.
+     *
+     * @param name - A String value containing the name of the metric.
+     * @param value - A long value representing the sample.  Negative values are counted as 0.
+     */
+    public void record(String name, long value) {
+        value = Math.max(0, value);
+        Distribution d = mDistributions.get(name);
+        if (d == null) {
+            Distribution created = new Distribution();
+            d = mDistributions.putIfAbsent(name, created);
+            if (d == null) d = created;
+        }
+        d.add(value);
+        notifyListeners(name, value);
+    }
+
+    /**
+     * This method adds one to a counter.
+     * @param name - A String value containing the name of the metric.
+     */
+    public void count(String name) {
+        record(name, 1);
+    }
+
+    /**
+     * This method adds the time elapsed since the given start to a distribution.
+     *
+     * @param name - A String value containing the name of the metric.
+     * @param start - A long value representing the start time, as returned by {@link AppyAdScheduler#now() now}.
+     */
+    public void recordSince(String name, long start) {
+        record(name, TimeUnit.NANOSECONDS.toMicros(AppyAdScheduler.now() - start));
+    }
+
+    /**
+     * This method sets the value of a gauge.
+     *
+     * @param name - A String value containing the name of the metric.
+     * @param value - A long value representing the current value.
+     */
+    public void setGauge(String name, long value) {
+        mGauges.put(name, value);
+        notifyListeners(name, value);
+    }
+
+    /**
+     * This method clears all distributions and gauges.
+     */
+    public void reset() {
+        mDistributions.clear();
+        mGauges.clear();
+    }
+
+    /**
+     * This method takes a copy of all metrics as they are now.
+     * @return - A {@link Snapshot} object.
+     */
+    public Snapshot getSnapshot() {
+        Map<String, Stat> stats = new HashMap<String, Stat>();
+        for (Map.Entry<String, Distribution> e : mDistributions.entrySet()) stats.put(e.getKey(), e.getValue().toStat());
+        Map<String, Long> gauges = new HashMap<String, Long>(mGauges);
+        gauges.put(BITMAP_BYTES, (long) AppyAdBitmapCache.getSize());
+        return (new Snapshot(stats, gauges));
+    }
+
+    /**
+     * This method hands a sample to the registered listeners.
+     * @param name - A String value containing the name of the metric.
+     * @param value - A long value representing the sample.
+     */
+    private void notifyListeners(String name, long value) {
+        for (Listener listener : mListeners) {
+            try {
+                listener.onSample(name, value);
+            } catch (RuntimeException e) {
+                AppyAdLog.error(TAG, "Metrics listener failed. {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This method returns the histogram bucket a sample falls into.  Bucket n holds values below 2 to the power of n.
+     * @param value - A long value representing the sample (not negative).
+     * @return - An int value representing the bucket index.
+     */
+    private static int bucket(long value) {
+        return (BUCKETS - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * This class accumulates the samples of one distribution.
+     */
+    private static class Distribution {
+
+        private long count = 0;
+        private long sum = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = 0;
+        private final long[] buckets = new long[BUCKETS + 1];
+
+        /**
+         * This method adds a sample.
+         * @param value - A long value representing the sample (not negative).
+         */
+        private synchronized void add(long value) {
+            count++;
+            sum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            buckets[bucket(value)]++;
+        }
+
+        /**
+         * This method takes a copy of the distribution.
+         * @return - A {@link Stat} object.
+         */
+        private synchronized Stat toStat() {
+            return (new Stat(count, sum, (count > 0) ? min : 0, max, buckets.clone()));
+        }
+    }
+
+    /**
+     * This class holds a copy of one distribution.
+     */
+    public static class Stat {
+
+        public final long count;
+        public final long sum;
+        public final long min;
+        public final long max;
+        private final long[] buckets;
+
+        /**
+         * This constructor defines the copied values.
+         * @param count - A long value representing the number of samples.
+         * @param sum - A long value representing the sum of the samples.
+         * @param min - A long value representing the smallest sample.
+         * @param max - A long value representing the largest sample.
+         * @param buckets - A long array holding the number of samples in each histogram bucket.
+         */
+        private Stat(long count, long sum, long min, long max, long[] buckets) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        /**
+         * This method returns the mean of the samples.
+         * @return - A long value representing the mean (0 if there are no samples).
+         */
+        public long getMean() {
+            return ((count > 0) ? (sum / count) : 0);
+        }
+
+        /**
+         * This method estimates a percentile of the samples.  The estimate is the upper bound of the histogram
+         * bucket the percentile falls into, so it is at most twice the true value, and never above the maximum.
+         *
+         * @param percentile - A double value between 0 and 100.
+         * @return - A long value representing the estimate (0 if there are no samples).
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) return (0);
+            long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if ((seen >= rank) && (seen > 0)) return (Math.min(max, (i == 0) ? 0 : ((i >= 63) ? Long.MAX_VALUE : ((1L << i) - 1))));
+            }
+            return (max);
+        }
+
+        @Override
+        public String toString() {
+            return ("count=" + count + ", mean=" + getMean() + ", min=" + min + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99) + ", max=" + max);
+        }
+    }
+
+    /**
+     * This class holds a copy of all metrics, taken by {@link #getSnapshot() getSnapshot}.
+     */
+    public static class Snapshot {
+
+        private final Map<String, Stat> mStats;
+        private final Map<String, Long> mGauges;
+
+        /**
+         * This constructor defines the copied metrics.
+         * @param stats - A Map of the distributions by name.
+         * @param gauges - A Map of the gauges by name.
+         */
+        private Snapshot(Map<String, Stat> stats, Map<String, Long> gauges) {
+            mStats = Collections.unmodifiableMap(stats);
+            mGauges = Collections.unmodifiableMap(gauges);
+        }
+
+        /**
+         * This method returns a distribution.
+         * @param name - A String value containing the name of the metric.
+         * @return - The {@link Stat} object, or null if no sample has been recorded.
+         */
+        public Stat getStat(String name) {
+            return (mStats.get(name));
+        }
+
+        /**
+         * This method returns the value of a gauge.
+         * @param name - A String value containing the name of the metric.
+         * @return - A long value representing the value (0 if it has not been set).
+         */
+        public long getGauge(String name) {
+            Long value = mGauges.get(name);
+            return ((value != null) ? value : 0);
+        }
+
+        /**
+         * This method returns all distributions.
+         * @return - An unmodifiable Map of the {@link Stat} objects by name.
+         */
+        public Map<String, Stat> getStats() {
+            return (mStats);
+        }
+
+        /**
+         * This method returns all gauges.
+         * @return - An unmodifiable Map of the values by name.
+         */
+        public Map<String, Long> getGauges() {
+            return (mGauges);
+        }
+
+        @Override
+        public String toString() {
+            return ("stats=" + mStats + ", gauges=" + mGauges);
+        }
+    }
+}
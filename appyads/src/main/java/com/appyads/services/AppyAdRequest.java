@@ -1,5 +1,7 @@
 package com.appyads.services;
 
+import java.util.List;
+
 /**
  * This class is used as a storage device for parameters needed in communication with the AppyAds server.
  */
@@ -19,6 +21,12 @@ public class AppyAdRequest {
     public String screen = null;
     public int width = 0;
     public int height = 0;
+    public String eTag = null;
+    public String lastModified = null;
+    public long time = 0;
+    public List<String> events = null;
+    public byte[] body = null;  // Already encoded request body, see AppyAdRequestTemplate
+    public String referer = null;
 
 
     public AppyAdRequest(int op, String accId, String campSize, String track) {
@@ -28,6 +36,11 @@ public class AppyAdRequest {
         this.track = track;
     }
 
+    public AppyAdRequest(int op, List<String> events) {
+        this.operation = op;
+        this.events = events;
+    }
+
     public AppyAdRequest(int op, String accId, String appId, String campAcct, String campId, String campSize, String custom, String uSpec, String screen, int width, int height, String adId, String adLink) {
         this.operation = op;
         this.accId = accId;
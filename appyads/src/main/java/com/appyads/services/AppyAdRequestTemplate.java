@@ -0,0 +1,186 @@
+package com.appyads.services;
+
+import java.net.URLEncoder;
+
+/**
+ * This class holds the parts of the requests of an {@link AppyAdManager} view object which do not change
+ * between requests, already url encoded.  The account, application, user/device, screen, campaign size and
+ * view port size of a view are fixed once it has been registered, so they are encoded once, and the body of a
+ * campaign request, which holds nothing else, is kept as the byte array written to the connection.  A tracking
+ * event only encodes its own fields (campaign, ad, link, custom parameter and time) onto the encoded prefix.
+ * The Referer header is built once as well.
+ * Objects of this class are immutable.  An {@link AppyAdManager} builds a new one whenever any of the fixed
+ * values it was built from has changed.
+ */
+public class AppyAdRequestTemplate {
+
+    private static final String TAG = "AppyAdRequestTemplate";
+
+    private final String mAccId;
+    private final String mAppId;
+    private final String mCampSize;
+    private final String mUSpec;
+    private final String mScreen;
+    private final int mWidth;
+    private final int mHeight;
+    private final boolean mTrack;
+    private final String mAppName;
+    private final String mAdSetParams;
+    private final byte[] mAdSetBody;
+    private final String mTrackPrefix;
+    private final String mReferer;
+
+    /**
+     * This constructor encodes the fixed values of the requests of a view.
+     *
+     * @param accId - A String value representing the account ID.
+     * @param appId - A String value representing the application ID.
+     * @param campSize - A String value representing the campaign size.
+     * @param uSpec - A String value representing the user/device specification.
+     * @param screen - A String value representing the screen density.
+     * @param width - An int value representing the width of the view in pixels.
+     * @param height - An int value representing the height of the view in pixels.
+     * @param track - A boolean value representing the default tracking setting of the view.
+     * @param appName - A String value representing the application name, sent in the Referer header.
+     */
+    public AppyAdRequestTemplate(String accId, String appId, String campSize, String uSpec, String screen,
+                                 int width, int height, boolean track, String appName) {
+        mAccId = accId;
+        mAppId = appId;
+        mCampSize = campSize;
+        mUSpec = uSpec;
+        mScreen = screen;
+        mWidth = width;
+        mHeight = height;
+        mTrack = track;
+        mAppName = appName;
+
+        StringBuilder pars = new StringBuilder();
+        append(pars, "tracking", track ? "true" : "false");
+        append(pars, "account_id", accId);
+        append(pars, "campaign_size", campSize);
+        mAdSetBody = toBytes(pars);
+        mAdSetParams = pars.toString();
+
+        pars.setLength(0);
+        append(pars, "account_id", accId);
+        append(pars, "app_id", appId);
+        append(pars, "campaign_size", campSize);
+        append(pars, "user_id", uSpec);
+        append(pars, "screen", screen);
+        if (width > 0) pars.append("&width=").append(width);
+        if (height > 0) pars.append("&height=").append(height);
+        mTrackPrefix = pars.toString();
+
+        mReferer = AppyAdStatic.AARQPREFX + ((appName != null) ? appName : "unknown_a");
+    }
+
+    /**
+     * This method reveals whether the template was built from the given values.
+     *
+     * @param accId - A String value representing the account ID.
+     * @param appId - A String value representing the application ID.
+     * @param campSize - A String value representing the campaign size.
+     * @param uSpec - A String value representing the user/device specification.
+     * @param screen - A String value representing the screen density.
+     * @param width - An int value representing the width of the view in pixels.
+     * @param height - An int value representing the height of the view in pixels.
+     * @param track - A boolean value representing the default tracking setting of the view.
+     * @param appName - A String value representing the application name.
+     * @return - A boolean value indicating whether or not the template can still be used.
+     */
+    public boolean matches(String accId, String appId, String campSize, String uSpec, String screen,
+                           int width, int height, boolean track, String appName) {
+        return ((mWidth == width) && (mHeight == height) && (mTrack == track) && same(mAccId, accId) && same(mAppId, appId)
+                && same(mCampSize, campSize) && same(mUSpec, uSpec) && same(mScreen, screen) && same(mAppName, appName));
+    }
+
+    /**
+     * This method builds a request for the ad campaign package of the view, carrying the encoded body and Referer header.
+     * @return - An {@link AppyAdRequest} object.
+     */
+    public AppyAdRequest newAdSetRequest() {
+        AppyAdRequest request = new AppyAdRequest(AppyAdStatic.GETADSET, mAccId, mCampSize, mTrack ? "true" : "false");
+        request.body = mAdSetBody;
+        request.referer = mReferer;
+        return (request);
+    }
+
+    /**
+     * This method returns the parameters of a campaign request of the view, as they are sent for the view in a
+     * request for several campaigns at once.
+     * @return - A String containing the url encoded parameters.
+     */
+    public String getAdSetParams() {
+        return (mAdSetParams);
+    }
+
+    /**
+     * This method encodes a tracking event of the view.  Only the given values are encoded.
+     *
+     * @param campAcct - A String value representing the campaign account (may be null).
+     * @param campId - A String value representing the campaign ID (may be null).
+     * @param custom - A String value representing the custom parameter (may be null).
+     * @param adId - A String value representing the ID of the ad (may be null).
+     * @param adLink - A String value representing the link of the ad (may be null).
+     * @param time - A long value representing the time of the event in milliseconds.
+     * @return - A String containing the url encoded parameters of the event.
+     */
+    public String encodeTrackEvent(String campAcct, String campId, String custom, String adId, String adLink, long time) {
+        StringBuilder pars = new StringBuilder(mTrackPrefix.length() + 128).append(mTrackPrefix);
+        append(pars, "cacct", campAcct);
+        append(pars, "campaign_id", campId);
+        append(pars, "ad_id", adId);
+        append(pars, "ad_link", adLink);
+        append(pars, "custom", custom);
+        if (time > 0) pars.append("&time=").append(time);
+        if ((pars.length() > 0) && (pars.charAt(0) == '&')) pars.deleteCharAt(0);
+        return (pars.toString());
+    }
+
+    /**
+     * This method returns the value of the Referer header sent with the requests of the view.
+     * @return - A String containing the header value.
+     */
+    public String getReferer() {
+        return (mReferer);
+    }
+
+    /**
+     * This method appends a url encoded parameter, unless its value is null.
+     * @param pars - The StringBuilder object to append to.
+     * @param name - A String value containing the parameter name.
+     * @param value - A String value containing the parameter value (may be null).
+     */
+    private static void append(StringBuilder pars, String name, String value) {
+        if (value == null) return;
+        try {
+            pars.append('&').append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+        }
+        catch (Exception e) {
+            AppyAdLog.error(TAG, "Exception while encoding parameter {}. \n - {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * This method turns encoded parameters into the bytes of a request body, dropping the leading separator.
+     * @param pars - The StringBuilder object holding the parameters.
+     * @return - A byte array containing the request body.
+     */
+    private static byte[] toBytes(StringBuilder pars) {
+        if ((pars.length() > 0) && (pars.charAt(0) == '&')) pars.deleteCharAt(0);
+        byte[] body = new byte[pars.length()];
+        for (int i = 0; i < body.length; i++) body[i] = (byte) pars.charAt(i);  // Url encoded, so plain ASCII
+        return (body);
+    }
+
+    /**
+     * This method compares two values which may be null.
+     * @param a - The first String value.
+     * @param b - The second String value.
+     * @return - A boolean value indicating whether or not the values are equal.
+     */
+    private static boolean same(String a, String b) {
+        return ((a == null) ? (b == null) : a.equals(b));
+    }
+}
@@ -1,42 +1,66 @@
 package com.appyads.services;
 
-import android.os.Handler;
-import android.os.Message;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
- * This module runs as a background thread and provides the AppyAds system with the following
- * functionality:
+ * This module is run on the {@link AppyAdExecutor} by the {@link AppyAdScheduler} whenever a campaign refresh
+ * is due, and provides the AppyAds system with the following functionality:
  *      <ul><li>Fetches new ad campaign packages from the AppyAds server</li></ul>
  *      <ul><li>Sends notifications back to the {@link AppyAdService} object
  *          <ul><li>For new ad campaign packages</li></ul>
  *          <ul><li>For the next ad view to be shown</li></ul></li></ul>
+ *      <ul><li>Schedules the next refresh, or the next retry after a failure</li></ul>
  *
  */
-public class AppyAdRetriever implements Runnable {
+public class AppyAdRetriever implements Runnable, AppyAdSendServer.ResponseReader {
 
     private static final String TAG = "AppyAdRetriever";
 	private String[] errorMsg = new String[] {"",""};
 	private int controlRsp = 7;
+    private boolean newCampaign = false;
+    private AppyAdManager mManager;
 
     /**
-     * This method sends a message back to the {@link AppyAdService} object
+     * This constructor defines the {@link AppyAdManager} view object whose campaign is refreshed.
+     * @param toam - The {@link AppyAdManager} object.
+     */
+    public AppyAdRetriever(AppyAdManager toam) {
+        mManager = toam;
+    }
+
+    /**
+     * This method receives the ad campaign package as it streams in from the server and passes it on to
+     * the {@link AppyAdService} object.
      *
-     * @param mHandle - The {@link Handler} object within the {@link AppyAdService} object, which receives the message.
+     * @param server - The {@link AppyAdSendServer} object making the request.
+     * @param in - The InputStream containing the ad campaign package.
+     * @throws IOException - If the response could not be read.
      */
-	public void postNextAd(Handler mHandle) {
-		Message message = mHandle.obtainMessage();
-		if (controlRsp != 7) {
-			message.obj = errorMsg;
-			message.what = controlRsp; // 7;
-			mHandle.sendMessage(message);
-		}
-		else {
-			message.obj = null;
-			message.what = controlRsp; // 7;
-			mHandle.sendMessage(message);
-		}
-        try { Thread.sleep(300); } catch(InterruptedException e) { }
-	}
+    @Override
+    public void readResponse(AppyAdSendServer server, InputStream in) throws IOException {
+        readCampaign(in, server.getETag(), server.getLastModified());
+    }
+
+    /**
+     * This method passes an ad campaign package on to the {@link AppyAdService} object.
+     *
+     * @param in - The InputStream containing the ad campaign package.
+     * @param eTag - A String representing the ETag the server supplied with the package (may be null).
+     * @param lastModified - A String representing the Last-Modified date the server supplied with the package (may be null).
+     * @throws IOException - If the package could not be read.
+     */
+    void readCampaign(InputStream in, String eTag, String lastModified) throws IOException {
+        newCampaign = AppyAdService.getInstance().setAdData(mManager, in, eTag, lastModified);
+    }
+
+    /**
+     * This method returns the {@link AppyAdManager} view object whose campaign is refreshed.
+     * @return - The {@link AppyAdManager} object.
+     */
+    AppyAdManager getManager() {
+        return (mManager);
+    }
 
     /**
      * This method sets the control response code and the String values according to the last error.
@@ -46,83 +70,83 @@ public class AppyAdRetriever implements Runnable {
 	private void setErrorMsg(int e, String[] a) {
         controlRsp = e;
         errorMsg = a;
-        AppyAdService.getInstance().errorOut(TAG,errorMsg[0]+" - "+errorMsg[1]);
+        AppyAdLog.error(TAG, "{} - {}", errorMsg[0], errorMsg[1]);
 	}
 
     /**
      * This method is responsible for the main functionality of this object.
-     *   <ul><li>Runs as a background thread and ensures only one such thread is ever run by checking the
-     *     boolean values in the {@link AppyAdService} object.</li></ul>
-     *   <ul><li>Initiates requests to the AppyAds server to retrieve ad campaign packages.</li></ul>
-     *   <ul><li>Notifies the {@link AppyAdService} object (and hence the current {@link AppyAdManager} object) when
-     *     new ad campaigns have been retrieved.</li></ul>
-     *   <ul><li>Notifies the {@link AppyAdService} &amp; {@link AppyAdManager} objects when the next ad should be displayed.</li></ul>
-     *   <ul><li>Sleeps in between all the above activities.</li></ul>
+     *   <ul><li>When the circuit of the {@link AppyAdBackoff} object of the view is open, lets one probe through.</li></ul>
+     *   <ul><li>Initiates a request to the AppyAds server to retrieve an ad campaign package.</li></ul>
+     *   <ul><li>Notifies the {@link AppyAdService} object (and hence the {@link AppyAdManager} object) when
+     *     a new ad campaign has been retrieved, which also restarts the ad rotation.</li></ul>
+     *   <ul><li>Records the outcome with the {@link AppyAdBackoff} object of the view, and asks the {@link AppyAdService}
+     *     object to schedule the next refresh, or the next retry.</li></ul>
      */
 	@Override
     public void run() {
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
-        AppyAdService.getInstance().debugOut(TAG,"Thread launch.");
-		if (!AppyAdService.getInstance().adThreadIsRunning()) {
-            AppyAdService.getInstance().debugOut(TAG,"Thread running.");
-			AppyAdService.getInstance().startAdThread();
-
-			AppyAdService.getInstance().startService();
-		
-			while (AppyAdService.getInstance().adServiceIsOn()) {
-				if (AppyAdService.getInstance().adsAreOn()) {
-                    AppyAdService.getInstance().debugOut(TAG,"Ads are ON. Error count is "+ AppyAdService.getInstance().getErrorCount());
-                    if (AppyAdService.getInstance().adsNeedRefreshing()) {
-                        if (AppyAdService.getInstance().isNetworkAvailable()) {
-                            String retBuf;
-                            AppyAdSendServer tgsd = new AppyAdSendServer(new AppyAdRequest(AppyAdStatic.GETADSET,
-                                    AppyAdService.getInstance().getAccountID(),
-                                    AppyAdService.getInstance().getCampaignSize(),
-                                    AppyAdService.getInstance().getDefaultTracking() ? "true" : "false"));
-                            retBuf = tgsd.queryServer();
-                            if (tgsd.mStatus) {
-                                AppyAdService.getInstance().setAdData(retBuf);
-                                if (AppyAdService.getInstance().hasValidAdCampaign()) {
-                                    controlRsp = 7;
-                                    postNextAd(AppyAdService.getHandler());
-                                }
-                                else {
-                                    setErrorMsg(1, new String[] {"Non-existent Ad Campaign.","Entering holding pattern."});
-                                    AppyAdService.getInstance().checkMaxErrors(AppyAdService.getInstance().maxErrors());
-                                }
-                            } else {
-                                setErrorMsg(1, tgsd.getSpecError());
-                                AppyAdService.getInstance().checkMaxErrors();
-                            }
-                        }
-                        else {
-                            setErrorMsg(1, new String[] {"Network access unavailable.",""});
-                            AppyAdService.getInstance().checkMaxErrors();
-                        }
-					}
-
-					if (controlRsp == 7) {
-                        try { Thread.sleep(AppyAdService.getInstance().getCurrentSleepInterval()); } catch(InterruptedException e) { }
+        if (begin()) fetch();
+    }
 
-                        if (AppyAdService.getInstance().prepareNextAd()) {
-							postNextAd(AppyAdService.getHandler());
-						}
-					}
+    /**
+     * This method readies the refresh, unless the application has switched ads off.
+     * @return - A boolean value indicating whether or not the campaign should be fetched.
+     */
+    boolean begin() {
+        if (!mManager.adsAreOn()) return (false);  // Switched off by the application.
+        mManager.processDelay();
+        AppyAdLog.debug(TAG, "Ads are ON. Error count is {}", mManager.getErrorCounter());
+        controlRsp = 7;
+        newCampaign = false;
+        return (true);
+    }
 
-				}
-				else {
-					AppyAdService.getInstance().checkDelayMaxed();
-					AppyAdService.getInstance().debugOut(TAG,"Ads are OFF. Current error count is "+ AppyAdService.getInstance().getErrorCount()+" and delay count is "+ AppyAdService.getInstance().getDelayCount());
+    /**
+     * This method requests the ad campaign package of the view on its own, and acts on the outcome.  When an identical
+     * request is already in flight, the outcome is acted on later, on the thread making that request.
+     */
+    void fetch() {
+        AppyAdService service = AppyAdService.getInstance();
+        if (service.isNetworkAvailable(mManager)) {
+            AppyAdSendServer tgsd = new AppyAdSendServer(service.addCampaignValidators(mManager, mManager.getRequestTemplate().newAdSetRequest()));
+            newCampaign = false;
+            tgsd.queryServer(this, new AppyAdSendServer.Completion() {
+                @Override
+                public void onComplete(AppyAdSendServer server) {
+                    finish(server.mStatus, server.isNotModified(), server.getSpecError(), server.getRetryAfter());
                 }
+            });
+        }
+        else finish(false, false, new String[] {"Network access unavailable.",""}, 0);
+    }
 
-                if ((controlRsp != 7) || (!AppyAdService.getInstance().adsAreOn())) {
-                    try { Thread.sleep(AppyAdService.getInstance().getErrorWaitInterval()); } catch(InterruptedException e) { }
-                }
-			}
-			
-			AppyAdService.getInstance().stopAdThread();
-		}
-        AppyAdService.getInstance().debugOut(TAG,"Retriever thread exiting.");
+    /**
+     * This method acts on the outcome of a campaign request: it records the outcome with the {@link AppyAdBackoff}
+     * object of the view, restarts the ad rotation when a new campaign was loaded or a probe closed the circuit, and
+     * schedules the next refresh.
+     *
+     * @param ok - A boolean value indicating whether or not the request was successful.
+     * @param notModified - A boolean value indicating whether or not the server reported the campaign as unchanged.
+     * @param error - An array of String values describing the error, when the request failed.
+     * @param retryAfter - A long value representing the delay in milliseconds the server asked for (0 if none).
+     */
+    void finish(boolean ok, boolean notModified, String[] error, long retryAfter) {
+        AppyAdService service = AppyAdService.getInstance();
+        if (ok) {
+            if (notModified) service.markCampaignCurrent(mManager);
+            boolean resume = false;
+            if (mManager.hasAdCampaign()) resume = mManager.recordSuccess();
+            else {
+                setErrorMsg(1, new String[] {"Non-existent Ad Campaign.","Entering holding pattern."});
+                mManager.recordFailure(service.maxErrors(), 0);
+            }
+            if (newCampaign) service.startRotation(mManager);  // Puts the published campaign in place.
+            else if (resume) service.resumeRotation(mManager);  // The rotation was paused while the circuit was open.
+        } else {
+            setErrorMsg(1, error);
+            mManager.recordFailure(1, retryAfter);
+        }
+
+        service.scheduleRefresh(mManager, controlRsp != 7);
     }
 
 }
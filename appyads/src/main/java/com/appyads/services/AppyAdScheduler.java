@@ -0,0 +1,197 @@
+package com.appyads.services;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is the single timer source of the AppyAds system.  It keeps the deadlines of every
+ * {@link AppyAdManager} view object's ad rotation and campaign refresh in one delay queue, measured on the
+ * monotonic clock, and a single background thread sleeps until the earliest deadline is due.  Nothing wakes
+ * up in between, and nothing is scheduled at all while ads are off.
+ * Due tasks are handed to a {@link Dispatcher}, which must return quickly; long work belongs on the {@link AppyAdExecutor}.
+ * Tasks only hold weak references to their {@link AppyAdManager} objects, and the tasks of objects which have been
+ * garbage collected are dropped.
+ */
+public class AppyAdScheduler implements Runnable {
+
+    private static final String TAG = "AppyAdScheduler";
+    public static final int ROTATE = 1;
+    public static final int REFRESH = 2;
+    public static final int PREPARE = 3;
+
+    private final DelayQueue<Task> mQueue = new DelayQueue<Task>();
+    private final Dispatcher mDispatcher;
+    private Thread mThread;
+
+    /**
+     * This interface is implemented by the object which acts on due tasks.
+     */
+    public interface Dispatcher {
+
+        /**
+         * This method is called on the scheduler thread when a task is due.
+         * @param kind - An int value representing the kind of task ({@link #ROTATE}, {@link #PREPARE} or {@link #REFRESH}).
+         * @param toam - The {@link AppyAdManager} object the task belongs to.
+         */
+        void onDue(int kind, AppyAdManager toam);
+    }
+
+    /**
+     * This constructor defines the object which acts on due tasks.
+     * @param dispatcher - The {@link Dispatcher} object.
+     */
+    public AppyAdScheduler(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * This method schedules a task for an {@link AppyAdManager} view object, replacing any task of the same kind
+     * already scheduled for it.
+     *
+     * @param kind - An int value representing the kind of task ({@link #ROTATE}, {@link #PREPARE} or {@link #REFRESH}).
+     * @param toam - The {@link AppyAdManager} object the task belongs to.
+     * @param delay - A long value representing the number of milliseconds from now at which the task is due.
+     */
+    public synchronized void schedule(int kind, AppyAdManager toam, long delay) {
+        cancel(kind, toam);
+        mQueue.add(new Task(kind, toam, now() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay))));
+        start();
+    }
+
+    /**
+     * This method removes a scheduled task.
+     *
+     * @param kind - An int value representing the kind of task ({@link #ROTATE}, {@link #PREPARE} or {@link #REFRESH}).
+     * @param toam - The {@link AppyAdManager} object the task belongs to.
+     */
+    public synchronized void cancel(int kind, AppyAdManager toam) {
+        Iterator<Task> it = mQueue.iterator();
+        while (it.hasNext()) {
+            Task t = it.next();
+            AppyAdManager m = t.manager.get();
+            if ((m == null) || ((t.kind == kind) && (m == toam))) it.remove();
+        }
+    }
+
+    /**
+     * This method removes all tasks scheduled for an {@link AppyAdManager} view object.
+     *
+     * @param toam - The {@link AppyAdManager} object the tasks belong to.
+     */
+    public synchronized void cancelAll(AppyAdManager toam) {
+        Iterator<Task> it = mQueue.iterator();
+        while (it.hasNext()) {
+            AppyAdManager m = it.next().manager.get();
+            if ((m == null) || (m == toam)) it.remove();
+        }
+    }
+
+    /**
+     * This method removes the tasks of one kind which are due within the given time, so that they can be carried out
+     * now, together with one which has just become due.
+     *
+     * @param kind - An int value representing the kind of task ({@link #ROTATE}, {@link #PREPARE} or {@link #REFRESH}).
+     * @param window - A long value representing the number of milliseconds from now within which tasks are taken.
+     * @return - A List of the {@link AppyAdManager} objects the removed tasks belong to.
+     */
+    public synchronized List<AppyAdManager> takeDue(int kind, long window) {
+        List<AppyAdManager> due = new ArrayList<AppyAdManager>();
+        long limit = now() + TimeUnit.MILLISECONDS.toNanos(window);
+        Iterator<Task> it = mQueue.iterator();
+        while (it.hasNext()) {
+            Task t = it.next();
+            AppyAdManager m = t.manager.get();
+            if (m == null) it.remove();
+            else if ((t.kind == kind) && (t.deadline <= limit)) {
+                it.remove();
+                due.add(m);
+            }
+        }
+        return (due);
+    }
+
+    /**
+     * This method returns the current time on the monotonic clock the scheduler runs on.
+     * @return - A long value representing the current time in nanoseconds (only meaningful relative to other values of this method).
+     */
+    public static long now() {
+        return (System.nanoTime());
+    }
+
+    /**
+     * This method starts the scheduler thread, the first time a task is scheduled.
+     */
+    private synchronized void start() {
+        if (mThread == null) {
+            mThread = AppyAdService.getInstance().getExecutor().newThread("AppyAds-scheduler", this);
+            mThread.start();
+        }
+    }
+
+    /**
+     * This method runs the scheduler thread, which waits for each task to become due and hands it to the {@link Dispatcher}.
+     */
+    @Override
+    public void run() {
+        AppyAdLog.debug(TAG, "Scheduler thread running.");
+        AppyAdService.getInstance().startAdThread();
+        try {
+            while (true) {
+                Task t = mQueue.take();
+                AppyAdManager toam = t.manager.get();
+                if (toam == null) continue;
+                if (t.kind == ROTATE) AppyAdService.getInstance().getMetrics().recordSince(AppyAdMetrics.ROTATION_ERROR, t.deadline);
+                try {
+                    mDispatcher.onDue(t.kind, toam);
+                } catch (RuntimeException e) {
+                    AppyAdLog.error(TAG, "Scheduled task failed. {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            AppyAdLog.debug(TAG, "Scheduler thread interrupted.");
+        } finally {
+            synchronized (this) {
+                mThread = null;
+            }
+            AppyAdService.getInstance().stopAdThread();
+        }
+    }
+
+    /**
+     * This class represents one scheduled task.
+     */
+    private static class Task implements Delayed {
+
+        private final int kind;
+        private final WeakReference<AppyAdManager> manager;
+        private final long deadline;
+
+        /**
+         * This constructor defines the task.
+         * @param kind - An int value representing the kind of task.
+         * @param toam - The {@link AppyAdManager} object the task belongs to.
+         * @param deadline - A long value representing the time at which the task is due, on the {@link #now() now} clock.
+         */
+        private Task(int kind, AppyAdManager toam, long deadline) {
+            this.kind = kind;
+            this.manager = new WeakReference<AppyAdManager>(toam);
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return (unit.convert(deadline - now(), TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long d = (other instanceof Task) ? (deadline - ((Task) other).deadline) : (getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS));
+            return ((d < 0) ? -1 : ((d > 0) ? 1 : 0));
+        }
+    }
+}
@@ -1,26 +1,51 @@
 package com.appyads.services;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * This class is used for all network communcation to/from the AppyAds server.
+ * Connections are left to the platform's keep-alive pool rather than disconnected, so that requests to the
+ * AppyAds hosts reuse an open connection instead of paying for a new TCP and TLS handshake each time.  For that,
+ * every response is read to its end before its stream is closed.  Campaign packages are asked for gzip encoded,
+ * and large tracking batches are sent gzip encoded.
+ * The timings and sizes of every request are recorded in the {@link AppyAdMetrics} object of the {@link AppyAdService}.
+ * Identical campaign requests, such as those of several views showing the same campaign, can share a single request in flight.
  */
 public class AppyAdSendServer {
 
     private static final String TAG = "AppyAdSendServer";
+    private static final int GZIP_BODY_THRESHOLD = 1024;  // bytes
+    private static final int MAX_DRAIN_BYTES = 65536;  // 64K
     private AppyAdRequest mAppyAdRequest;
     private String[] specError = new String[] {"",""};
     private int specErrorNum = 0;
+    private boolean mNotModified = false;
+    private String mETag = null;
+    private String mLastModified = null;
+    private long mRetryAfter = 0;
+    private int mResponseCode = 0;
     public boolean mStatus = false;
 
+    private static final HashMap<String, Flight> flights = new HashMap<String, Flight>();
+
     /**
      * This constructor is for initializing the parameters needed to send a query to the AppyAds server.
      * @param aaRequest - An AppyAdRequest object representing the entire request string to send to the AppyAds server.
@@ -63,29 +88,112 @@ public class AppyAdSendServer {
     }
 
     /**
-     * This method prepares query parameters to send to the AppyAds server
-     * @return - A ByteBuffer object which is created with a call to the queryServer() method.
+     * This method reveals whether the server reported that the campaign package has not changed
+     * since the one identified by the validators sent with the request.
+     * @return - A boolean value indicating whether or not the server responded with "304 Not Modified".
+     */
+    public boolean isNotModified() {
+        return (mNotModified);
+    }
+
+    /**
+     * This method returns the entity tag the server supplied with the campaign package.
+     * @return - A String representing the ETag response header (null if none was supplied).
+     */
+    public String getETag() {
+        return (mETag);
+    }
+
+    /**
+     * This method returns the modification date the server supplied with the campaign package.
+     * @return - A String representing the Last-Modified response header (null if none was supplied).
      */
-    private String prepExQuery() {
+    public String getLastModified() {
+        return (mLastModified);
+    }
+
+    /**
+     * This method returns the delay the server asked for, in a Retry-After header, before it is contacted again.
+     * @return - A long value representing the delay in milliseconds (0 if the server did not ask for one).
+     */
+    public long getRetryAfter() {
+        return (mRetryAfter);
+    }
+
+    /**
+     * This method returns the HTTP response code of the last request.
+     * @return - An int value representing the response code (0 if no response was received).
+     */
+    public int getResponseCode() {
+        return (mResponseCode);
+    }
+
+    /**
+     * This method reads the Retry-After header of a response, which holds either a number of seconds or an HTTP date.
+     * @param client - The HttpURLConnection object holding the response.
+     * @return - A long value representing the delay in milliseconds (0 if there is no valid header), at most {@link AppyAdService#MAXIMUM_REFRESH_TIME}.
+     */
+    private static long parseRetryAfter(HttpURLConnection client) {
+        String value = client.getHeaderField("Retry-After");
+        if (value == null) return (0);
+        long delay;
+        try {
+            delay = Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            long date = client.getHeaderFieldDate("Retry-After", 0);
+            delay = (date > 0) ? (date - System.currentTimeMillis()) : 0;
+        }
+        return (Math.max(0, Math.min(delay, AppyAdService.MAXIMUM_REFRESH_TIME)));
+    }
+
+    /**
+     * This method prepares query parameters to send to the AppyAds server, when the request does not already
+     * carry an encoded body from an {@link AppyAdRequestTemplate}.  A batch of tracking events is
+     * sent as a count followed by one "e" parameter per event, each holding that event's parameters as
+     * encoded by {@link #encodeRequest(AppyAdRequest) encodeRequest}.
+     * @return - A String containing the url encoded request body.
+     */
+    String prepExQuery() {
+        if (mAppyAdRequest.events == null) return (encodeRequest(mAppyAdRequest));
+        StringBuilder pars = new StringBuilder("");
+        try {
+            pars.append("count=").append(String.valueOf(mAppyAdRequest.events.size()));
+            for (String event : mAppyAdRequest.events) {
+                pars.append("&e=").append(URLEncoder.encode(event, "UTF-8"));
+            }
+        }
+        catch (Exception e) {
+            AppyAdLog.error(TAG, "Exception while building batch parameters. \n - {}", e.getMessage());
+        }
+        return(pars.toString());
+    }
+
+    /**
+     * This method encodes the parameters of a single request.
+     * @param request - The {@link AppyAdRequest} object to encode.
+     * @return - A String containing the url encoded parameters.
+     */
+    static String encodeRequest(AppyAdRequest request) {
         StringBuilder pars = new StringBuilder("");
         try {
-            if (mAppyAdRequest.track != null) pars.append("&tracking=").append(URLEncoder.encode(mAppyAdRequest.track, "UTF-8"));
-            if (mAppyAdRequest.accId != null) pars.append("&account_id=").append(URLEncoder.encode(mAppyAdRequest.accId, "UTF-8"));
-            if (mAppyAdRequest.appId != null) pars.append("&app_id=").append(URLEncoder.encode(mAppyAdRequest.appId, "UTF-8"));
-            if (mAppyAdRequest.campAcct != null) pars.append("&cacct=").append(URLEncoder.encode(mAppyAdRequest.campAcct, "UTF-8"));
-            if (mAppyAdRequest.campId != null) pars.append("&campaign_id=").append(URLEncoder.encode(mAppyAdRequest.campId, "UTF-8"));
-            if (mAppyAdRequest.campSize != null) pars.append("&campaign_size=").append(URLEncoder.encode(mAppyAdRequest.campSize, "UTF-8"));
-            if (mAppyAdRequest.adId != null) pars.append("&ad_id=").append(URLEncoder.encode(mAppyAdRequest.adId, "UTF-8"));
-            if (mAppyAdRequest.adLink != null) pars.append("&ad_link=").append(URLEncoder.encode(mAppyAdRequest.adLink, "UTF-8"));
-            if (mAppyAdRequest.custom != null) pars.append("&custom=").append(URLEncoder.encode(mAppyAdRequest.custom, "UTF-8"));
-            if (mAppyAdRequest.uSpec != null) pars.append("&user_id=").append(URLEncoder.encode(mAppyAdRequest.uSpec, "UTF-8"));
-            if (mAppyAdRequest.screen != null) pars.append("&screen=").append(URLEncoder.encode(mAppyAdRequest.screen, "UTF-8"));
-            if (mAppyAdRequest.width > 0) pars.append("&width=").append(String.valueOf(mAppyAdRequest.width));
-            if (mAppyAdRequest.height > 0) pars.append("&height=").append(String.valueOf(mAppyAdRequest.height));
+            if (request.track != null) pars.append("&tracking=").append(URLEncoder.encode(request.track, "UTF-8"));
+            if (request.accId != null) pars.append("&account_id=").append(URLEncoder.encode(request.accId, "UTF-8"));
+            if (request.appId != null) pars.append("&app_id=").append(URLEncoder.encode(request.appId, "UTF-8"));
+            if (request.campAcct != null) pars.append("&cacct=").append(URLEncoder.encode(request.campAcct, "UTF-8"));
+            if (request.campId != null) pars.append("&campaign_id=").append(URLEncoder.encode(request.campId, "UTF-8"));
+            if (request.campSize != null) pars.append("&campaign_size=").append(URLEncoder.encode(request.campSize, "UTF-8"));
+            if (request.adId != null) pars.append("&ad_id=").append(URLEncoder.encode(request.adId, "UTF-8"));
+            if (request.adLink != null) pars.append("&ad_link=").append(URLEncoder.encode(request.adLink, "UTF-8"));
+            if (request.custom != null) pars.append("&custom=").append(URLEncoder.encode(request.custom, "UTF-8"));
+            if (request.uSpec != null) pars.append("&user_id=").append(URLEncoder.encode(request.uSpec, "UTF-8"));
+            if (request.screen != null) pars.append("&screen=").append(URLEncoder.encode(request.screen, "UTF-8"));
+            if (request.width > 0) pars.append("&width=").append(String.valueOf(request.width));
+            if (request.height > 0) pars.append("&height=").append(String.valueOf(request.height));
+            if (request.time > 0) pars.append("&time=").append(String.valueOf(request.time));
             if (pars.length() > 1) pars = pars.deleteCharAt(0);
         }
         catch (Exception e) {
-            AppyAdService.getInstance().errorOut(TAG,"Exception while building query parameters. \n - "+e.getMessage());
+            AppyAdLog.error(TAG, "Exception while building query parameters. \n - {}", e.getMessage());
         }
         return(pars.toString());
     }
@@ -97,43 +205,207 @@ public class AppyAdSendServer {
      * @return - A String value containing the response from the server.
      */
     public String queryServer() {
+        final StringBuilder svrResp = new StringBuilder();
+        queryServer(new ResponseReader() {
+            @Override
+            public void readResponse(AppyAdSendServer server, InputStream in) throws IOException {
+                BufferedReader input = new BufferedReader(new InputStreamReader(in));
+                String line = null;
+                while ((line = input.readLine()) != null) {
+                    svrResp.append(line).append("\n");
+                }
+                AppyAdLog.debug(TAG, "Got in ad package with length {}", svrResp.length());
+            }
+        });
+
+        if (mStatus && (svrResp.length() == 0)) {
+            svrResp.append("ok");
+        }
+        if (svrResp.length() == 0) {
+            svrResp.append(' '); // Failure
+            if (specErrorNum == 0) setSpecError(1,"No response from network server.","Please try again later.");
+        }
+
+        return (svrResp.toString());
+    }
+
+    /**
+     * This method prepares the request string and sends it to the AppyAds server.  When the request
+     * is for an ad campaign package, the response stream is handed to the given {@link ResponseReader}
+     * while the connection is still open, so that the package can be processed as it arrives.
+     * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+     * @return - A boolean value indicating whether or not the operation was successful.
+     */
+    public boolean queryServer(ResponseReader reader) {
+        return (send(reader));
+    }
+
+    /**
+     * This method sends a campaign request to the AppyAds server, sharing it with identical requests.
+     * If an identical request is already waiting for its response, no new request is sent.  This one is added to
+     * the one in flight and the method returns straight away.  Once the request in flight is done, this object takes
+     * over its outcome, has its campaign package handed to the given reader from memory, and is passed to the
+     * given {@link Completion} object, all on the thread which made the request in flight.
+     * Otherwise the request is sent as by {@link #queryServer(ResponseReader) queryServer}, and the {@link Completion}
+     * object is called before this method returns.  The campaign package is only copied when another request was
+     * added while waiting for the response.  Requests made while the package is being read are sent on their own.
+     *
+     * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+     * @param completion - The {@link Completion} object called with the outcome.
+     */
+    public void queryServer(ResponseReader reader, Completion completion) {
+        String key = flightKey(mAppyAdRequest);
+        Flight flight;
+        synchronized (flights) {
+            flight = flights.get(key);
+            if (flight != null) {
+                flight.followers.add(new Follower(this, reader, completion));
+                AppyAdLog.debug(TAG, "Joining campaign request already in flight.");
+                AppyAdService.getInstance().getMetrics().count(AppyAdMetrics.QUERY_COALESCED);
+                return;
+            }
+            flight = new Flight(key);
+            flights.put(key, flight);
+        }
+
+        Recorder recorder = new Recorder(reader, flight);
+        List<Follower> followers;
+        try {
+            send(recorder);
+        } finally {
+            followers = flight.close();
+        }
+        completion.onComplete(this);
+        byte[] campaign = recorder.getPackage();
+        for (Follower follower : followers) {
+            try {
+                follower.server.takeOver(this, campaign, follower.reader);
+                follower.completion.onComplete(follower.server);
+            } catch (RuntimeException e) {
+                AppyAdLog.error(TAG, "Shared campaign request failed. {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This method builds the key under which a campaign request is shared with identical requests.  Requests
+     * share a response when they ask the same thing of the server: operation, account, campaign size, custom
+     * parameter and tracking setting, and, for conditional requests, the same validators.
+     * @param request - The {@link AppyAdRequest} object about to be sent.
+     * @return - A String containing the key.
+     */
+    private static String flightKey(AppyAdRequest request) {
+        return (new StringBuilder().append(request.operation).append('\u0000').append(request.accId).append('\u0000')
+                .append(request.campSize).append('\u0000').append(request.custom).append('\u0000').append(request.track)
+                .append('\u0000').append(request.eTag).append('\u0000').append(request.lastModified).toString());
+    }
+
+    /**
+     * This method takes over the outcome of an identical request which has been made in place of this one.
+     * @param leader - The {@link AppyAdSendServer} object which made the request.
+     * @param campaign - A byte array containing the campaign package (null if it was not copied).
+     * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+     */
+    private void takeOver(AppyAdSendServer leader, byte[] campaign, ResponseReader reader) {
+        specErrorNum = leader.specErrorNum;
+        specError = new String[] {leader.specError[0], leader.specError[1]};
+        mStatus = leader.mStatus;
+        mNotModified = leader.mNotModified;
+        mETag = leader.mETag;
+        mLastModified = leader.mLastModified;
+        mRetryAfter = leader.mRetryAfter;
+        mResponseCode = leader.mResponseCode;
+        if (!mStatus || mNotModified) return;
+        if (campaign == null) {
+            setSpecError(1,"No response from network server.","Please try again later.");
+            return;
+        }
+        try {
+            reader.readResponse(this, new ByteArrayInputStream(campaign));
+        } catch (IOException e) {
+            setSpecError(1,"Unable to read campaign package.","Please try again later.");
+        }
+    }
+
+    /**
+     * This method sends the request to the AppyAds server.
+     * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+     * @return - A boolean value indicating whether or not the operation was successful.
+     */
+    private boolean send(ResponseReader reader) {
         specErrorNum = 0;
         mStatus = false;
-        StringBuilder svrResp = new StringBuilder();
-        BufferedReader input = null;
-        OutputStreamWriter output = null;
+        mNotModified = false;
+        mRetryAfter = 0;
+        mResponseCode = 0;
+        boolean campaignRequest = (mAppyAdRequest.operation == AppyAdStatic.GETADSET) || (mAppyAdRequest.operation == AppyAdStatic.GETADSETS);
+        InputStream input = null;
+        OutputStream output = null;
         HttpURLConnection client = null;
+        CountingInputStream received = null;
+        boolean responded = false;
+        AppyAdMetrics metrics = AppyAdService.getInstance().getMetrics();
+        long start = AppyAdScheduler.now();
         try {
-            String sPars = prepExQuery();
+            byte[] body = (mAppyAdRequest.body != null) ? mAppyAdRequest.body : prepExQuery().getBytes("UTF-8");
 
             // Define http connection
             URL url = new URL(AppyAdService.getAppyAdsServerUrl(mAppyAdRequest.operation));
             client = (HttpURLConnection) url.openConnection();
 
             // Setup for writing/reading
-            client.setRequestProperty(AppyAdStatic.AARQPROP, AppyAdStatic.AARQPREFX+AppyAdService.getInstance().getApplicationName());
+            client.setRequestProperty(AppyAdStatic.AARQPROP, (mAppyAdRequest.referer != null) ? mAppyAdRequest.referer : AppyAdService.getInstance().getReferer());
+            if (mAppyAdRequest.eTag != null) client.setRequestProperty("If-None-Match", mAppyAdRequest.eTag);
+            if (mAppyAdRequest.lastModified != null) client.setRequestProperty("If-Modified-Since", mAppyAdRequest.lastModified);
+            if (campaignRequest) client.setRequestProperty("Accept-Encoding", "gzip");
+            if ((mAppyAdRequest.operation == AppyAdStatic.TRACKBATCH) && (body.length >= GZIP_BODY_THRESHOLD)) {
+                body = gzip(body);
+                client.setRequestProperty("Content-Encoding", "gzip");
+            }
             client.setDoOutput(true);
-            client.setFixedLengthStreamingMode(sPars.length());
-            output = new OutputStreamWriter(client.getOutputStream());
-            output.write(sPars);
+            client.setFixedLengthStreamingMode(body.length);
+            output = client.getOutputStream();
+            output.write(body);
             output.flush();
+            metrics.recordSince(AppyAdMetrics.QUERY_CONNECT, start);
+            metrics.record(AppyAdMetrics.QUERY_BYTES_SENT, body.length);
 
-            if (mAppyAdRequest.operation == AppyAdStatic.GETADSET) {
-                input = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            boolean empty = false;
+            int code = client.getResponseCode();
+            mResponseCode = code;
+            responded = true;
+            metrics.recordSince(AppyAdMetrics.QUERY_FIRST_BYTE, start);
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                input = client.getErrorStream();
+                if (input != null) input = received = new CountingInputStream(input);
+                mRetryAfter = parseRetryAfter(client);
+                setSpecError(1,"Request rejected by server.","Response code "+code+((mRetryAfter > 0) ? ", retry after "+mRetryAfter+" ms." : "."));
+                return (mStatus);
+            }
+            if ((mAppyAdRequest.operation == AppyAdStatic.GETADSET) && (code == HttpURLConnection.HTTP_NOT_MODIFIED)) {
+                mNotModified = true;
+                AppyAdLog.debug(TAG, "Ad package not modified since last retrieval.");
+            }
+            else if (campaignRequest) {
+                mETag = client.getHeaderField("ETag");
+                mLastModified = client.getHeaderField("Last-Modified");
+                received = new CountingInputStream(client.getInputStream());
+                input = new BufferedInputStream(openResponse(client, received));
                 // Now wait for response
-
-                String line = null;
-                while ((line = input.readLine()) != null) {
-                    svrResp.append(line).append("\n");
-                }
-                AppyAdService.getInstance().debugOut(TAG, "Got in ad package with length " + svrResp.length());
+                input.mark(1);
+                empty = (input.read() == -1);
+                input.reset();
+                if (!empty) reader.readResponse(this, input);
+            }
+            else input = received = new CountingInputStream(client.getInputStream());
+            if (empty) {
+                setSpecError(1,"No response from network server.","Please try again later.");
             }
             else {
-                svrResp.append("ok");
+                // Set status to ok
+                mStatus = true;
+                AppyAdLog.debug(TAG, "Network server connection operation successful.");
             }
-            // Set status to ok
-            mStatus = true;
-            AppyAdService.getInstance().debugOut(TAG,"Network server connection operation successful.");
 
         }
         catch (UnknownHostException e1) {
@@ -149,19 +421,275 @@ public class AppyAdSendServer {
             setSpecError(1,"Unable to connect to server.","Error during network connection.");
         }
         finally {
-            AppyAdService.getInstance().debugOut(TAG,"Closing network connections.");
-            // Close the http connection
+            AppyAdLog.debug(TAG, "Closing network streams.");
+            // Finish reading the response, so that the connection goes back to the keep-alive pool
+            boolean reusable = responded && drain(input);
             try { if (input != null) input.close(); } catch (Exception el) { }
             try { if (output != null) output.close(); } catch (Exception el) { }
-            try { if (client != null) client.disconnect(); } catch (Exception el) { }
+            try { if ((client != null) && !reusable) client.disconnect(); } catch (Exception el) { }
+            if (received != null) metrics.record(AppyAdMetrics.QUERY_BYTES_RECEIVED, received.count);
+            metrics.recordSince(AppyAdMetrics.QUERY_TOTAL, start);
+            if (!mStatus) metrics.count(AppyAdMetrics.QUERY_FAILURES);
         }
 
-        if (svrResp.length() == 0) {
-            svrResp.append(' '); // Failure
-            if (specErrorNum == 0) setSpecError(1,"No response from network server.","Please try again later.");
+        return (mStatus);
+    }
+
+    /**
+     * This method returns the response stream of a connection, decompressing it when the server sent it gzip encoded.
+     * @param client - The HttpURLConnection object holding the response.
+     * @param in - The InputStream object of the connection's response.
+     * @return - An InputStream object containing the decoded response.
+     * @throws IOException - If the response could not be opened.
+     */
+    private static InputStream openResponse(HttpURLConnection client, InputStream in) throws IOException {
+        if ("gzip".equalsIgnoreCase(client.getContentEncoding())) {
+            AppyAdLog.debug(TAG, "Receiving gzip encoded response of {} bytes.", client.getContentLength());
+            return (new GZIPInputStream(in));
         }
+        return (in);
+    }
 
-        return (svrResp.toString());
+    /**
+     * This method gzip encodes a request body.
+     * @param body - A byte array containing the request body.
+     * @return - A byte array containing the gzip encoded request body.
+     * @throws IOException - If the body could not be encoded.
+     */
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+        return (bytes.toByteArray());
+    }
+
+    /**
+     * This method reads whatever is left of a response, up to {@link #MAX_DRAIN_BYTES}, so that its connection can be reused.
+     * @param in - The InputStream containing the rest of the response (may be null).
+     * @return - A boolean value indicating whether or not the end of the response was reached.
+     */
+    private static boolean drain(InputStream in) {
+        if (in == null) return (true);
+        try {
+            byte[] buf = new byte[4096];
+            int total = 0;
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                total += n;
+                if (total > MAX_DRAIN_BYTES) return (false);
+            }
+            return (true);
+        } catch (Exception e) {
+            return (false);
+        }
+    }
+
+    /**
+     * This interface is implemented by objects which consume an ad campaign package straight from the
+     * network stream.
+     */
+    public interface ResponseReader {
+
+        /**
+         * This method is called with the response stream of a successful campaign request.
+         * @param server - The {@link AppyAdSendServer} object making the request (for access to the response validators).
+         * @param in - The InputStream containing the response from the server.
+         * @throws IOException - If the response could not be read.
+         */
+        void readResponse(AppyAdSendServer server, InputStream in) throws IOException;
+    }
+
+    /**
+     * This class counts the bytes read from a response stream, as they came over the network.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        /**
+         * This constructor defines the stream being counted.
+         * @param in - The InputStream object to count.
+         */
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return (b);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) count += n;
+            return (n);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return (skipped);
+        }
+    }
+
+    /**
+     * This interface is implemented by objects which act on the outcome of a campaign request
+     * made with {@link #queryServer(ResponseReader, Completion) queryServer}.
+     */
+    public interface Completion {
+
+        /**
+         * This method is called once the request is done, and its campaign package, if any, has been read.
+         * @param server - The {@link AppyAdSendServer} object holding the outcome.
+         */
+        void onComplete(AppyAdSendServer server);
+    }
+
+    /**
+     * This class holds a campaign request in flight, and the identical requests added to it.
+     */
+    private static class Flight {
+
+        private final String key;
+        private final List<Follower> followers = new ArrayList<Follower>();  // Guarded by flights
+
+        /**
+         * This constructor defines the key of the request.
+         * @param key - A String containing the key.
+         */
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * This method stops further requests from being added.
+         * @return - A List of the {@link Follower} objects added so far.
+         */
+        private List<Follower> close() {
+            synchronized (flights) {
+                if (flights.get(key) == this) flights.remove(key);
+                return (new ArrayList<Follower>(followers));
+            }
+        }
+    }
+
+    /**
+     * This class holds an identical request added to one in flight.
+     */
+    private static class Follower {
+
+        private final AppyAdSendServer server;
+        private final ResponseReader reader;
+        private final Completion completion;
+
+        /**
+         * This constructor defines the added request.
+         * @param server - The {@link AppyAdSendServer} object of the added request.
+         * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+         * @param completion - The {@link Completion} object called with the outcome.
+         */
+        private Follower(AppyAdSendServer server, ResponseReader reader, Completion completion) {
+            this.server = server;
+            this.reader = reader;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * This class hands the campaign package on to the actual {@link ResponseReader}.  Once the package starts
+     * arriving, no more requests can be added to the one in flight, and a copy of the package is only kept
+     * when some were added before.
+     */
+    private static class Recorder implements ResponseReader {
+
+        private final ResponseReader reader;
+        private final Flight flight;
+        private ByteArrayOutputStream copy = null;
+        private boolean complete = false;
+
+        /**
+         * This constructor defines the actual reader.
+         * @param reader - The {@link ResponseReader} object which consumes the campaign package.
+         * @param flight - The {@link Flight} object of the request.
+         */
+        private Recorder(ResponseReader reader, Flight flight) {
+            this.reader = reader;
+            this.flight = flight;
+        }
+
+        @Override
+        public void readResponse(AppyAdSendServer server, InputStream in) throws IOException {
+            if (flight.close().isEmpty()) {
+                reader.readResponse(server, in);
+                return;
+            }
+            copy = new ByteArrayOutputStream(4096);
+            InputStream tee = new TeeInputStream(in, copy);
+            reader.readResponse(server, tee);
+            byte[] rest = new byte[512];
+            while (tee.read(rest) != -1) { }  // The copy must hold the whole package.
+            complete = true;
+        }
+
+        /**
+         * This method returns the copy of the campaign package.
+         * @return - A byte array containing the campaign package, or null if it was not copied completely.
+         */
+        private byte[] getPackage() {
+            return (complete ? copy.toByteArray() : null);
+        }
+    }
+
+    /**
+     * This class copies the bytes read from a stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        private final ByteArrayOutputStream copy;
+
+        /**
+         * This constructor defines the stream being read and where its bytes are copied to.
+         * @param in - The InputStream object to read.
+         * @param copy - The ByteArrayOutputStream object receiving the copy.
+         */
+        private TeeInputStream(InputStream in, ByteArrayOutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) copy.write(b);
+            return (b);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) copy.write(buf, off, n);
+            return (n);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buf = new byte[(int) Math.min(n, 512)];
+            int read = read(buf, 0, buf.length);
+            return ((read > 0) ? read : 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return (false);
+        }
     }
 
 }
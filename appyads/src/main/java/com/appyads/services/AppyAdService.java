@@ -1,27 +1,40 @@
 package com.appyads.services;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Handler;
 import android.os.Message;
-import android.util.Log;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.view.animation.ScaleAnimation;
 import android.view.animation.TranslateAnimation;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.Stack;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class represents the control center of the AppyAds system.
  * "There can be only one" instance of this class.  It is a Singleton class and all external references to the AppyAdService object are via the {@link #getInstance() getInstance()} method.
- * This module handles communication between the {@link AppyAdRetriever} thread and the {@link AppyAdManager} object by the use of
- * a static {@link Handler} object, which processes messages from the non-UI thread, which cannot directly
- * manipulate views.
+ * This module handles communication between the background threads ({@link AppyAdScheduler} and {@link AppyAdRetriever})
+ * and the {@link AppyAdManager} objects by the use of a static {@link Handler} object, which processes messages from
+ * the non-UI threads, which cannot directly manipulate views.
+ * Every registered {@link AppyAdManager} view object is served at the same time, each with its own campaign, ad
+ * rotation and refresh cycle, all driven by the one {@link AppyAdScheduler} thread.  Registered objects are only
+ * weakly referenced, so a screen which goes away without being detached does not keep its Activity alive.
  *
  */
 public class AppyAdService {
@@ -32,19 +45,32 @@ public class AppyAdService {
     private static final int NORMAL_SLEEP_DURATION = 5000;
     public static final int MINIMUM_REFRESH_TIME = 30000;  // 30 seconds
     public static final int MAXIMUM_REFRESH_TIME = 86400000;  // 24 hours
+    private static final int PREPARE_LEAD_TIME = 500;
+    private static final int REFRESH_GATHER_DELAY = 100;  // Lets views laid out together be refreshed in one request
+    private static final int REFRESH_BATCH_WINDOW = 2000;
     public static final String APPYADS_NAME_SPACE = "http://schemas.appyads.com/attributes";
     private static final String APPYADS_SERVER_HOST_URL = "https://appyads.com/campaign-resources/";
     private static final String APPYADS_SERVER_TRACKER_URL = "https://ads.appyads.com/";
 
 	public static Handler handler;
-	private static boolean adThreadLooper = false;
-	private static boolean adThreadRunning = false;
-	private static boolean debugOn = false;
-    private static String uSpec = "initial";
-    private static String mAppId = "initial";
+	private static volatile boolean adThreadLooper = false;
+	private static volatile boolean adThreadRunning = false;
+    private static volatile String uSpec = "initial";
+    private static volatile String mAppId = "initial";
+    private volatile String mReferer = AppyAdStatic.AARQPREFX + "unknown_a";
 
     private String adRootDir;
-    private Stack<AppyAdManager> mgrStack = new Stack<AppyAdManager>();
+    private final List<WeakReference<AppyAdManager>> managers = new CopyOnWriteArrayList<WeakReference<AppyAdManager>>();
+    private AppyAdExecutor executor = new AppyAdExecutor();
+    private AppyAdTracker tracker = new AppyAdTracker();
+    private final AppyAdMetrics metrics = new AppyAdMetrics();
+    private BroadcastReceiver connectivityReceiver = null;
+    private AppyAdScheduler scheduler = new AppyAdScheduler(new AppyAdScheduler.Dispatcher() {
+        @Override
+        public void onDue(int kind, AppyAdManager toam) {
+            dispatch(kind, toam);
+        }
+    });
 
     private static final AppyAdService holder = new AppyAdService();
 
@@ -59,20 +85,23 @@ public class AppyAdService {
         handler = new Handler() {
             @Override
             public void handleMessage(Message msg) {
-                debugOut(TAG,"Handler method received message from Retriever thread.");
+                AppyAdLog.debug(TAG, "Handler method received message from background thread.");
                 try {
                     switch (msg.what) {
                         case 1:
-                            errorOut(TAG, "Error from AdRetriever thread.");
+                            AppyAdLog.error(TAG, "Error from AdRetriever thread.");
                             showAlert((String[]) msg.obj);
                             break;
                         case 7:
-                            updateAdViews();
+                            updateAdViews((AppyAdManager) msg.obj);
+                            break;
+                        case 8:
+                            prepareAdViews((AppyAdManager) msg.obj);
                             break;
                     }
                 }
                 catch (Exception e) {
-                    errorOut(TAG,e.getMessage());
+                    AppyAdLog.error(TAG, "{}", e.getMessage());
                 }
             }
         };
@@ -97,18 +126,116 @@ public class AppyAdService {
     }
 
     /**
-     * This method checks to see if the non-UI thread is running and, if it is not running, submits
-     * the thread and defines the application's file directory (to which new ad campaigns are saved).
+     * This method defines the application's file directory (to which new ad campaigns and queued tracking
+     * events are saved).  Queued tracking events are replayed at this point, and again whenever network
+     * connectivity returns.
      *
      * @param context - The context (Activity) which govern's the {@link AppyAdManager} view object.
      */
     private void initializeAdService(Context context) {
-		if (!adThreadRunning) {
-			new Thread(new AppyAdRetriever()).start();
+        if (adRootDir == null) {
             adRootDir = context.getFilesDir() + "/AppyAds";
+            tracker.setLogDirectory(adRootDir);
+            tracker.flush();
+        }
+        if (connectivityReceiver == null) {
+            connectivityReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    if (!intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)) {
+                        AppyAdLog.debug(TAG, "Network connectivity changed. Replaying queued tracking events.");
+                        tracker.flush();
+                    }
+                }
+            };
+            try {
+                context.getApplicationContext().registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+            } catch (Exception e) {
+                AppyAdLog.error(TAG, "Unable to watch network connectivity. {}", e.getMessage());
+            }
         }
 	}
 
+    /**
+     * This method returns the {@link AppyAdExecutor} object which runs all the background work of the AppyAds system.
+     * Its parallelism and thread mode may be set before the first {@link AppyAdManager} view object is created.
+     *
+     * @return - The {@link AppyAdExecutor} object.
+     */
+    public AppyAdExecutor getExecutor() {
+        return (executor);
+    }
+
+    /**
+     * This method returns the {@link AppyAdScheduler} object timing the ad rotations and campaign refreshes.
+     * @return - The {@link AppyAdScheduler} object.
+     */
+    AppyAdScheduler getScheduler() {
+        return (scheduler);
+    }
+
+    /**
+     * This method returns the {@link AppyAdMetrics} object in which the timings of ad campaign retrieval, ad element
+     * loading and ad rotation are recorded.  Host applications may poll it, or register a listener with it.
+     *
+     * @return - The {@link AppyAdMetrics} object.
+     */
+    public AppyAdMetrics getMetrics() {
+        return (metrics);
+    }
+
+    /**
+     * This method returns the {@link AppyAdStore} object holding the last good ad campaign for the given
+     * {@link AppyAdManager} view object's account ID and campaign size.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     * @return - An {@link AppyAdStore} object, or null if the application's file directory is not yet known.
+     */
+    public AppyAdStore getCampaignStore(AppyAdManager toam) {
+        if ((toam == null) || (adRootDir == null)) return (null);
+        return (new AppyAdStore(adRootDir, toam.getAccountID(), toam.getCampaignSize()));
+    }
+
+    /**
+     * This method loads the last good ad campaign from the {@link AppyAdStore} in the background, so that a
+     * newly registered {@link AppyAdManager} view object can show ads right away.  A scheduled refresh
+     * still goes to the server for a fresh campaign, which replaces the stored one when it arrives.
+     *
+     * @param toam - The {@link AppyAdManager} object to populate
+     */
+    private void loadStoredCampaign(final AppyAdManager toam) {
+        final AppyAdStore store = getCampaignStore(toam);
+        if (store == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                InputStream in = store.openCampaign();
+                if (in == null) {
+                    AppyAdLog.debug(TAG, "No stored campaign for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+                    return;
+                }
+                try {
+                    AppyAdConfig config = new AppyAdConfig(toam);
+                    String version = parseCampaign(config, new BufferedInputStream(in));
+                    if (version == null) return;
+                    String[] validators = store.readValidators();
+                    synchronized (toam) {
+                        if (toam.hasBeenRefreshed()) return;
+                        config.apply(store);
+                        toam.setCampaignVersion(version, validators[0], validators[1]);
+                    }
+                } catch (IOException e) {
+                    AppyAdLog.error(TAG, "Unable to read stored campaign. {}", e.getMessage());
+                    return;
+                } finally {
+                    try { in.close(); } catch (Exception el) { }
+                }
+                AppyAdLog.debug(TAG, "Set stored Ad campaign for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+                startRotation(toam);
+            }
+        });
+    }
+
     /**
      * This method writes errors to the log window. (Note that debug must be set to true to enable logging.)
      *
@@ -116,26 +243,146 @@ public class AppyAdService {
      */
 	private void showAlert(String[] msg) {
         if (msg != null) {
-            if (msg.length > 1) errorOut(TAG,msg[0]+" "+msg[1]);
-            else if (msg.length > 0) errorOut(TAG,msg[0]);
+            if (msg.length > 1) AppyAdLog.error(TAG, "{} {}", msg[0], msg[1]);
+            else if (msg.length > 0) AppyAdLog.error(TAG, "{}", msg[0]);
         }
 	}
 
     /**
-     * This method get's the currently visible {@link AppyAdManager} view object and calls its method to update its
-     * ad views.
+     * This method calls the method of an {@link AppyAdManager} view object to update its ad views, provided it
+     * is still registered.
+     *
+     * @param toam - The {@link AppyAdManager} object to update
      */
-	private void updateAdViews() {
-        if (!mgrStack.empty()) {
-            debugOut(TAG,"Updating Ad view from thread....");
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) toam.showNextAd();
+	private void updateAdViews(AppyAdManager toam) {
+        if (isRegistered(toam)) {
+            AppyAdLog.debug(TAG, "Updating Ad view from thread....");
+            toam.showNextAd();
         }
 	}
 
+    /**
+     * This method calls the method of an {@link AppyAdManager} view object to build the view and animations of
+     * its next ad ahead of the transition, provided it is still registered.
+     *
+     * @param toam - The {@link AppyAdManager} object to prepare
+     */
+	private void prepareAdViews(AppyAdManager toam) {
+        if (isRegistered(toam)) toam.prepareNextView();
+	}
+
+    /**
+     * This method asks the handler to update the ad views of an {@link AppyAdManager} view object.
+     *
+     * @param toam - The {@link AppyAdManager} object to update
+     */
+    private void postAdUpdate(AppyAdManager toam) {
+        postAdMessage(7, toam);
+    }
+
+    /**
+     * This method sends a message about an {@link AppyAdManager} view object to the handler.
+     *
+     * @param what - An int value representing the message (7 to show the next ad, 8 to prepare it).
+     * @param toam - The {@link AppyAdManager} object the message is about
+     */
+    private void postAdMessage(int what, AppyAdManager toam) {
+        Message message = handler.obtainMessage();
+        message.what = what;
+        message.obj = toam;
+        handler.sendMessage(message);
+    }
+
+    /**
+     * This method schedules the preparation of the next ad, a little ahead of the time the current ad's display time is up.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     * @param duration - An int value representing the time in milliseconds until the next ad is due.
+     */
+    private void schedulePrepare(AppyAdManager toam, int duration) {
+        scheduler.schedule(AppyAdScheduler.PREPARE, toam, duration - prepareLeadTime(duration));
+    }
+
+    /**
+     * This method returns how long ahead of a transition the next ad is prepared.
+     *
+     * @param duration - An int value representing the display time in milliseconds of the ad currently shown.
+     * @return - An int value representing the lead time in milliseconds (at most half the display time).
+     */
+    private int prepareLeadTime(int duration) {
+        return (Math.min(PREPARE_LEAD_TIME, duration / 2));
+    }
+
+    /**
+     * This method checks whether an {@link AppyAdManager} view object is currently registered with the service.
+     * It is called from any thread, and does not lock.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     * @return - A boolean value indicating whether or not the object is registered.
+     */
+    private boolean isRegistered(AppyAdManager toam) {
+        if (toam == null) return (false);
+        for (WeakReference<AppyAdManager> ref : managers) {
+            if (ref.get() == toam) return (true);
+        }
+        return (false);
+    }
+
+    /**
+     * This method returns the most recently registered {@link AppyAdManager} view object still alive, which the methods
+     * without an {@link AppyAdManager} parameter refer to.  It is called from any thread, and does not lock.
+     *
+     * @return - The {@link AppyAdManager} object, or null if none is registered.
+     */
+    private AppyAdManager currentManager() {
+        Object[] refs = managers.toArray();
+        for (int i = refs.length - 1; i >= 0; i--) {
+            @SuppressWarnings("unchecked")
+            AppyAdManager toam = ((WeakReference<AppyAdManager>) refs[i]).get();
+            if (toam != null) return (toam);
+        }
+        return (null);
+    }
+
+    /**
+     * This method returns the number of {@link AppyAdManager} view objects currently registered with the service.
+     *
+     * @return - An int value representing the number of registered {@link AppyAdManager} objects.
+     */
+    public int getManagerCount() {
+        int count = 0;
+        for (WeakReference<AppyAdManager> ref : managers) {
+            if (ref.get() != null) count++;
+        }
+        return (count);
+    }
+
+    /**
+     * This method adds or removes an {@link AppyAdManager} view object in the registry, dropping the entries of any
+     * objects which have been garbage collected along the way.  Changes are made one at a time, while readers carry on
+     * against the registry as it was.
+     *
+     * @param toam - The {@link AppyAdManager} object to add or remove
+     * @param add - A boolean value. If set to true, the object is added (unless already registered), otherwise it is removed.
+     * @return - A boolean value indicating whether or not the registry was changed.
+     */
+    private synchronized boolean updateRegistry(AppyAdManager toam, boolean add) {
+        boolean found = false;
+        for (WeakReference<AppyAdManager> ref : managers) {
+            AppyAdManager m = ref.get();
+            if (m == null) managers.remove(ref);
+            else if (m == toam) {
+                found = true;
+                if (!add) managers.remove(ref);
+            }
+        }
+        if (add && !found) managers.add(new WeakReference<AppyAdManager>(toam));
+        return (add != found);
+    }
+
     /**
      * This method is called from a newly instantiated {@link AppyAdManager} view object, which is requesting to
-     * be recognized by the AppyAds service.
+     * be recognized by the AppyAds service.  The new object is served alongside any already registered.
      *
      * @param uspec - A String representing a unique identifier for the device
      * @param appid - A String representing a unique identifier for the application
@@ -145,26 +392,144 @@ public class AppyAdService {
         if (toam != null) {
             if ((uSpec.equals("initial")) && (uspec !=null)) uSpec = uspec;
             if ((mAppId.equals("initial")) && (appid !=null)) mAppId = appid;
-            mgrStack.push(toam);
+            mReferer = toam.getRequestTemplate().getReferer();
+            if (!updateRegistry(toam, true)) return;
             initializeAdService(toam.getContext());
+            startService();
+            if (!toam.hasBeenRefreshed()) loadStoredCampaign(toam);
+            serveManager(toam);
         }
     }
 
     /**
-     * This method is called to take the currently visible {@link AppyAdManager} view object off the stack.  It is
+     * This method is called to take an {@link AppyAdManager} view object out of service.  It is
      * called when the {@link AppyAdManager} object is being destroyed.  However, it is possible that the
-     * user is simply changing orientation, in which case the non-UI thread should not be stopped, because
+     * user is simply changing orientation, in which case the service should not be stopped, because
      * it will just need to be started again.  Hence the need for the parameter, which indicates whether
-     * or not to stop the non-UI thread.
+     * or not to stop the service once no other object is registered.  The scheduled tasks of the removed
+     * object are cancelled.  Other registered objects are not affected.
+     *
+     * @param toam - The {@link AppyAdManager} object being removed
+     * @param stopIt - A boolean value indicating whether or not to stop the service when no {@link AppyAdManager} object is left.
+     */
+    public void unRegisterManager(AppyAdManager toam, boolean stopIt) {
+        if (toam != null) {
+            updateRegistry(toam, false);
+            scheduler.cancelAll(toam);
+        }
+        if ((getManagerCount() == 0) && stopIt) stopService();
+    }
+
+    // *********************** Scheduling ****************************
+
+    /**
+     * This method schedules the ad rotation and campaign refresh of an {@link AppyAdManager} view object
+     * which has just been registered, or whose ad processing has been switched back on.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     */
+    private void serveManager(AppyAdManager toam) {
+        scheduleRefresh(toam, false);
+        resumeRotation(toam);
+    }
+
+    /**
+     * This method restarts the ad rotation of an {@link AppyAdManager} view object from the ad currently shown, once
+     * its ads are rotated again.
      *
-     * @param stopIt - A boolean value indicating whether or not to stop the non-UI {@link AppyAdRetriever} thread.
+     * @param toam - The {@link AppyAdManager} object in play
      */
-    public void unRegisterManager(boolean stopIt) {
-        if (!mgrStack.empty()) {
-            mgrStack.pop();
-            if ((mgrStack.empty()) && stopIt) stopService();
+    public void resumeRotation(AppyAdManager toam) {
+        if (isRegistered(toam) && toam.isRotating()) schedulePrepare(toam, toam.getSleepInterval());
+    }
+
+    /**
+     * This method is called when ad processing is switched back on for an {@link AppyAdManager} view object,
+     * restarting its ad rotation and campaign refreshes.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     */
+    public void resumeManager(AppyAdManager toam) {
+        if (isRegistered(toam)) serveManager(toam);
+    }
+
+    /**
+     * This method schedules the next campaign refresh of an {@link AppyAdManager} view object.
+     * <ul><li>After a failed attempt, or while the circuit of its {@link AppyAdBackoff} object is open, the refresh is retried
+     *     after the delay worked out by the {@link AppyAdBackoff} object.</li></ul>
+     * <ul><li>While ads are switched off by the application, no refresh is scheduled.</li></ul>
+     * <ul><li>Otherwise the refresh is due one refresh interval after the last one, or never if there is no refresh interval.</li></ul>
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     * @param failed - A boolean value indicating whether or not the last attempt failed.
+     */
+    public void scheduleRefresh(AppyAdManager toam, boolean failed) {
+        if (!isRegistered(toam)) return;
+        long delay;
+        if (failed || toam.getBackoff().isOpen()) delay = toam.getBackoff().getRetryDelay();
+        else if (!toam.adsAreOn()) delay = -1;
+        else delay = toam.getRefreshDelay();
+        if (delay >= 0) {
+            if (!failed) delay = Math.max(delay, REFRESH_GATHER_DELAY);
+            AppyAdLog.debug(TAG, "Next campaign refresh in {} ms.", delay);
+            scheduler.schedule(AppyAdScheduler.REFRESH, toam, delay);
+        }
+        else scheduler.cancel(AppyAdScheduler.REFRESH, toam);
+    }
+
+    /**
+     * This method shows the first ad of a newly loaded campaign and restarts the ad rotation from it.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     */
+    public void startRotation(AppyAdManager toam) {
+        postAdUpdate(toam);
+        if (isRegistered(toam) && toam.isRotating()) {
+            schedulePrepare(toam, toam.getAdDuration(0));
+        }
+    }
+
+    /**
+     * This method is called on the scheduler thread when a task is due.
+     * <ul><li>A preparation, due a little before the current ad's display time is up, picks the next ad, readies its bitmap
+     *     for drawing, has the handler build its view and animations, and schedules the rotation.</li></ul>
+     * <ul><li>A rotation has the handler flip to the prepared ad, and schedules the following preparation from that ad's display time.</li></ul>
+     * <ul><li>A refresh runs an {@link AppyAdRetriever} on the {@link AppyAdExecutor}.  The refreshes of other views due within
+     *     {@link #REFRESH_BATCH_WINDOW} milliseconds are brought forward, and all of them are run by one {@link AppyAdBatchRetriever}.</li></ul>
+     *
+     * @param kind - An int value representing the kind of task.
+     * @param toam - The {@link AppyAdManager} object the task belongs to.
+     */
+    private void dispatch(int kind, AppyAdManager toam) {
+        if (!adServiceIsOn() || !isRegistered(toam)) return;
+        switch (kind) {
+            case AppyAdScheduler.PREPARE:
+                if (toam.isRotating() && toam.prepareNextAd()) {
+                    toam.prepareNextCreative();
+                    postAdMessage(8, toam);
+                    scheduler.schedule(AppyAdScheduler.ROTATE, toam, prepareLeadTime(toam.getCurrentAdDuration()));
+                }
+                break;
+            case AppyAdScheduler.ROTATE:
+                if (toam.isRotating()) {
+                    postAdUpdate(toam);
+                    schedulePrepare(toam, toam.getNextAdDuration());
+                }
+                break;
+            case AppyAdScheduler.REFRESH:
+                List<AppyAdManager> batch = new ArrayList<AppyAdManager>();
+                batch.add(toam);
+                for (AppyAdManager m : scheduler.takeDue(AppyAdScheduler.REFRESH, REFRESH_BATCH_WINDOW)) {
+                    if (isRegistered(m) && !batch.contains(m)) batch.add(m);
+                }
+                try {
+                    executor.execute((batch.size() > 1) ? new AppyAdBatchRetriever(batch) : new AppyAdRetriever(toam));
+                } catch (RejectedExecutionException e) {
+                    AppyAdLog.error(TAG, "Unable to queue campaign refresh.");
+                    for (AppyAdManager m : batch) scheduleRefresh(m, true);
+                }
+                break;
         }
-        else stopService();
     }
 
     // ********************  DNS/TCPIP ******************************
@@ -178,8 +543,8 @@ public class AppyAdService {
     private boolean checkNetworkPermissions(Context context) {
         boolean hasNetworkAccess = ((context.checkCallingOrSelfPermission("android.permission.ACCESS_NETWORK_STATE") == PackageManager.PERMISSION_GRANTED) &&
                 (context.checkCallingOrSelfPermission("android.permission.INTERNET") == PackageManager.PERMISSION_GRANTED));
-        if (!hasNetworkAccess) errorOut(TAG,"Application does NOT have INTERNET and/or ACCESS_NETWORK_STATE permissions!!");
-        else debugOut(TAG,"Application permissions ok.");
+        if (!hasNetworkAccess) AppyAdLog.error(TAG, "Application does NOT have INTERNET and/or ACCESS_NETWORK_STATE permissions!!");
+        else AppyAdLog.debug(TAG, "Application permissions ok.");
         return (hasNetworkAccess);
     }
 
@@ -189,17 +554,24 @@ public class AppyAdService {
      * @return - A boolean value indicating whether or not network access is available.
      */
     public boolean isNetworkAvailable() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) {
-                Context context = toam.getContext();
-                if (context != null) {
-                    if (checkNetworkPermissions(context)) {
-                        ConnectivityManager connectivityManager
-                                = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-                        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-                        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
-                    }
+        return (isNetworkAvailable(currentManager()));
+    }
+
+    /**
+     * This method checks to see if network access is available, using the context of the given {@link AppyAdManager} view object.
+     *
+     * @param toam - The {@link AppyAdManager} object in play
+     * @return - A boolean value indicating whether or not network access is available.
+     */
+    public boolean isNetworkAvailable(AppyAdManager toam) {
+        if (toam != null) {
+            Context context = toam.getContext();
+            if (context != null) {
+                if (checkNetworkPermissions(context)) {
+                    ConnectivityManager connectivityManager
+                            = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                    NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+                    return activeNetworkInfo != null && activeNetworkInfo.isConnected();
                 }
             }
         }
@@ -214,6 +586,7 @@ public class AppyAdService {
     public static String getAppyAdsServerUrl(int urlSpec) {
         switch (urlSpec) {
             case AppyAdStatic.TRACKAD:
+            case AppyAdStatic.TRACKBATCH:
                 return (APPYADS_SERVER_TRACKER_URL);
             default:
                 return (APPYADS_SERVER_HOST_URL);
@@ -225,31 +598,33 @@ public class AppyAdService {
     /**
      * This method is called to record the click-through in the case the user tapped/clicked on the
      * ad view.  Note that tracking must be enabled for the ad view.  If tracking is not enabled for
-     * the ad view, this method will not be called.
+     * the ad view, this method will not be called.  The click is queued by the {@link AppyAdTracker} object
+     * and sent to the server along with other clicks in a single batch.
      *
      * @param toam - The {@link AppyAdManager} object in play
      * @param toa - The {@link AppyAd} object representing the ad view which was tapped/clicked
      */
     public void trackAdCampaign(AppyAdManager toam, AppyAd toa) {
         if (toam != null) {
-            AppyAdQuickThread tozqt = new AppyAdQuickThread(new AppyAdRequest(AppyAdStatic.TRACKAD,
-                    getAccountID(),
-                    getApplicationID(),
+            tracker.track(toam.getRequestTemplate().encodeTrackEvent(
                     toam.getCampaignAccount(),
                     toam.getCampaignID(),
-                    toam.getCampaignSize(),
                     toam.getCustomSpec(),
-                    getUUID(),
-                    toam.getScreenDensity(),
-                    toam.getAdViewWidth(),
-                    toam.getAdViewHeight(),
                     toa.mAdID,
-                    toa.mLink
+                    toa.mLink,
+                    System.currentTimeMillis()
             ));
-            new Thread(tozqt).start();
         }
     }
 
+    /**
+     * This method sends any queued tracking events to the AppyAds server straight away.  Called when the
+     * ad views are no longer visible, as the application may be about to be stopped.
+     */
+    public void flushTracking() {
+        tracker.flush();
+    }
+
     /**
      * This method returns the current application id.
      *
@@ -273,60 +648,195 @@ public class AppyAdService {
 
     /**
      * This method is called by the non-UI thread when a new ad campaign package has be received.
-     * The new ad campaign is loaded into the currently visible {@link AppyAdManager} view object.
+     * The new ad campaign is loaded into the given {@link AppyAdManager} view object and,
+     * once it has been parsed successfully, saved to the {@link AppyAdStore} for the next start up.
      *
+     * @param toam - The {@link AppyAdManager} object which requested the campaign.
      * @param xmlDriver - A String containing the new ad campaign package.
      */
-    public void setAdData(String xmlDriver) {
-        debugOut(TAG,"Received campaign data set with length "+xmlDriver.length());
-        if (xmlDriver.length() > 100) {
-            if (!mgrStack.empty()) {
-                AppyAdManager toam = mgrStack.peek();
-                if (toam != null) {
-                    toam.readyNewCampaign();
-                    new AppyAdConfig(toam, xmlDriver);
-                    toam.markRefreshed();
-                    debugOut(TAG,"Set Ad campaign successfully.");
-                }
-            }
+    public void setAdData(AppyAdManager toam, String xmlDriver) {
+        setAdData(toam, xmlDriver, null, null);
+    }
+
+    /**
+     * This method is called by the non-UI thread when an ad campaign package has be received.
+     * If the package is identical to the one already loaded in the given {@link AppyAdManager}
+     * view object, the campaign is only marked as refreshed and the existing ads and views are kept.
+     * Otherwise the new ad campaign is loaded and, once it has been parsed successfully, saved to the
+     * {@link AppyAdStore} for the next start up.
+     *
+     * @param toam - The {@link AppyAdManager} object which requested the campaign.
+     * @param xmlDriver - A String containing the ad campaign package.
+     * @param eTag - A String representing the ETag the server supplied with the package (may be null).
+     * @param lastModified - A String representing the Last-Modified date the server supplied with the package (may be null).
+     * @return - A boolean value indicating whether or not a new ad campaign was loaded.
+     */
+    public boolean setAdData(AppyAdManager toam, String xmlDriver, String eTag, String lastModified) {
+        AppyAdLog.debug(TAG, "Received campaign data set with length {}", xmlDriver.length());
+        try {
+            return (setAdData(toam, new ByteArrayInputStream(xmlDriver.getBytes("UTF-8")), eTag, lastModified));
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to read campaign data set. {}", e.getMessage());
+            return (false);
         }
-        else if (xmlDriver.length() > 0) {
-            if (!mgrStack.empty()) {
-                AppyAdManager toam = mgrStack.peek();
-                if (toam != null) {
-                    //toam.declareNoExternalAdSet();
-                    if (xmlDriver.contains("No account information found.")) {
-                        debugOut(TAG, "Account ID seemes to be invalid for account " + toam.getAccountID() + ", Campaign size " + toam.getCampaignSize() + ".");
-                    }
-                    else if (xmlDriver.contains("No published campaigns found.")) {
-                        debugOut(TAG, "Unable to retrieve any ad campaigns for account " + toam.getAccountID() + ", Campaign size " + toam.getCampaignSize() + ".");
-                    }
-                    else if (xmlDriver.contains("Invalid campaign specification.")) {
-                        debugOut(TAG, "Invalid campaign size specified for account " + toam.getAccountID() + ", Campaign size " + toam.getCampaignSize() + ".");
-                    }
-                    else {
-                        debugOut(TAG, "Received invalid response packet from server for account " + toam.getAccountID() + ", Campaign size " + toam.getCampaignSize() + ".");
-                    }
-                    toam.markRefreshed();
-                }
+    }
+
+    /**
+     * This method is called by the non-UI thread with the stream of an ad campaign package as it arrives from the server.
+     * The package is parsed in a single pass while being copied to the {@link AppyAdStore}.  If it turns out to be
+     * identical to the one already loaded in the given {@link AppyAdManager} view object, the campaign is
+     * only marked as refreshed and the existing ads and views are kept.  A package which cannot be parsed leaves
+     * the current campaign in place.
+     *
+     * @param toam - The {@link AppyAdManager} object which requested the campaign.
+     * @param in - The InputStream containing the ad campaign package.
+     * @param eTag - A String representing the ETag the server supplied with the package (may be null).
+     * @param lastModified - A String representing the Last-Modified date the server supplied with the package (may be null).
+     * @return - A boolean value indicating whether or not a new ad campaign was loaded.
+     * @throws IOException - If the stream could not be read.
+     */
+    public boolean setAdData(AppyAdManager toam, InputStream in, String eTag, String lastModified) throws IOException {
+        if (!isRegistered(toam)) return (false);
+
+        BufferedInputStream bin = new BufferedInputStream(in);
+        if (!startsWithMarkup(bin)) {
+            reportServerMessage(toam, new String(AppyAdStore.readFully(bin), "UTF-8"));
+            toam.markRefreshed();
+            return (false);
+        }
+
+        AppyAdStore store = getCampaignStore(toam);
+        AppyAdStore.CampaignCapture capture = (store != null) ? store.captureCampaign(bin) : null;
+        AppyAdConfig config = new AppyAdConfig(toam);
+        String version;
+        try {
+            version = parseCampaign(config, (capture != null) ? capture : bin);
+        } catch (IOException e) {
+            if (capture != null) capture.abort();
+            throw e;
+        }
+
+        if ((version == null) || version.equals(toam.getCampaignVersion())) {
+            if (capture != null) capture.abort();
+            synchronized (toam) {
+                if (version != null) toam.setCampaignVersion(version, eTag, lastModified);
+                toam.markRefreshed();
             }
+            if (version == null) AppyAdLog.error(TAG, "Received invalid campaign package for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+            else AppyAdLog.debug(TAG, "Ad campaign unchanged, keeping current ads.");
+            return (false);
+        }
+
+        synchronized (toam) {
+            config.apply(store);
+            toam.setCampaignVersion(version, eTag, lastModified);
+            toam.markRefreshed();
+        }
+        if ((capture != null) && capture.commit(eTag, lastModified)) {
+            store.retainCreatives(config.getSources());
+        }
+        AppyAdLog.debug(TAG, "Set Ad campaign successfully.");
+        return (true);
+    }
+
+    /**
+     * This method parses a campaign package while computing its digest, which serves as the campaign version.
+     *
+     * @param config - The {@link AppyAdConfig} object to read the campaign package into.
+     * @param in - The InputStream containing the ad campaign package.
+     * @return - A String representing the version of the campaign package, or null if it could not be parsed.
+     * @throws IOException - If the stream could not be read.
+     */
+    private String parseCampaign(AppyAdConfig config, InputStream in) throws IOException {
+        MessageDigest md = AppyAdStore.newDigest();
+        DigestInputStream din = new DigestInputStream(in, md);
+        boolean valid = config.parse(din);
+        byte[] rest = new byte[512];
+        while (din.read(rest) != -1) { } // Trailing bytes still count toward the version.
+        return (valid ? AppyAdStore.hex(md.digest()) : null);
+    }
+
+    /**
+     * This method checks whether a response looks like an xml campaign package, as opposed to a plain text message from the server.
+     *
+     * @param in - The BufferedInputStream containing the response, which is left positioned at its start.
+     * @return - A boolean value indicating whether or not the first significant character is a '&lt;'.
+     * @throws IOException - If the stream could not be read.
+     */
+    private boolean startsWithMarkup(BufferedInputStream in) throws IOException {
+        in.mark(64);
+        int b;
+        int n = 0;
+        do {
+            b = in.read();
+        } while ((++n < 64) && ((b == ' ') || (b == '\t') || (b == '\r') || (b == '\n') || (b == 0xEF) || (b == 0xBB) || (b == 0xBF)));
+        in.reset();
+        return (b == '<');
+    }
+
+    /**
+     * This method logs a plain text message received from the server in place of a campaign package.
+     *
+     * @param toam - The {@link AppyAdManager} object which requested the campaign.
+     * @param xmlDriver - A String containing the message from the server.
+     */
+    private void reportServerMessage(AppyAdManager toam, String xmlDriver) {
+        //toam.declareNoExternalAdSet();
+        if (xmlDriver.contains("No account information found.")) {
+            AppyAdLog.debug(TAG, "Account ID seemes to be invalid for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+        }
+        else if (xmlDriver.contains("No published campaigns found.")) {
+            AppyAdLog.debug(TAG, "Unable to retrieve any ad campaigns for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+        }
+        else if (xmlDriver.contains("Invalid campaign specification.")) {
+            AppyAdLog.debug(TAG, "Invalid campaign size specified for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+        }
+        else {
+            AppyAdLog.debug(TAG, "Received invalid response packet from server for account {}, Campaign size {}.", toam.getAccountID(), toam.getCampaignSize());
+        }
+    }
+
+    /**
+     * This method is called by the non-UI thread when the server reports that the ad campaign package
+     * has not changed.  The {@link AppyAdManager} view object keeps its ads and views and
+     * is simply marked as refreshed.
+     *
+     * @param toam - The {@link AppyAdManager} object which requested the campaign.
+     */
+    public void markCampaignCurrent(AppyAdManager toam) {
+        if (toam != null) {
+            toam.markRefreshed();
+            AppyAdLog.debug(TAG, "Ad campaign not modified, keeping current ads.");
         }
     }
 
+    /**
+     * This method adds the HTTP validators of the ad campaign currently loaded in an {@link AppyAdManager} view
+     * object to a campaign request, so that the server can answer with "304 Not Modified" when the campaign has not changed.
+     *
+     * @param toam - The {@link AppyAdManager} object which requests the campaign.
+     * @param request - The {@link AppyAdRequest} object about to be sent to the server.
+     * @return - The same {@link AppyAdRequest} object.
+     */
+    public AppyAdRequest addCampaignValidators(AppyAdManager toam, AppyAdRequest request) {
+        if ((toam != null) && toam.hasAdCampaign() && (toam.getCampaignVersion() != null)) {
+            request.eTag = toam.getCampaignETag();
+            request.lastModified = toam.getCampaignLastModified();
+        }
+        return (request);
+    }
+
     // ********************* Original Service stuff *******************
 
     /**
-     * This method checks to see if the currently visible {@link AppyAdManager} view object has a valid set of
+     * This method checks to see if the most recently registered {@link AppyAdManager} view object has a valid set of
      * {@link AppyAd} ad objects.
      *
      * @return - A boolean value indicating whether or not the {@link AppyAdManager} view object has a valid set of ads.
      */
     public boolean hasValidAdCampaign() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            return ((toam != null) && toam.hasAdCampaign());
-        }
-        else return (false);
+        AppyAdManager toam = currentManager();
+        return ((toam != null) && toam.hasAdCampaign());
     }
 
     /**
@@ -334,50 +844,47 @@ public class AppyAdService {
      * @return - A String representing the application name.
      */
     public String getApplicationName() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getTozApplicationName());
-            else return ("unknown_a");
-        }
-        else return ("unknown_b");
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getTozApplicationName());
+        else return ("unknown_a");
     }
 
     /**
-     * This method returns the current account ID being used for the currently visible {@link AppyAdManager} view object.
+     * This method returns the value of the Referer header sent with requests which do not belong to one
+     * {@link AppyAdManager} view object, such as tracking batches.  It is built once, when a view object registers.
+     * @return - A String containing the header value.
+     */
+    public String getReferer() {
+        return (mReferer);
+    }
+
+    /**
+     * This method returns the current account ID being used for the most recently registered {@link AppyAdManager} view object.
      * @return - A String representing the account ID.
      */
     public String getAccountID() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getAccountID());
-            else return (null);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getAccountID());
         else return (null);
     }
 
     /**
-     * This method returns the current AppyAds campaign size for the currently running {@link AppyAdManager} campaign.
+     * This method returns the current AppyAds campaign size for the most recently registered {@link AppyAdManager} view object.
      * @return - A String representing the AppyAds campaign size designation.
      */
     public String getCampaignSize() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getCampaignSize());
-            else return (null);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getCampaignSize());
         else return (null);
     }
 
     /**
-     * This method returns the current campaign ID being used by the currently visible {@link AppyAdManager} view object.
+     * This method returns the current campaign ID being used by the most recently registered {@link AppyAdManager} view object.
      * @return - A String representing the campaign ID.
      */
     public String getCampaignID() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getCampaignID());
-            else return (null);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getCampaignID());
         else return (null);
     }
 
@@ -386,11 +893,8 @@ public class AppyAdService {
      * @return - A String representing the screen density for the device. (ldpi,mdpi,hdpi,xhdpi,xxhdpi or xxxhdpi)
      */
     public String getScreenDensity() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getScreenDensity());
-            else return (null);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getScreenDensity());
         else return (null);
     }
 
@@ -399,11 +903,8 @@ public class AppyAdService {
      * @return - An int value representing the width of the view
      */
     public int getAdViewWidth() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getAdViewWidth());
-            else return (0);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getAdViewWidth());
         else return (0);
     }
 
@@ -412,11 +913,8 @@ public class AppyAdService {
      * @return - An int value representing the height of the view
      */
     public int getAdViewHeight() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getAdViewHeight());
-            else return (0);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getAdViewHeight());
         else return (0);
     }
 
@@ -425,11 +923,8 @@ public class AppyAdService {
      * @return - A boolean value indicating whether or not ad processing is on.
      */
 	public boolean adsAreOn() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            return ((toam != null) && (toam.adsAreOn()));
-        }
-        else return (false);
+        AppyAdManager toam = currentManager();
+        return ((toam != null) && (toam.adsAreOn()));
 	}
 
     /**
@@ -437,11 +932,8 @@ public class AppyAdService {
      * @return - A boolean value indicating whether or not it is time to refresh the ad campaign.
      */
     public boolean adsNeedRefreshing() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            return ((toam != null) && (toam.timeToRefresh()));
-        }
-        else return (false);
+        AppyAdManager toam = currentManager();
+        return ((toam != null) && (toam.timeToRefresh()));
     }
 
     /**
@@ -449,10 +941,8 @@ public class AppyAdService {
      * @return - A String value representing the default link to use when clicks/taps on ads without link settings occur.
      */
     public String getDefaultLink() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDefaultLink());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDefaultLink());
         return (null);
     }
 
@@ -461,10 +951,8 @@ public class AppyAdService {
      * @return - A String value representing the default setting for the animation.
      */
     public String getDefaultInAnimation() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDefaultInAnimation());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDefaultInAnimation());
         return (AppyAdStatic.NORMAL_IN_ANIMATION);
     }
 
@@ -473,10 +961,8 @@ public class AppyAdService {
      * @return - A String value representing the default setting for the animation.
      */
     public String getDefaultOutAnimation() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDefaultOutAnimation());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDefaultOutAnimation());
         return (AppyAdStatic.NORMAL_OUT_ANIMATION);
     }
 
@@ -485,10 +971,8 @@ public class AppyAdService {
      * @return - An int value in milliseconds for the duration of animations.
      */
     public int getDefaultAnimationDuration() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDefaultAnimationDuration());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDefaultAnimationDuration());
         return (AppyAdStatic.NORMAL_ANIMATION_DURATION);
     }
 
@@ -497,10 +981,8 @@ public class AppyAdService {
      * @return - An int value representing the time in milliseconds for which an ad view is displayed.
      */
     public int getDefaultDisplayInterval() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDefaultDisplayInterval());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDefaultDisplayInterval());
         return (AppyAdStatic.NORMAL_AD_DURATION);
     }
 
@@ -509,10 +991,8 @@ public class AppyAdService {
      * @return - A String value representing the custom setting. (Returns null if not set).
      */
     public String getCustomSpec() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getCustomSpec());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getCustomSpec());
         return (null);
     }
 
@@ -523,25 +1003,22 @@ public class AppyAdService {
      * Note that this value may be overridden by the setting in an ad package received by the server.
      */
     public boolean getDefaultTracking() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            return ((toam != null) && (toam.getDefaultTracking()));
-        }
-        else return (false);
+        AppyAdManager toam = currentManager();
+        return ((toam != null) && (toam.getDefaultTracking()));
     }
 
     /**
-     * This method returns the default sleep interval for the non-UI retriever thread.
+     * This method returns the default display time of an ad.
      *
-     * @return - An int value representing the time in milliseconds for the retriever thread to wait before processing the next loop-cycle.
+     * @return - An int value representing the time in milliseconds for which an ad is shown before the next one.
      */
 	public int getDefaultSleepInterval() {
 		return (NORMAL_SLEEP_DURATION);
 	}
 
     /**
-     * This method returns the interval which delays processing under error conditions.  Retries are
-     * governed by this value.
+     * This method returns the interval which delays processing under error conditions.  It is the base of the
+     * exponential retry delays worked out by {@link AppyAdBackoff}.
      * @return - An int value defining a time in milliseconds for which to wait before the next retry is attempted.
      */
     public int getErrorWaitInterval() {
@@ -549,49 +1026,41 @@ public class AppyAdService {
     }
 
     /**
-     * This method returns the current sleep interval for the non-UI retriever thread.
-     * @return - An int value representing the time in milliseconds for the retriever thread to wait before processing the next loop-cycle.
+     * This method returns the default display time of an ad for the most recently registered {@link AppyAdManager} view object.
+     * @return - An int value representing the time in milliseconds for which an ad is shown before the next one.
      */
     public int getCurrentSleepInterval() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getSleepInterval());
-            else return (getDefaultSleepInterval());
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getSleepInterval());
         else return (getDefaultSleepInterval());
     }
 
     /**
-     * This method calls the currently active {@link AppyAdManager} view object in order to allow it to prepare its
+     * This method calls the most recently registered {@link AppyAdManager} view object in order to allow it to prepare its
      * next ad.
      * @return - A boolean value indicating whether or not an ad is ready to be displayed.
      */
     public boolean prepareNextAd() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            return ((toam != null) && (toam.prepareNextAd()));
-        }
-        else return (false);
+        AppyAdManager toam = currentManager();
+        return ((toam != null) && (toam.prepareNextAd()));
     }
 
     /**
      * This method provides a common increment signature for updating the error counter of the
-     * currently active {@link AppyAdManager} view object.
+     * most recently registered {@link AppyAdManager} view object.
      */
     public void checkMaxErrors() {
         checkMaxErrors(1);
     }
 
     /**
-     * This method calls the currently active {@link AppyAdManager} view object and increments its error counter.
+     * This method calls the most recently registered {@link AppyAdManager} view object and increments its error counter.
      *
      * @param increment - An int value representing the amount by which to increase the error counter.
      */
     public void checkMaxErrors(int increment) {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) toam.checkErrorLimit(increment);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) toam.checkErrorLimit(increment);
     }
 
     /**
@@ -606,35 +1075,27 @@ public class AppyAdService {
      * This method checks to see if the dalay time has been reached.
      */
     public void checkDelayMaxed() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) toam.processDelay();
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) toam.processDelay();
     }
 
     /**
-     * This method returns the current error count for the active {@link AppyAdManager} view object.
-     * @return - An Integer value representing the number of errors that have occurred for the active {@link AppyAdManager} view object.
+     * This method returns the current error count for the most recently registered {@link AppyAdManager} view object.
+     * @return - An Integer value representing the number of errors that have occurred for the most recently registered {@link AppyAdManager} view object.
      */
     public Integer getErrorCount() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getErrorCounter());
-            else return (0);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getErrorCounter());
         else return (0);
     }
 
     /**
-     * This method returns the current delay count for the active {@link AppyAdManager} view object.
-     * @return - An Integer value representing the delay counter for the active {@link AppyAdManager} view object.
+     * This method returns the current delay count for the most recently registered {@link AppyAdManager} view object.
+     * @return - An Integer value representing the delay counter for the most recently registered {@link AppyAdManager} view object.
      */
     public Integer getDelayCount() {
-        if (!mgrStack.empty()) {
-            AppyAdManager toam = mgrStack.peek();
-            if (toam != null) return (toam.getDelayCounter());
-            else return (0);
-        }
+        AppyAdManager toam = currentManager();
+        if (toam != null) return (toam.getDelayCounter());
         else return (0);
     }
 
@@ -647,43 +1108,43 @@ public class AppyAdService {
     }
 
     /**
-     * This method is used to check whether or not the non-UI retriever thread is running.
-     * @return - A boolean value indicating whether or not the retriever thread is running.
+     * This method is used to check whether or not the non-UI {@link AppyAdScheduler} thread is running.
+     * @return - A boolean value indicating whether or not the scheduler thread is running.
      */
 	public boolean adThreadIsRunning() {
 		return (adThreadRunning);
 	}
 
     /**
-     * This method is used to set a boolean value indicating the non-UI retriever thread is currently running.
+     * This method is used to set a boolean value indicating the non-UI scheduler thread is currently running.
      */
 	public void startAdThread() {
 		adThreadRunning = true;
 	}
 
     /**
-     * This method is used to set a boolean value to indicate that the non-UI retriever thread is either stopping or has stopped.
+     * This method is used to set a boolean value to indicate that the non-UI scheduler thread is either stopping or has stopped.
      */
 	public void stopAdThread() {
 		adThreadRunning = false;
 	}
 
     /**
-     * This method sets a boolean value to allow the non-UI thread to execute normally within its loop.
+     * This method sets a boolean value to allow scheduled tasks to execute normally.
      */
 	public void startService() {
 		adThreadLooper = true;
 	}
 
     /**
-     * This method sets a boolean value to notify the non-UI thread that it should ignore normal execution within its loop.
+     * This method sets a boolean value to notify the scheduler that due tasks should be ignored.
      */
 	public void stopService() {
 		adThreadLooper = false;
 	}
 
     /**
-     * This method reveals whether the non-UI thread is processing normally or has been temporarily paused.
+     * This method reveals whether scheduled tasks are processed normally or have been temporarily paused.
      * @return - A boolean value indicating whether or not the ad processing is on.
      */
 	public boolean adServiceIsOn() {
@@ -695,7 +1156,7 @@ public class AppyAdService {
      * @param onoff - A boolean value. If set to true, logging will be enabled.
      */
 	public void setDebug(boolean onoff) {
-		debugOn = onoff;
+		AppyAdLog.setLevel(onoff ? AppyAdLog.DEBUG : AppyAdLog.OFF);
 	}
 
     /**
@@ -704,9 +1165,7 @@ public class AppyAdService {
      * @param out - A String representing the message
      */
     public void debugOut(String from, String out) {
-        if (debugOn) {
-            Log.i(from,out);
-        }
+        AppyAdLog.debug(from, out);
     }
 
     /**
@@ -715,36 +1174,57 @@ public class AppyAdService {
      * @param out - A String representing the message
      */
     public void errorOut(String from, String out) {
-        if (debugOn) {
-            Log.e(from,out);
-        }
+        AppyAdLog.error(from, out);
     }
 
 	// ********************** Animation Routines ***************************
 
     /**
      * This method translates a String representation of an animation into an Animation object.
+     * A new object is built on every call.  {@link AppyAdManager} view objects reuse theirs through {@link AppyAdAnimations}.
      * @param dir - A String indicating whether the animation is an "in" or "out" animation
      * @param toa - An {@link AppyAd} object containing the specifics of the ad, which includes the animation properties
      * @return - An {@link Animation} object
      */
     public Animation setAnimation(String dir, AppyAd toa) {
+        return (createAnimation(animationType(dir, toa), toa.mAnimationDuration));
+    }
+
+    /**
+     * This method returns the type of an ad's "in" or "out" animation, with unknown types replaced by the default fade.
+     * @param dir - A String indicating whether the animation is an "in" or "out" animation
+     * @param toa - An {@link AppyAd} object containing the specifics of the ad, which includes the animation properties
+     * @return - An int value representing the animation type. See the {@link AppyAdStatic} class for more information.
+     */
+    public static int animationType(String dir, AppyAd toa) {
+        boolean in = dir.equals("in");
+        int animType = in ? toa.mAnimationIn : toa.mAnimationOut;
+        if (((animType >= AppyAdStatic.SLIDE_IN_FROM_LEFT) && (animType <= AppyAdStatic.ZOOM_IN_FROM_CENTER))
+                || ((animType >= AppyAdStatic.SLIDE_OUT_TO_RIGHT) && (animType <= AppyAdStatic.ZOOM_OUT_TO_CENTER))
+                || (animType == AppyAdStatic.NO_ANIMATION)) return (animType);
+        return (in ? AppyAdStatic.FADE_IN : AppyAdStatic.FADE_OUT);
+    }
+
+    /**
+     * This method builds an Animation object.
+     * @param animType - An int value representing the animation type. See the {@link AppyAdStatic} class for more information.
+     * @param duration - An int value representing the number of milliseconds the animation takes.
+     * @return - An {@link Animation} object, or null for {@link AppyAdStatic#NO_ANIMATION}.
+     */
+    public static Animation createAnimation(int animType, int duration) {
         Animation a;
-        int animType;
-        if (dir.equals("in")) animType = toa.mAnimationIn;
-        else animType = toa.mAnimationOut;
         switch (animType) {
             case AppyAdStatic.FADE_IN:
                 a = new AlphaAnimation(0, 1);
                 break;
             case AppyAdStatic.ZOOM_IN_FROM_LEFT:
-                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.ZOOM_IN_FROM_RIGHT:
-                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, 1, Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, 1, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.ZOOM_IN_FROM_CENTER:
-                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, new Float(0.5), Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (0, 1, 0, 1, Animation.RELATIVE_TO_PARENT, 0.5f, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.SLIDE_IN_FROM_LEFT:
                 a = new TranslateAnimation (Animation.RELATIVE_TO_PARENT, -1, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 0);
@@ -762,13 +1242,13 @@ public class AppyAdService {
                 a = new AlphaAnimation(1, 0);
                 break;
             case AppyAdStatic.ZOOM_OUT_TO_LEFT:
-                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.ZOOM_OUT_TO_RIGHT:
-                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, 1, Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, 1, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.ZOOM_OUT_TO_CENTER:
-                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, new Float(0.5), Animation.RELATIVE_TO_PARENT, new Float(0.5));
+                a = new ScaleAnimation (1, 0, 1, 0, Animation.RELATIVE_TO_PARENT, 0.5f, Animation.RELATIVE_TO_PARENT, 0.5f);
                 break;
             case AppyAdStatic.SLIDE_OUT_TO_RIGHT:
                 a = new TranslateAnimation (Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 1, Animation.RELATIVE_TO_PARENT, 0, Animation.RELATIVE_TO_PARENT, 0);
@@ -786,11 +1266,10 @@ public class AppyAdService {
                 a = null;
                 break;
             default:
-                if (dir.equals("in")) a = new AlphaAnimation(0, 1);
-                else a = new AlphaAnimation(1, 0);
+                a = new AlphaAnimation(0, 1);
                 break;
         }
-        if (a != null) a.setDuration(toa.mAnimationDuration);
+        if (a != null) a.setDuration(duration);
         return (a);
     }
 }
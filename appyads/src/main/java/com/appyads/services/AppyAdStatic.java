@@ -10,7 +10,9 @@ public class AppyAdStatic {
     public static final int TOZWWWPG = 103;
 
     public static final int GETADSET = 301;
+    public static final int GETADSETS = 302;
     public static final int TRACKAD = 401;
+    public static final int TRACKBATCH = 402;
 
     public static final String NORMAL_IN_ANIMATION = "fade_in";
     public static final String NORMAL_OUT_ANIMATION = "fade_out";
@@ -37,6 +39,9 @@ public class AppyAdStatic {
 
     public static final int NO_ANIMATION = 700;
 
+    public static final int DECODE_FULL = 801;
+    public static final int DECODE_VIEWPORT = 802;
+
     public static final String AARQPROP = "Referer";
     public static final String AARQPREFX = "AppyAdApp_";
 }
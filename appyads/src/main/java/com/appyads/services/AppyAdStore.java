@@ -0,0 +1,364 @@
+package com.appyads.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * This class keeps the last good ad campaign package on disk, along with the creatives it
+ * refers to, so that an {@link AppyAdManager} view object can be populated at start up without
+ * waiting for the AppyAds server.  Each account ID and campaign size combination gets its own
+ * directory underneath the AppyAds root directory of the application.
+ */
+public class AppyAdStore {
+
+    private static final String TAG = "AppyAdStore";
+    private static final String CAMPAIGN_FILE = "campaign.xml";
+    private static final String VALIDATOR_FILE = "campaign.meta";
+    private static final String CREATIVE_PREFIX = "cr_";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private File mDir;
+
+    /**
+     * This constructor defines the directory used to store the campaign for the given account and campaign size.
+     *
+     * @param rootDir - A String representing the AppyAds root directory of the application.
+     * @param accountId - A String representing the AppyAds account id.
+     * @param campaignSize - A String representing the AppyAds campaign size designation.
+     */
+    public AppyAdStore(String rootDir, String accountId, String campaignSize) {
+        mDir = new File(rootDir, safeName(accountId) + "_" + safeName(campaignSize));
+    }
+
+    /**
+     * This method opens the stored campaign package for reading.
+     *
+     * @return - An InputStream over the stored ad campaign package, or null if nothing has been stored yet.
+     */
+    public InputStream openCampaign() {
+        File f = new File(mDir, CAMPAIGN_FILE);
+        if (!f.isFile()) return (null);
+        try {
+            return (new FileInputStream(f));
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to open stored campaign. {}", e.getMessage());
+            return (null);
+        }
+    }
+
+    /**
+     * This method wraps a campaign package stream so that everything read through it is also copied to a
+     * temporary file in the store.  The copy only replaces the stored campaign once
+     * {@link CampaignCapture#commit(String, String) commit} is called.
+     *
+     * @param in - The InputStream containing the campaign package.
+     * @return - A {@link CampaignCapture} stream to read the campaign package from.
+     */
+    public CampaignCapture captureCampaign(InputStream in) {
+        return (new CampaignCapture(in));
+    }
+
+    /**
+     * This method reads the HTTP validators which were received along with the stored campaign package.
+     *
+     * @return - A String array holding the ETag and the Last-Modified values (either may be null).
+     */
+    public String[] readValidators() {
+        String[] validators = new String[] {null, null};
+        byte[] data = readFile(new File(mDir, VALIDATOR_FILE));
+        if (data != null) {
+            try {
+                Properties p = new Properties();
+                p.load(new ByteArrayInputStream(data));
+                validators[0] = p.getProperty("etag");
+                validators[1] = p.getProperty("last_modified");
+            } catch (IOException e) {
+                AppyAdLog.error(TAG, "Unable to read stored validators. {}", e.getMessage());
+            }
+        }
+        return (validators);
+    }
+
+    /**
+     * This method saves the HTTP validators of the stored campaign package.
+     *
+     * @param eTag - A String representing the ETag of the campaign package (may be null).
+     * @param lastModified - A String representing the Last-Modified date of the campaign package (may be null).
+     * @return - A boolean value indicating whether or not the validators were stored.
+     * @throws IOException - If the validators could not be encoded.
+     */
+    private boolean writeValidators(String eTag, String lastModified) throws IOException {
+        Properties p = new Properties();
+        if (eTag != null) p.setProperty("etag", eTag);
+        if (lastModified != null) p.setProperty("last_modified", lastModified);
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        p.store(meta, null);
+        return (writeFile(new File(mDir, VALIDATOR_FILE), meta.toByteArray()));
+    }
+
+    /**
+     * This method reads a stored creative.
+     *
+     * @param src - A String value containing the URL of the creative.
+     * @return - A byte array holding the encoded creative, or null if it has not been stored.
+     */
+    public byte[] readCreative(String src) {
+        return (readFile(creativeFile(src)));
+    }
+
+    /**
+     * This method saves a creative which has been downloaded from the AppyAds server.
+     *
+     * @param src - A String value containing the URL of the creative.
+     * @param data - A byte array holding the encoded creative.
+     */
+    public void writeCreative(String src, byte[] data) {
+        writeFile(creativeFile(src), data);
+    }
+
+    /**
+     * This method removes any stored creatives which are no longer referred to by the current campaign.
+     *
+     * @param srcs - A Set of String values containing the URLs of the creatives to keep.
+     */
+    public void retainCreatives(Set<String> srcs) {
+        Set<String> keep = new HashSet<String>();
+        for (String src : srcs) keep.add(creativeFile(src).getName());
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().startsWith(CREATIVE_PREFIX) && !keep.contains(f.getName())) {
+                    AppyAdLog.debug(TAG, "Removing stale creative {}", f.getName());
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * This class copies a campaign package to the store while it is being read from the network.
+     * If the temporary file cannot be written, the capture is silently dropped and reading carries on.
+     */
+    public class CampaignCapture extends FilterInputStream {
+
+        private File mTmp = new File(mDir, CAMPAIGN_FILE + TEMP_SUFFIX);
+        private OutputStream mOut;
+
+        /**
+         * This constructor opens the temporary file the campaign package is copied to.
+         * @param in - The InputStream containing the campaign package.
+         */
+        private CampaignCapture(InputStream in) {
+            super(in);
+            try {
+                if (mDir.isDirectory() || mDir.mkdirs()) mOut = new FileOutputStream(mTmp);
+            } catch (IOException e) {
+                AppyAdLog.error(TAG, "Unable to capture campaign. {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) copy(new byte[] {(byte) b}, 0, 1);
+            return (b);
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) copy(buf, off, n);
+            return (n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return (false);
+        }
+
+        /**
+         * This method copies bytes that have just been read to the temporary file.
+         * @param buf - A byte array holding the bytes read.
+         * @param off - An int value representing the offset of the first byte read.
+         * @param len - An int value representing the number of bytes read.
+         */
+        private void copy(byte[] buf, int off, int len) {
+            if (mOut == null) return;
+            try {
+                mOut.write(buf, off, len);
+            } catch (IOException e) {
+                AppyAdLog.error(TAG, "Unable to capture campaign. {}", e.getMessage());
+                abort();
+            }
+        }
+
+        /**
+         * This method replaces the stored campaign package with the captured one, along with the HTTP
+         * validators the server supplied with it.
+         *
+         * @param eTag - A String representing the ETag of the campaign package (may be null).
+         * @param lastModified - A String representing the Last-Modified date of the campaign package (may be null).
+         * @return - A boolean value indicating whether or not the campaign was stored.
+         */
+        public boolean commit(String eTag, String lastModified) {
+            if (mOut == null) return (false);
+            try {
+                mOut.close();
+                mOut = null;
+                File f = new File(mDir, CAMPAIGN_FILE);
+                if (!mTmp.renameTo(f)) {
+                    f.delete();
+                    if (!mTmp.renameTo(f)) throw new IOException("Rename failed");
+                }
+                return (writeValidators(eTag, lastModified));
+            } catch (IOException e) {
+                AppyAdLog.error(TAG, "Unable to store captured campaign. {}", e.getMessage());
+                abort();
+                return (false);
+            }
+        }
+
+        /**
+         * This method throws the captured copy away, leaving the stored campaign package untouched.
+         */
+        public void abort() {
+            try { if (mOut != null) mOut.close(); } catch (Exception el) { }
+            mOut = null;
+            mTmp.delete();
+        }
+    }
+
+    /**
+     * This method reads an entire input stream into a byte array.
+     *
+     * @param in - The InputStream to read.
+     * @return - A byte array holding all the bytes read from the stream.
+     * @throws IOException - If the stream could not be read.
+     */
+    public static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16384);
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+        return (out.toByteArray());
+    }
+
+    /**
+     * This method returns the file in which a creative is stored, named after a digest of its URL.
+     * @param src - A String value containing the URL of the creative.
+     * @return - The File object for the creative.
+     */
+    private File creativeFile(String src) {
+        return (new File(mDir, CREATIVE_PREFIX + digest(src)));
+    }
+
+    /**
+     * This method reads a stored file.
+     * @param f - The File to read.
+     * @return - A byte array holding the file contents, or null if the file does not exist or could not be read.
+     */
+    private byte[] readFile(File f) {
+        if (!f.isFile()) return (null);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(f);
+            return (readFully(in));
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to read {}. {}", f.getName(), e.getMessage());
+            return (null);
+        } finally {
+            try { if (in != null) in.close(); } catch (Exception el) { }
+        }
+    }
+
+    /**
+     * This method writes the data to a temporary file first and then renames it, so that a
+     * partially written file is never mistaken for a good one.
+     * @param f - The File to write.
+     * @param data - A byte array holding the contents to write.
+     * @return - A boolean value indicating whether or not the file was written.
+     */
+    private boolean writeFile(File f, byte[] data) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            AppyAdLog.error(TAG, "Unable to create store directory {}", mDir);
+            return (false);
+        }
+        File tmp = new File(mDir, f.getName() + TEMP_SUFFIX);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(f)) {
+                f.delete();
+                if (!tmp.renameTo(f)) throw new IOException("Rename failed");
+            }
+            return (true);
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to write {}. {}", f.getName(), e.getMessage());
+            tmp.delete();
+            return (false);
+        } finally {
+            try { if (out != null) out.close(); } catch (Exception el) { }
+        }
+    }
+
+    /**
+     * This method converts a value into a String that is safe to use as a file name.
+     * @param s - A String value to convert.
+     * @return - A String value containing only file name safe characters.
+     */
+    private static String safeName(String s) {
+        if (s == null) return ("undefined");
+        return (s.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * This method returns a hexadecimal SHA-1 digest of the given String.
+     * @param s - A String value to digest.
+     * @return - A String containing the hexadecimal digest.
+     */
+    private static String digest(String s) {
+        try {
+            return (hex(newDigest().digest(s.getBytes("UTF-8"))));
+        } catch (IOException e) {
+            return (Integer.toHexString(s.hashCode()));
+        }
+    }
+
+    /**
+     * This method returns a new SHA-1 message digest, used to name creatives and to version campaign packages.
+     * @return - A MessageDigest object.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return (MessageDigest.getInstance("SHA-1"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method converts a digest into a hexadecimal String.
+     * @param d - A byte array holding the digest.
+     * @return - A String containing the hexadecimal digest.
+     */
+    static String hex(byte[] d) {
+        StringBuilder sb = new StringBuilder(d.length * 2);
+        for (byte b : d) sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return (sb.toString());
+    }
+}
@@ -0,0 +1,154 @@
+package com.appyads.services;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class collects ad tracking events and sends them to the AppyAds server in batches, so that each
+ * click does not cost a connection of its own.  A batch is sent when:
+ *      <ul><li>The number of queued events reaches {@link #MAX_BATCH_EVENTS}.</li></ul>
+ *      <ul><li>The oldest queued event is {@link #MAX_BATCH_AGE} milliseconds old.</li></ul>
+ *      <ul><li>{@link #flush() flush} is called, for example when the ad views are no longer visible, or when
+ *          network connectivity returns.</li></ul>
+ * Every event is first appended to an {@link AppyAdTrackingLog}, and only removed from it once the server has
+ * accepted the batch it was sent in, so events survive failed uploads and application restarts.  All log and
+ * network work happens, one task at a time, in a lane of the shared {@link AppyAdExecutor}.  When the server asks
+ * for a pause with a Retry-After header, no batch is sent until it is over.
+ */
+public class AppyAdTracker {
+
+    private static final String TAG = "AppyAdTracker";
+    public static final int MAX_BATCH_EVENTS = 20;
+    public static final int MAX_BATCH_AGE = 30000;  // 30 seconds
+    private static final int MAX_UPLOAD_EVENTS = 100;
+
+    private final Object mLock = new Object();
+    private AppyAdTrackingLog mLog = new AppyAdTrackingLog(null);
+    private Executor mSender;
+    private int mQueued = 0;
+    private boolean mFlushScheduled = false;
+    private long mRetryTime = AppyAdScheduler.now();
+
+    private final Runnable mAgeFlush = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mLock) {
+                mFlushScheduled = false;
+            }
+            flush();
+        }
+    };
+
+    private final Runnable mSendPending = new Runnable() {
+        @Override
+        public void run() {
+            sendPending();
+        }
+    };
+
+    /**
+     * This method moves the tracking log to the given directory, so that queued events are kept on disk.
+     * Any events held in memory up to now are carried over.
+     *
+     * @param dir - A String representing the directory the tracking log is kept in.
+     */
+    public void setLogDirectory(final String dir) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                AppyAdTrackingLog log = new AppyAdTrackingLog(new File(dir));
+                List<String> events;
+                while (!(events = mLog.readPending(MAX_UPLOAD_EVENTS)).isEmpty()) {
+                    for (String event : events) log.append(event);
+                    mLog.commitPending();
+                }
+                mLog = log;
+            }
+        });
+    }
+
+    /**
+     * This method queues a tracking event which has already been encoded, as by
+     * {@link AppyAdRequestTemplate#encodeTrackEvent(String, String, String, String, String, long) encodeTrackEvent},
+     * sending the queued events straight away if the batch is full.  The event is written to the log in the background.
+     *
+     * @param line - A String containing the url encoded parameters of the tracking event.
+     */
+    public void track(final String line) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                mLog.append(line);
+            }
+        });
+        boolean full;
+        synchronized (mLock) {
+            mQueued++;
+            full = (mQueued >= MAX_BATCH_EVENTS);
+            if (!full && !mFlushScheduled && (AppyAdService.getHandler() != null)) {
+                mFlushScheduled = AppyAdService.getHandler().postDelayed(mAgeFlush, MAX_BATCH_AGE);
+            }
+        }
+        AppyAdLog.debug(TAG, "Queued tracking event {}", line);
+        if (full) flush();
+    }
+
+    /**
+     * This method sends all logged tracking events, including any left over from earlier failed attempts,
+     * to the AppyAds server.
+     */
+    public void flush() {
+        synchronized (mLock) {
+            mQueued = 0;
+            if (mFlushScheduled && (AppyAdService.getHandler() != null)) AppyAdService.getHandler().removeCallbacks(mAgeFlush);
+            mFlushScheduled = false;
+        }
+        execute(mSendPending);
+    }
+
+    /**
+     * This method uploads the logged events in batches until the log is empty or an upload fails, in which
+     * case the remaining events are kept for the next attempt.
+     */
+    private void sendPending() {
+        if (AppyAdScheduler.now() - mRetryTime < 0) {
+            AppyAdLog.debug(TAG, "Server asked for a pause. Tracking events kept for later.");
+            return;
+        }
+        List<String> events;
+        while (!(events = mLog.readPending(MAX_UPLOAD_EVENTS)).isEmpty()) {
+            AppyAdLog.debug(TAG, "Sending {} tracking events.", events.size());
+            AppyAdSendServer tgsd = new AppyAdSendServer(new AppyAdRequest(AppyAdStatic.TRACKBATCH, events));
+            if (!tgsd.queryServer(null)) {
+                AppyAdLog.error(TAG, "Problem sending ad tracking, kept for later. {}", tgsd.getSpecErrorStr());
+                if (tgsd.getRetryAfter() > 0) mRetryTime = AppyAdScheduler.now() + TimeUnit.MILLISECONDS.toNanos(tgsd.getRetryAfter());
+                return;
+            }
+            mLog.commitPending();
+        }
+    }
+
+    /**
+     * This method runs a task in the tracking lane.
+     * @param task - The Runnable to run.
+     */
+    private void execute(Runnable task) {
+        try {
+            getSender().execute(task);
+        } catch (RejectedExecutionException e) {
+            AppyAdLog.error(TAG, "Unable to queue tracking work.");
+        }
+    }
+
+    /**
+     * This method returns the lane of the shared {@link AppyAdExecutor} that works on the tracking log, creating it when first needed.
+     * @return - An Executor running one task at a time.
+     */
+    private synchronized Executor getSender() {
+        if (mSender == null) mSender = AppyAdService.getInstance().getExecutor().newLane("tracker", 1);
+        return (mSender);
+    }
+}
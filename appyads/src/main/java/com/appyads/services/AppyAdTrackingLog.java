@@ -0,0 +1,260 @@
+package com.appyads.services;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps tracking events on disk until the AppyAds server has accepted them, so that clicks
+ * recorded while the device is offline are not lost.  Events are appended, one encoded event per line,
+ * to a log file, and a separate cursor file records how far into the log the server has acknowledged.
+ * The acknowledged part of the log is compacted away, and the oldest events are dropped once the
+ * unacknowledged part grows beyond {@link #MAX_LOG_BYTES}.
+ * The files are changed in an order which, should the application be killed part way, can only make the
+ * server receive an event twice, never lose one: the cursor is written to a temporary file and renamed, and
+ * it is reset before the log is deleted or replaced.  A cursor pointing past the end of the log is taken as 0.
+ * Note that this class is not thread safe.  All calls are made, one at a time, from the {@link AppyAdTracker} lane.
+ */
+public class AppyAdTrackingLog {
+
+    private static final String TAG = "AppyAdTrackingLog";
+    private static final String LOG_FILE = "tracking.log";
+    private static final String CURSOR_FILE = "tracking.cursor";
+    private static final String TEMP_SUFFIX = ".tmp";
+    public static final int MAX_LOG_BYTES = 262144;  // 256K
+    private static final int COMPACT_THRESHOLD = 65536;  // 64K
+
+    private File mDir;
+    private File mLog;
+    private File mCursorFile;
+    private long mCursor = -1;
+    private long mPendingEnd = 0;
+    private List<String> mMemory = null;
+
+    /**
+     * This constructor defines the directory the log is kept in.
+     *
+     * @param dir - The directory to keep the log in.  When null, events are only held in memory.
+     */
+    public AppyAdTrackingLog(File dir) {
+        mDir = dir;
+        if (dir != null) {
+            mLog = new File(dir, LOG_FILE);
+            mCursorFile = new File(dir, CURSOR_FILE);
+        }
+        else mMemory = new ArrayList<String>();
+    }
+
+    /**
+     * This method appends an encoded tracking event to the end of the log.
+     *
+     * @param event - A String containing the encoded tracking event (without line breaks).
+     */
+    public void append(String event) {
+        if (mMemory != null) {
+            mMemory.add(event);
+            return;
+        }
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            AppyAdLog.error(TAG, "Unable to create tracking log directory {}", mDir);
+            return;
+        }
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(mLog, true);
+            out.write((event + "\n").getBytes("UTF-8"));
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to append tracking event. {}", e.getMessage());
+        } finally {
+            try { if (out != null) out.close(); } catch (Exception el) { }
+        }
+        if (mLog.length() - getCursor() > MAX_LOG_BYTES) trim();
+    }
+
+    /**
+     * This method reads the oldest events which have not been acknowledged yet.  They stay in the log until
+     * {@link #commitPending() commitPending} is called.
+     *
+     * @param max - An int value representing the maximum number of events to read.
+     * @return - A List of String values containing the encoded events (empty if there are none).
+     */
+    public List<String> readPending(int max) {
+        List<String> events = new ArrayList<String>();
+        if (mMemory != null) {
+            events.addAll(mMemory.subList(0, Math.min(max, mMemory.size())));
+            mPendingEnd = events.size();
+            return (events);
+        }
+        long cursor = getCursor();
+        if (!mLog.isFile()) return (events);
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(mLog, "r");
+            raf.seek(cursor);
+            String line;
+            while ((events.size() < max) && ((line = raf.readLine()) != null)) {
+                if (line.length() > 0) events.add(line);
+            }
+            mPendingEnd = raf.getFilePointer();
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to read tracking log. {}", e.getMessage());
+            events.clear();
+        } finally {
+            try { if (raf != null) raf.close(); } catch (Exception el) { }
+        }
+        return (events);
+    }
+
+    /**
+     * This method marks the events returned by the last call to {@link #readPending(int) readPending} as
+     * accepted by the server, and compacts the log when enough of it has been acknowledged.
+     */
+    public void commitPending() {
+        if (mMemory != null) {
+            mMemory.subList(0, (int) Math.min(mPendingEnd, mMemory.size())).clear();
+            mPendingEnd = 0;
+            return;
+        }
+        if (mPendingEnd >= mLog.length()) {
+            mCursor = 0;
+            mCursorFile.delete();  // Before the log, so that a stale cursor is never left behind.
+            mLog.delete();
+        }
+        else {
+            mCursor = mPendingEnd;
+            if (mCursor >= COMPACT_THRESHOLD) compact();
+            else writeCursor();
+        }
+        mPendingEnd = mCursor;
+    }
+
+    /**
+     * This method drops the oldest unacknowledged events until the log is back well under its size limit.
+     */
+    private void trim() {
+        long limit = (MAX_LOG_BYTES * 3) / 4;
+        int dropped = 0;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(mLog, "r");
+            raf.seek(getCursor());
+            while ((raf.length() - raf.getFilePointer() > limit) && (raf.readLine() != null)) dropped++;
+            mCursor = raf.getFilePointer();
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to trim tracking log. {}", e.getMessage());
+        } finally {
+            try { if (raf != null) raf.close(); } catch (Exception el) { }
+        }
+        AppyAdLog.error(TAG, "Tracking log full. Dropped {} oldest events.", dropped);
+        compact();
+    }
+
+    /**
+     * This method rewrites the log without its acknowledged part and resets the cursor.  The cursor is reset
+     * before the rewritten log replaces the old one.  Should the replacement fail, the cursor is written back.
+     */
+    private void compact() {
+        File tmp = new File(mDir, LOG_FILE + TEMP_SUFFIX);
+        long cursor = getCursor();
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(mLog);
+            long skip = cursor;
+            while (skip > 0) {
+                long n = in.skip(skip);
+                if (n <= 0) break;
+                skip -= n;
+            }
+            out = new FileOutputStream(tmp);
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+            out.close();
+            out = null;
+            in.close();
+            in = null;
+            mCursor = 0;
+            if (!writeCursor()) throw new IOException("Unable to reset cursor");
+            if (!tmp.renameTo(mLog)) {
+                mLog.delete();
+                if (!tmp.renameTo(mLog)) throw new IOException("Rename failed");
+            }
+            AppyAdLog.debug(TAG, "Compacted tracking log to {} bytes.", mLog.length());
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to compact tracking log. {}", e.getMessage());
+            tmp.delete();
+            if (mLog.isFile()) {
+                mCursor = cursor;
+                writeCursor();
+            }
+        } finally {
+            try { if (in != null) in.close(); } catch (Exception el) { }
+            try { if (out != null) out.close(); } catch (Exception el) { }
+        }
+    }
+
+    /**
+     * This method returns the offset of the first unacknowledged event, reading it from disk the first time.  The
+     * first time, a rewritten log left behind by an interrupted compaction is also put in place of a missing log.
+     * @return - A long value representing the offset in bytes into the log.
+     */
+    private long getCursor() {
+        if (mCursor < 0) {
+            mCursor = 0;
+            File tmp = new File(mDir, LOG_FILE + TEMP_SUFFIX);
+            if (tmp.isFile() && !mLog.exists()) tmp.renameTo(mLog);
+            if (mCursorFile.isFile()) {
+                try {
+                    InputStream in = new FileInputStream(mCursorFile);
+                    try {
+                        mCursor = Long.parseLong(new String(AppyAdStore.readFully(in), "UTF-8").trim());
+                    } finally {
+                        in.close();
+                    }
+                } catch (Exception e) {
+                    AppyAdLog.error(TAG, "Unable to read tracking log cursor. {}", e.getMessage());
+                    mCursor = 0;
+                }
+                if ((mCursor < 0) || (mCursor > mLog.length())) {
+                    AppyAdLog.error(TAG, "Tracking log cursor {} is past the end of the log. Starting from 0.", mCursor);
+                    mCursor = 0;
+                }
+            }
+        }
+        return (mCursor);
+    }
+
+    /**
+     * This method saves the offset of the first unacknowledged event.  It writes it to a temporary file first and then
+     * renames it, so that a partially written cursor is never read back.
+     * @return - A boolean value indicating whether or not the cursor was saved.
+     */
+    private boolean writeCursor() {
+        File tmp = new File(mDir, CURSOR_FILE + TEMP_SUFFIX);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(String.valueOf(mCursor).getBytes("UTF-8"));
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mCursorFile)) {
+                mCursorFile.delete();
+                if (!tmp.renameTo(mCursorFile)) throw new IOException("Rename failed");
+            }
+            return (true);
+        } catch (IOException e) {
+            AppyAdLog.error(TAG, "Unable to write tracking log cursor. {}", e.getMessage());
+            tmp.delete();
+            return (false);
+        } finally {
+            try { if (out != null) out.close(); } catch (Exception el) { }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the Android Activity class.
+ */
+public abstract class Activity extends Context {
+
+    public boolean isFinishing() {
+        return (false);
+    }
+}
@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * Stand-in for the Android BroadcastReceiver class.
+ */
+public abstract class BroadcastReceiver {
+
+    public abstract void onReceive(Context context, Intent intent);
+}
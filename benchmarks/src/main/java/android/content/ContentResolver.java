@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Stand-in for the Android ContentResolver class.
+ */
+public class ContentResolver {
+}
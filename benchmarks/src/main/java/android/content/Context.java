@@ -0,0 +1,38 @@
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+import java.io.File;
+
+/**
+ * Stand-in for the Android Context class, holding only the methods the AppyAds library calls.
+ */
+public abstract class Context {
+
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+
+    public abstract File getFilesDir();
+
+    public abstract File getCacheDir();
+
+    public abstract Object getSystemService(String name);
+
+    public abstract int checkCallingOrSelfPermission(String permission);
+
+    public abstract PackageManager getPackageManager();
+
+    public abstract String getPackageName();
+
+    public abstract ContentResolver getContentResolver();
+
+    public abstract Resources getResources();
+
+    public abstract void startActivity(Intent intent);
+
+    public abstract Context getApplicationContext();
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+}
@@ -0,0 +1,28 @@
+package android.content;
+
+import android.net.Uri;
+
+/**
+ * Stand-in for the Android Intent class.
+ */
+public class Intent {
+
+    public static final String ACTION_VIEW = "android.intent.action.VIEW";
+
+    private String mAction;
+
+    public Intent() {
+    }
+
+    public Intent(String action, Uri uri) {
+        mAction = action;
+    }
+
+    public String getAction() {
+        return (mAction);
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        return (defaultValue);
+    }
+}
@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * Stand-in for the Android IntentFilter class.
+ */
+public class IntentFilter {
+
+    public IntentFilter(String action) {
+    }
+}
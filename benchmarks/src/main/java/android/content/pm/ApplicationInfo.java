@@ -0,0 +1,7 @@
+package android.content.pm;
+
+/**
+ * Stand-in for the Android ApplicationInfo class.
+ */
+public class ApplicationInfo {
+}
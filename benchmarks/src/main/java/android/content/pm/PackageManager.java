@@ -0,0 +1,17 @@
+package android.content.pm;
+
+/**
+ * Stand-in for the Android PackageManager class.
+ */
+public abstract class PackageManager {
+
+    public static final int PERMISSION_GRANTED = 0;
+    public static final int PERMISSION_DENIED = -1;
+
+    public static class NameNotFoundException extends Exception {
+    }
+
+    public abstract ApplicationInfo getApplicationInfo(String packageName, int flags) throws NameNotFoundException;
+
+    public abstract CharSequence getApplicationLabel(ApplicationInfo info);
+}
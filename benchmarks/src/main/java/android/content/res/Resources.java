@@ -0,0 +1,19 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+/**
+ * Stand-in for the Android Resources class.
+ */
+public class Resources {
+
+    private final DisplayMetrics mMetrics;
+
+    public Resources(DisplayMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return (mMetrics);
+    }
+}
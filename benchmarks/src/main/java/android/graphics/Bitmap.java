@@ -0,0 +1,51 @@
+package android.graphics;
+
+import java.io.OutputStream;
+
+/**
+ * Stand-in for the Android Bitmap class.  Nothing is decoded on a plain JVM, so no bitmap is ever created.
+ */
+public class Bitmap {
+
+    public enum Config { ALPHA_8, RGB_565, ARGB_4444, ARGB_8888 }
+
+    public enum CompressFormat { JPEG, PNG, WEBP }
+
+    public int getByteCount() {
+        return (0);
+    }
+
+    public int getWidth() {
+        return (0);
+    }
+
+    public int getHeight() {
+        return (0);
+    }
+
+    public void prepareToDraw() {
+    }
+
+    public boolean isRecycled() {
+        return (false);
+    }
+
+    public void recycle() {
+    }
+
+    public Config getConfig() {
+        return (null);
+    }
+
+    public boolean hasAlpha() {
+        return (false);
+    }
+
+    public static Bitmap createScaledBitmap(Bitmap bm, int width, int height, boolean filter) {
+        return (bm);
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream out) {
+        return (false);
+    }
+}
@@ -0,0 +1,47 @@
+package android.graphics;
+
+import java.io.InputStream;
+
+/**
+ * Stand-in for the Android BitmapFactory class.  Images cannot be decoded on a plain JVM, so every
+ * decode fails, as it does on a device for data which is not an image.
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public int outWidth;
+        public int outHeight;
+        public Bitmap.Config inPreferredConfig;
+        public String outMimeType;
+        public boolean inScaled;
+        public int inDensity;
+        public int inTargetDensity;
+        public boolean inDither;
+    }
+
+    public static Bitmap decodeStream(InputStream in) {
+        return (null);
+    }
+
+    public static Bitmap decodeStream(InputStream in, Rect padding, Options opts) {
+        return (null);
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length) {
+        return (null);
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length, Options opts) {
+        return (null);
+    }
+
+    public static Bitmap decodeFile(String path) {
+        return (null);
+    }
+
+    public static Bitmap decodeFile(String path, Options opts) {
+        return (null);
+    }
+}
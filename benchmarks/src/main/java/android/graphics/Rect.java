@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android Rect class.
+ */
+public class Rect {
+}
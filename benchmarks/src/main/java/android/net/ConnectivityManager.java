@@ -0,0 +1,20 @@
+package android.net;
+
+/**
+ * Stand-in for the Android ConnectivityManager class.
+ */
+public class ConnectivityManager {
+
+    public static final String CONNECTIVITY_ACTION = "android.net.conn.CONNECTIVITY_CHANGE";
+    public static final String EXTRA_NO_CONNECTIVITY = "noConnectivity";
+
+    private final NetworkInfo mNetworkInfo;
+
+    public ConnectivityManager(NetworkInfo info) {
+        mNetworkInfo = info;
+    }
+
+    public NetworkInfo getActiveNetworkInfo() {
+        return (mNetworkInfo);
+    }
+}
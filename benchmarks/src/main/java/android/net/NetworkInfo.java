@@ -0,0 +1,17 @@
+package android.net;
+
+/**
+ * Stand-in for the Android NetworkInfo class.
+ */
+public class NetworkInfo {
+
+    private final boolean mConnected;
+
+    public NetworkInfo(boolean connected) {
+        mConnected = connected;
+    }
+
+    public boolean isConnected() {
+        return (mConnected);
+    }
+}
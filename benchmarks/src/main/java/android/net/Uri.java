@@ -0,0 +1,22 @@
+package android.net;
+
+/**
+ * Stand-in for the Android Uri class.
+ */
+public class Uri {
+
+    private final String mUri;
+
+    private Uri(String uri) {
+        mUri = uri;
+    }
+
+    public static Uri parse(String uri) {
+        return (new Uri(uri));
+    }
+
+    @Override
+    public String toString() {
+        return (mUri);
+    }
+}
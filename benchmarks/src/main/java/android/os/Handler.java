@@ -0,0 +1,74 @@
+package android.os;
+
+/**
+ * Stand-in for the Android Handler class.  There is no main thread looper on a plain JVM, so messages and
+ * posted work are handled straight away, on the thread sending them.  Delayed work is not supported, and is
+ * refused as a Handler refuses it once its looper has quit.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public void dispatchMessage(Message msg) {
+        if (msg.callback != null) msg.callback.run();
+        else handleMessage(msg);
+    }
+
+    public final Message obtainMessage() {
+        return (new Message());
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        Message msg = new Message();
+        msg.what = what;
+        msg.obj = obj;
+        return (msg);
+    }
+
+    public final boolean sendMessage(Message msg) {
+        dispatchMessage(msg);
+        return (true);
+    }
+
+    public final boolean sendMessageAtFrontOfQueue(Message msg) {
+        return (sendMessage(msg));
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return (sendMessage(obtainMessage(what, null)));
+    }
+
+    public final boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        return (false);
+    }
+
+    public final boolean post(Runnable r) {
+        r.run();
+        return (true);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return (false);
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return (false);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+    }
+
+    public final void removeMessages(int what, Object obj) {
+    }
+
+    public final Looper getLooper() {
+        return (Looper.getMainLooper());
+    }
+}
@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in for the Android Looper class.
+ */
+public class Looper {
+
+    private static final Looper MAIN = new Looper();
+
+    public static Looper getMainLooper() {
+        return (MAIN);
+    }
+
+    public static Looper myLooper() {
+        return (MAIN);
+    }
+
+    public Thread getThread() {
+        return (Thread.currentThread());
+    }
+}
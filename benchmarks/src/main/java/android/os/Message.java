@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * Stand-in for the Android Message class.
+ */
+public class Message {
+
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    Runnable callback;
+}
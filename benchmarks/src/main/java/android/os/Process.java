@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * Stand-in for the Android Process class.  Thread priorities are left as they are.
+ */
+public class Process {
+
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
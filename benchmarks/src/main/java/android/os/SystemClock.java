@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Stand-in for the Android SystemClock class.
+ */
+public class SystemClock {
+
+    public static long elapsedRealtime() {
+        return (System.nanoTime() / 1000000L);
+    }
+
+    public static long uptimeMillis() {
+        return (System.nanoTime() / 1000000L);
+    }
+}
@@ -0,0 +1,18 @@
+package android.provider;
+
+import android.content.ContentResolver;
+
+/**
+ * Stand-in for the Android Settings class.
+ */
+public class Settings {
+
+    public static class Secure {
+
+        public static final String ANDROID_ID = "android_id";
+
+        public static String getString(ContentResolver resolver, String name) {
+            return (ANDROID_ID.equals(name) ? "0123456789abcdef" : null);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package android.util;
+
+/**
+ * Stand-in for the Android DisplayMetrics class.
+ */
+public class DisplayMetrics {
+
+    public int densityDpi = 320;
+    public int widthPixels = 720;
+    public int heightPixels = 1280;
+    public float density = 2.0f;
+}
@@ -0,0 +1,40 @@
+package android.util;
+
+/**
+ * Stand-in for the Android Log class, writing to the standard output and error streams.
+ */
+public class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public static int v(String tag, String msg) {
+        return (println(VERBOSE, tag, msg));
+    }
+
+    public static int d(String tag, String msg) {
+        return (println(DEBUG, tag, msg));
+    }
+
+    public static int i(String tag, String msg) {
+        return (println(INFO, tag, msg));
+    }
+
+    public static int w(String tag, String msg) {
+        return (println(WARN, tag, msg));
+    }
+
+    public static int e(String tag, String msg) {
+        return (println(ERROR, tag, msg));
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        String line = tag + ": " + msg;
+        if (priority >= ERROR) System.err.println(line);
+        else System.out.println(line);
+        return (line.length());
+    }
+}
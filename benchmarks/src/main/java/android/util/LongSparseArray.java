@@ -0,0 +1,28 @@
+package android.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android LongSparseArray class.
+ */
+public class LongSparseArray<E> {
+
+    private final Map<Long, E> mValues = new HashMap<Long, E>();
+
+    public E get(long key) {
+        return (mValues.get(key));
+    }
+
+    public void put(long key, E value) {
+        mValues.put(key, value);
+    }
+
+    public int size() {
+        return (mValues.size());
+    }
+
+    public void clear() {
+        mValues.clear();
+    }
+}
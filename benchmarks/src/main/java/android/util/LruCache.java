@@ -0,0 +1,101 @@
+package android.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android LruCache class, keeping entries in access order and evicting the least
+ * recently used ones once the total size is over the maximum.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> mMap = new LinkedHashMap<K, V>(0, 0.75f, true);
+    private int mMaxSize;
+    private int mSize;
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    public LruCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    protected int sizeOf(K key, V value) {
+        return (1);
+    }
+
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    public final synchronized V get(K key) {
+        V value = mMap.get(key);
+        if (value != null) mHitCount++;
+        else mMissCount++;
+        return (value);
+    }
+
+    public final V put(K key, V value) {
+        V previous;
+        synchronized (this) {
+            mSize += sizeOf(key, value);
+            previous = mMap.put(key, value);
+            if (previous != null) mSize -= sizeOf(key, previous);
+        }
+        if (previous != null) entryRemoved(false, key, previous, value);
+        trimToSize(mMaxSize);
+        return (previous);
+    }
+
+    public final V remove(K key) {
+        V previous;
+        synchronized (this) {
+            previous = mMap.remove(key);
+            if (previous != null) mSize -= sizeOf(key, previous);
+        }
+        if (previous != null) entryRemoved(false, key, previous, null);
+        return (previous);
+    }
+
+    public void trimToSize(int maxSize) {
+        while (true) {
+            K key;
+            V value;
+            synchronized (this) {
+                if ((mSize <= maxSize) || mMap.isEmpty()) break;
+                Iterator<Map.Entry<K, V>> it = mMap.entrySet().iterator();
+                Map.Entry<K, V> eldest = it.next();
+                key = eldest.getKey();
+                value = eldest.getValue();
+                it.remove();
+                mSize -= sizeOf(key, value);
+                mEvictionCount++;
+            }
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public final synchronized int size() {
+        return (mSize);
+    }
+
+    public final synchronized int maxSize() {
+        return (mMaxSize);
+    }
+
+    public final synchronized int hitCount() {
+        return (mHitCount);
+    }
+
+    public final synchronized int missCount() {
+        return (mMissCount);
+    }
+
+    public final synchronized int evictionCount() {
+        return (mEvictionCount);
+    }
+}
@@ -0,0 +1,14 @@
+package android.util;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Stand-in for the Android Xml class.  Android's pull parser is kXML 2, which is used here as well.
+ */
+public class Xml {
+
+    public static XmlPullParser newPullParser() {
+        return (new KXmlParser());
+    }
+}
@@ -0,0 +1,83 @@
+package android.view;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+/**
+ * Stand-in for the Android View class.  Nothing is drawn or laid out.
+ */
+public class View {
+
+    public static final int VISIBLE = 0;
+    public static final int INVISIBLE = 4;
+    public static final int GONE = 8;
+
+    public interface OnClickListener {
+        void onClick(View v);
+    }
+
+    private final Context mContext;
+    private OnClickListener mOnClickListener;
+    private int mVisibility = VISIBLE;
+    private Object mTag;
+    ViewParent mParent;
+
+    public View(Context context) {
+        mContext = context;
+    }
+
+    public View(Context context, AttributeSet attrs) {
+        mContext = context;
+    }
+
+    public Context getContext() {
+        return (mContext);
+    }
+
+    public void setOnClickListener(OnClickListener l) {
+        mOnClickListener = l;
+    }
+
+    public boolean performClick() {
+        if (mOnClickListener == null) return (false);
+        mOnClickListener.onClick(this);
+        return (true);
+    }
+
+    protected void onAttachedToWindow() {
+    }
+
+    protected void onDetachedFromWindow() {
+    }
+
+    protected void onWindowVisibilityChanged(int visibility) {
+    }
+
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    }
+
+    public boolean post(Runnable action) {
+        action.run();
+        return (true);
+    }
+
+    public int getWindowVisibility() {
+        return (mVisibility);
+    }
+
+    public void setVisibility(int visibility) {
+        mVisibility = visibility;
+    }
+
+    public ViewParent getParent() {
+        return (mParent);
+    }
+
+    public void setTag(Object tag) {
+        mTag = tag;
+    }
+
+    public Object getTag() {
+        return (mTag);
+    }
+}
@@ -0,0 +1,70 @@
+package android.view;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for the Android ViewGroup class, keeping its child views in order.
+ */
+public class ViewGroup extends View implements ViewParent {
+
+    public static class LayoutParams {
+    }
+
+    private final List<View> mChildren = new ArrayList<View>();
+
+    public ViewGroup(Context context) {
+        super(context);
+    }
+
+    public ViewGroup(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public int getChildCount() {
+        return (mChildren.size());
+    }
+
+    public View getChildAt(int index) {
+        return (((index < 0) || (index >= mChildren.size())) ? null : mChildren.get(index));
+    }
+
+    public int indexOfChild(View child) {
+        return (mChildren.indexOf(child));
+    }
+
+    public void addView(View child) {
+        addView(child, -1);
+    }
+
+    public void addView(View child, int index) {
+        if (child.mParent != null) throw new IllegalStateException("The specified child already has a parent.");
+        if (index < 0) index = mChildren.size();
+        mChildren.add(index, child);
+        child.mParent = this;
+    }
+
+    public void addViewInLayout(View child, int index, LayoutParams params) {
+        addView(child, index);
+    }
+
+    public void removeView(View view) {
+        int index = mChildren.indexOf(view);
+        if (index >= 0) removeViewAt(index);
+    }
+
+    public void removeViewAt(int index) {
+        mChildren.remove(index).mParent = null;
+    }
+
+    public void removeViews(int start, int count) {
+        for (int i = 0; i < count; i++) removeViewAt(start);
+    }
+
+    public void removeViewsInLayout(int start, int count) {
+        removeViews(start, count);
+    }
+}
@@ -0,0 +1,7 @@
+package android.view;
+
+/**
+ * Stand-in for the Android ViewParent interface.
+ */
+public interface ViewParent {
+}
@@ -0,0 +1,10 @@
+package android.view.animation;
+
+/**
+ * Stand-in for the Android AlphaAnimation class.
+ */
+public class AlphaAnimation extends Animation {
+
+    public AlphaAnimation(float fromAlpha, float toAlpha) {
+    }
+}
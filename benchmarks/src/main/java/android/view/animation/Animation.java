@@ -0,0 +1,55 @@
+package android.view.animation;
+
+/**
+ * Stand-in for the Android Animation class.  Animations keep their settings, but never run.
+ */
+public abstract class Animation {
+
+    public static final int ABSOLUTE = 0;
+    public static final int RELATIVE_TO_SELF = 1;
+    public static final int RELATIVE_TO_PARENT = 2;
+
+    public interface AnimationListener {
+        void onAnimationStart(Animation animation);
+
+        void onAnimationEnd(Animation animation);
+
+        void onAnimationRepeat(Animation animation);
+    }
+
+    private long mDuration;
+    private AnimationListener mListener;
+
+    public void setDuration(long durationMillis) {
+        mDuration = durationMillis;
+    }
+
+    public long getDuration() {
+        return (mDuration);
+    }
+
+    public void reset() {
+    }
+
+    public void cancel() {
+    }
+
+    public boolean hasStarted() {
+        return (false);
+    }
+
+    public boolean hasEnded() {
+        return (false);
+    }
+
+    public void initialize(int width, int height, int parentWidth, int parentHeight) {
+    }
+
+    public boolean isInitialized() {
+        return (false);
+    }
+
+    public void setAnimationListener(AnimationListener listener) {
+        mListener = listener;
+    }
+}
@@ -0,0 +1,10 @@
+package android.view.animation;
+
+/**
+ * Stand-in for the Android ScaleAnimation class.
+ */
+public class ScaleAnimation extends Animation {
+
+    public ScaleAnimation(float fromX, float toX, float fromY, float toY, int pivotXType, float pivotXValue, int pivotYType, float pivotYValue) {
+    }
+}
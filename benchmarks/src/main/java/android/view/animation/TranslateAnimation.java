@@ -0,0 +1,10 @@
+package android.view.animation;
+
+/**
+ * Stand-in for the Android TranslateAnimation class.
+ */
+public class TranslateAnimation extends Animation {
+
+    public TranslateAnimation(int fromXType, float fromXValue, int toXType, float toXValue, int fromYType, float fromYValue, int toYType, float toYValue) {
+    }
+}
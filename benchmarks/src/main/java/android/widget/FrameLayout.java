@@ -0,0 +1,19 @@
+package android.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.ViewGroup;
+
+/**
+ * Stand-in for the Android FrameLayout class.
+ */
+public class FrameLayout extends ViewGroup {
+
+    public FrameLayout(Context context) {
+        super(context);
+    }
+
+    public FrameLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+}
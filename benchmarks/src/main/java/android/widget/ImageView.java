@@ -0,0 +1,25 @@
+package android.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.View;
+
+/**
+ * Stand-in for the Android ImageView class.
+ */
+public class ImageView extends View {
+
+    private Object mImage;
+
+    public ImageView(Context context) {
+        super(context);
+    }
+
+    public void setImageBitmap(Bitmap bm) {
+        mImage = bm;
+    }
+
+    public void setImageDrawable(Object drawable) {
+        mImage = drawable;
+    }
+}
@@ -0,0 +1,54 @@
+package android.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.animation.Animation;
+
+/**
+ * Stand-in for the Android ViewAnimator class, keeping track of the child on display.
+ */
+public class ViewAnimator extends FrameLayout {
+
+    private int mWhichChild = 0;
+    private Animation mInAnimation;
+    private Animation mOutAnimation;
+
+    public ViewAnimator(Context context) {
+        super(context);
+    }
+
+    public ViewAnimator(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void setDisplayedChild(int whichChild) {
+        mWhichChild = whichChild;
+        if (mWhichChild >= getChildCount()) mWhichChild = 0;
+        else if (mWhichChild < 0) mWhichChild = getChildCount() - 1;
+    }
+
+    public int getDisplayedChild() {
+        return (mWhichChild);
+    }
+
+    public View getCurrentView() {
+        return (getChildAt(mWhichChild));
+    }
+
+    public void setInAnimation(Animation inAnimation) {
+        mInAnimation = inAnimation;
+    }
+
+    public void setOutAnimation(Animation outAnimation) {
+        mOutAnimation = outAnimation;
+    }
+
+    public Animation getInAnimation() {
+        return (mInAnimation);
+    }
+
+    public Animation getOutAnimation() {
+        return (mOutAnimation);
+    }
+}
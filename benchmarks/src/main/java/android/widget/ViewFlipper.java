@@ -0,0 +1,18 @@
+package android.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+/**
+ * Stand-in for the Android ViewFlipper class.
+ */
+public class ViewFlipper extends ViewAnimator {
+
+    public ViewFlipper(Context context) {
+        super(context);
+    }
+
+    public ViewFlipper(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+}
@@ -0,0 +1,38 @@
+package com.appyads.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the parsing of the attributes of an ad element into an {@link AppyAd} object: the
+ * animation names, matched regardless of case, the durations and the tracking flag.  The animation names
+ * cover the first and last entries of the name tables, an unknown name, which falls back, and a missing one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppyAdAttributeBenchmark {
+
+    @Param({"slide_in_from_left", "Zoom_In_From_Center", "NONE", "fade_in", ""})
+    public String inAnimation;
+
+    @Benchmark
+    public AppyAd parseAttributes() {
+        String in = (inAnimation.length() > 0) ? inAnimation : null;
+        return (new AppyAd(AppyAdStatic.TOZIMAGE, "https://appyads.com/resources/?rc=acme/banner_1.png", "ad-1", "Ad 1",
+                "none", "True", in, "slide_out_to_right", "750", "6000", null, true));
+    }
+}
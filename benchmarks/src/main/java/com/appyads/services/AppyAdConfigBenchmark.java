@@ -0,0 +1,50 @@
+package com.appyads.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the parsing of campaign packages of 1, 10 and 100 ad elements by {@link AppyAdConfig},
+ * straight from the bytes received from the server, as done for every campaign fetched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppyAdConfigBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int ads;
+
+    private byte[] mPackage;
+    private AppyAdManager mManager;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPackage = AppyAdSampleCampaigns.campaign(ads, "300000").getBytes("UTF-8");
+        mManager = new AppyAdManager(new AppyAdJvmContext(new File(System.getProperty("java.io.tmpdir"))));
+    }
+
+    @Benchmark
+    public AppyAdConfig parse() throws IOException {
+        AppyAdConfig config = new AppyAdConfig(mManager);
+        if (!config.parse(new ByteArrayInputStream(mPackage))) throw new IllegalStateException("Campaign package not parsed.");
+        return (config);
+    }
+}
@@ -0,0 +1,103 @@
+package com.appyads.services;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.DisplayMetrics;
+
+import java.io.File;
+
+/**
+ * This class is the Context {@link AppyAdManager} view objects are created with on a plain JVM.  It reports
+ * an xhdpi screen, all permissions granted and no network connection, so that no request ever leaves the JVM.
+ * Files are kept under a directory of its own.
+ */
+public class AppyAdJvmContext extends Context {
+
+    private final File mFilesDir;
+    private final Resources mResources = new Resources(new DisplayMetrics());
+    private final ConnectivityManager mConnectivity = new ConnectivityManager(new NetworkInfo(false));
+
+    /**
+     * This constructor defines the directory holding the files of the application.
+     * @param filesDir - A File object representing the directory.
+     */
+    public AppyAdJvmContext(File filesDir) {
+        mFilesDir = filesDir;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return (mFilesDir);
+    }
+
+    @Override
+    public File getCacheDir() {
+        return (new File(mFilesDir, "cache"));
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return (CONNECTIVITY_SERVICE.equals(name) ? mConnectivity : null);
+    }
+
+    @Override
+    public int checkCallingOrSelfPermission(String permission) {
+        return (PackageManager.PERMISSION_GRANTED);
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return (new PackageManager() {
+            @Override
+            public ApplicationInfo getApplicationInfo(String packageName, int flags) {
+                return (new ApplicationInfo());
+            }
+
+            @Override
+            public CharSequence getApplicationLabel(ApplicationInfo info) {
+                return ("AppyAds JVM");
+            }
+        });
+    }
+
+    @Override
+    public String getPackageName() {
+        return ("com.appyads.jvm");
+    }
+
+    @Override
+    public ContentResolver getContentResolver() {
+        return (new ContentResolver());
+    }
+
+    @Override
+    public Resources getResources() {
+        return (mResources);
+    }
+
+    @Override
+    public void startActivity(Intent intent) {
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return (this);
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return (null);
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+}
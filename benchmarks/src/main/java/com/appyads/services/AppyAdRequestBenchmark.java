@@ -0,0 +1,80 @@
+package com.appyads.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the encoding of request bodies: by {@link AppyAdSendServer#prepExQuery() prepExQuery}
+ * for a single tracking event and for a batch of them, and by the {@link AppyAdRequestTemplate} of a view
+ * for a campaign request and a tracking event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppyAdRequestBenchmark {
+
+    private static final int BATCH_SIZE = 20;
+
+    private AppyAdSendServer mSingle;
+    private AppyAdSendServer mBatch;
+    private AppyAdRequestTemplate mTemplate;
+
+    @Setup
+    public void setUp() {
+        mSingle = new AppyAdSendServer(trackEvent(0));
+        List<String> events = new ArrayList<String>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) events.add(AppyAdSendServer.encodeRequest(trackEvent(i)));
+        mBatch = new AppyAdSendServer(new AppyAdRequest(AppyAdStatic.TRACKBATCH, events));
+        mTemplate = new AppyAdRequestTemplate("acme-account", "AppyAds Sample", "320X50", "0123456789abcdef",
+                "xhdpi", 720, 112, true, "AppyAds Sample");
+    }
+
+    /**
+     * This method builds a tracking event, as sent when an ad is tapped.
+     * @param i - An int value used to tell the events apart.
+     * @return - An {@link AppyAdRequest} object.
+     */
+    private static AppyAdRequest trackEvent(int i) {
+        AppyAdRequest request = new AppyAdRequest(AppyAdStatic.TRACKAD, "acme-account", "AppyAds Sample", "acme",
+                "spring-sale", "320X50", "placement=home screen&tier=1", "0123456789abcdef", "xhdpi", 720, 112,
+                "ad-" + i, "https://www.example.com/offers?campaign=spring&ad=" + i);
+        request.time = 1760000000000L + i;
+        return (request);
+    }
+
+    @Benchmark
+    public String prepExQuerySingle() {
+        return (mSingle.prepExQuery());
+    }
+
+    @Benchmark
+    public String prepExQueryBatch() {
+        return (mBatch.prepExQuery());
+    }
+
+    @Benchmark
+    public AppyAdRequest templateAdSetRequest() {
+        return (mTemplate.newAdSetRequest());
+    }
+
+    @Benchmark
+    public String templateTrackEvent() {
+        return (mTemplate.encodeTrackEvent("acme", "spring-sale", "placement=home screen&tier=1", "ad-3",
+                "https://www.example.com/offers?campaign=spring&ad=3", 1760000000000L));
+    }
+}
@@ -0,0 +1,61 @@
+package com.appyads.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the rotation logic of an {@link AppyAdManager} view object holding a campaign:
+ * picking the next ad with {@link AppyAdManager#prepareNextAd() prepareNextAd}, a whole step of the rotation
+ * (picking the next ad and flipping to it), and the check made by the scheduler for a due campaign refresh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppyAdRotationBenchmark {
+
+    @Param({"10"})
+    public int ads;
+
+    private AppyAdManager mManager;
+
+    @Setup
+    public void setUp() {
+        mManager = new AppyAdManager(new AppyAdJvmContext(new File(System.getProperty("java.io.tmpdir"))));
+        mManager.publishCampaign(new AppyAdCampaign(AppyAdSampleCampaigns.ads(ads), true, true, "acme", "spring-sale",
+                "0", String.valueOf(ads - 1), null, "300000"));
+        mManager.showNextAd();
+        mManager.markRefreshed();
+    }
+
+    @Benchmark
+    public boolean prepareNextAd() {
+        return (mManager.prepareNextAd());
+    }
+
+    @Benchmark
+    public boolean rotate() {
+        boolean next = mManager.prepareNextAd();
+        mManager.showNextAd();
+        return (next);
+    }
+
+    @Benchmark
+    public boolean timeToRefresh() {
+        return (mManager.timeToRefresh());
+    }
+}
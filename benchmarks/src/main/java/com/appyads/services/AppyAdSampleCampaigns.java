@@ -0,0 +1,60 @@
+package com.appyads.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class builds campaign packages in the form the AppyAds server sends them, with any number of ad elements,
+ * for the benchmarks and tests.  The ad elements cycle through the animations and durations a campaign may set.
+ */
+public class AppyAdSampleCampaigns {
+
+    private static final String[] IN_ANIMATIONS = {"slide_in_from_left", "Slide_In_From_Right", "zoom_in_from_center", "fade_in", "none"};
+    private static final String[] OUT_ANIMATIONS = {"slide_out_to_right", "ZOOM_OUT_TO_LEFT", "slide_out_to_bottom", "fade_out", "none"};
+
+    /**
+     * This method builds a campaign package.
+     *
+     * @param ads - An int value representing the number of ad elements.
+     * @param refreshInterval - A String value representing the refresh interval of the campaign (null to leave it out).
+     * @return - A String containing the campaign package.
+     */
+    public static String campaign(int ads, String refreshInterval) {
+        StringBuilder xml = new StringBuilder(256 + (ads * 384));
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<AppyAds version=\"1.1\">\n");
+        xml.append("  <AppyAdsCampaign id=\"spring-sale\" baseViewIndex=\"0\" finalViewIndex=\"").append(ads - 1)
+                .append("\" repeatCycle=\"3\"");
+        if (refreshInterval != null) xml.append(" refreshInterval=\"").append(refreshInterval).append('"');
+        xml.append("/>\n");
+        for (int i = 0; i < ads; i++) {
+            xml.append("  <AppyAdsElement type=\"image\" id=\"ad-").append(i).append('"')
+                    .append(" src=\"https://appyads.com/resources/?rc=acme/banner_").append(i).append(".png\"")
+                    .append(" title=\"Spring sale &amp; free shipping, ad ").append(i).append('"')
+                    .append(" link=\"https://www.example.com/offers?campaign=spring&amp;ad=").append(i).append('"')
+                    .append(" displayDuration=\"").append(5000 + ((i % 4) * 1000)).append('"')
+                    .append(" inAnimation=\"").append(IN_ANIMATIONS[i % IN_ANIMATIONS.length]).append('"')
+                    .append(" outAnimation=\"").append(OUT_ANIMATIONS[i % OUT_ANIMATIONS.length]).append('"')
+                    .append(" animationDuration=\"").append((i % 3 == 0) ? "750" : "1000").append('"')
+                    .append(" tracking=\"").append((i % 2 == 0) ? "true" : "False").append("\"/>\n");
+        }
+        xml.append("</AppyAds>\n");
+        return (xml.toString());
+    }
+
+    /**
+     * This method builds the ads of a campaign directly, without loading their ad elements.
+     *
+     * @param ads - An int value representing the number of ads.
+     * @return - A List of {@link AppyAd} objects.
+     */
+    public static List<AppyAd> ads(int ads) {
+        List<AppyAd> list = new ArrayList<AppyAd>(ads);
+        for (int i = 0; i < ads; i++) {
+            list.add(new AppyAd(AppyAdStatic.TOZIMAGE, "https://appyads.com/resources/?rc=acme/banner_" + i + ".png", "ad-" + i,
+                    "Ad " + i, "none", (i % 2 == 0) ? "true" : "false", IN_ANIMATIONS[i % IN_ANIMATIONS.length],
+                    OUT_ANIMATIONS[i % OUT_ANIMATIONS.length], "1000", String.valueOf(5000 + ((i % 4) * 1000)), null, true));
+        }
+        return (list);
+    }
+}
@@ -0,0 +1,95 @@
+package com.appyads.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the states of the {@link AppyAdBackoff} circuit breaker and the bounds of its retry delays.
+ */
+public class AppyAdBackoffTest {
+
+    private final int maxErrors = AppyAdService.getInstance().maxErrors();
+    private final long errorWait = AppyAdService.getInstance().getErrorWaitInterval();
+
+    @Test
+    public void staysClosedBelowMaxErrors() {
+        AppyAdBackoff backoff = new AppyAdBackoff();
+        assertEquals(AppyAdBackoff.CLOSED, backoff.getState());
+        for (int i = 1; i < maxErrors; i++) backoff.onFailure(1, 0);
+        assertEquals(AppyAdBackoff.CLOSED, backoff.getState());
+        assertEquals(maxErrors - 1, backoff.getFailures());
+        assertFalse(backoff.probe());
+
+        backoff.onFailure(1, 0);
+        assertTrue(backoff.isOpen());
+    }
+
+    @Test
+    public void weightedFailureOpensAtOnce() {
+        AppyAdBackoff backoff = new AppyAdBackoff();
+        backoff.onFailure(maxErrors, 0);
+        assertTrue(backoff.isOpen());
+        assertEquals(maxErrors, backoff.getFailures());
+    }
+
+    @Test
+    public void failedProbeOpensAgain() {
+        AppyAdBackoff backoff = new AppyAdBackoff();
+        backoff.onFailure(maxErrors, 0);
+        assertTrue(backoff.probe());
+        assertEquals(AppyAdBackoff.HALF_OPEN, backoff.getState());
+        assertFalse(backoff.probe());
+
+        backoff.onFailure(1, 0);
+        assertEquals(AppyAdBackoff.OPEN, backoff.getState());
+        assertEquals(maxErrors + 1, backoff.getFailures());
+    }
+
+    @Test
+    public void successfulProbeCloses() {
+        AppyAdBackoff backoff = new AppyAdBackoff();
+        backoff.onFailure(maxErrors, 0);
+        backoff.probe();
+        backoff.onSuccess();
+        assertEquals(AppyAdBackoff.CLOSED, backoff.getState());
+        assertEquals(0, backoff.getFailures());
+        assertEquals(0, backoff.getRetryDelay());
+    }
+
+    @Test
+    public void delaysStayWithinJitterBounds() {
+        for (int failures = 1; failures <= 25; failures++) {
+            long ceiling = Math.min(AppyAdBackoff.MAX_DELAY, errorWait << Math.min(failures - 1, 20));
+            for (int trial = 0; trial < 200; trial++) {
+                AppyAdBackoff backoff = new AppyAdBackoff();
+                long delay = 0;
+                for (int i = 0; i < failures; i++) delay = backoff.onFailure(1, 0);
+                assertTrue("Delay " + delay + " below minimum", delay >= AppyAdBackoff.MIN_DELAY);
+                assertTrue("Delay " + delay + " above " + ceiling + " after " + failures + " failures", delay <= ceiling);
+                assertEquals(delay, backoff.getRetryDelay());
+            }
+        }
+    }
+
+    @Test
+    public void delaysAreSpreadOut() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int trial = 0; trial < 200; trial++) {
+            long delay = new AppyAdBackoff().onFailure(3, 0);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue("Delays not jittered: " + min + " to " + max, (max - min) > ((errorWait << 2) - AppyAdBackoff.MIN_DELAY) / 2);
+    }
+
+    @Test
+    public void retryAfterIsNeverUndercut() {
+        AppyAdBackoff backoff = new AppyAdBackoff();
+        assertEquals(600000, backoff.onFailure(1, 600000));
+        assertEquals(600000, backoff.getRetryDelay());
+    }
+}
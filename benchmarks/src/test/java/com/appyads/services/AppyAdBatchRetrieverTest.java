@@ -0,0 +1,197 @@
+package com.appyads.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the splitting of a response for several campaigns into its parts by the {@link AppyAdBatchRetriever}.
+ */
+public class AppyAdBatchRetrieverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AppyAdManager first;
+    private AppyAdManager second;
+    private AppyAdManager third;
+    private AppyAdBatchRetriever batch;
+
+    @Before
+    public void setUp() {
+        first = AppyAdTestManagers.register(folder.getRoot());
+        second = AppyAdTestManagers.register(folder.getRoot());
+        third = AppyAdTestManagers.register(folder.getRoot());
+        second.publishCampaign(new AppyAdCampaign(AppyAdSampleCampaigns.ads(2), true, true, "acme", "second", null, null, null, null));
+        batch = new AppyAdBatchRetriever(Arrays.asList(first, second, third));
+        batch.begin();
+    }
+
+    @After
+    public void tearDown() {
+        AppyAdBatchRetriever.unsupported = false;
+        AppyAdService service = AppyAdService.getInstance();
+        service.unRegisterManager(first, true);
+        service.unRegisterManager(second, true);
+        service.unRegisterManager(third, true);
+    }
+
+    /**
+     * This class builds a response out of parts.
+     */
+    private static class Response {
+
+        private final ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+
+        /**
+         * This method adds a header line.
+         * @param header - A String containing the line, without its line end.
+         * @return - This object.
+         */
+        private Response line(String header) throws IOException {
+            mOut.write((header + "\n").getBytes("UTF-8"));
+            return (this);
+        }
+
+        /**
+         * This method adds a part, working out its length.
+         * @param header - A String containing the header parameters, other than the length.
+         * @param body - A byte array containing the body of the part.
+         * @return - This object.
+         */
+        private Response part(String header, byte[] body) throws IOException {
+            line(header + "&length=" + body.length);
+            mOut.write(body);
+            return (this);
+        }
+
+        /**
+         * This method returns the response built.
+         * @return - A ByteArrayInputStream containing the response.
+         */
+        private ByteArrayInputStream stream() {
+            return (new ByteArrayInputStream(mOut.toByteArray()));
+        }
+    }
+
+    @Test
+    public void partsAreHandedToTheirViews() throws Exception {
+        Response response = new Response()
+                .line("")
+                .part("index=1&status=304", new byte[0])
+                .part("index=7&status=200", "stray".getBytes("UTF-8"))
+                .part("index=2&status=500", "Server error".getBytes("UTF-8"))
+                .part("index=0&status=200&etag=%22v2%22&last_modified=Sat%2C+18+Oct+2026+10%3A00%3A00+GMT",
+                        AppyAdTestManagers.campaign(folder.getRoot(), "first", 2));
+        batch.readResponse(null, response.stream());
+
+        assertTrue(batch.isDone(0));
+        assertTrue(batch.isDone(1));
+        assertFalse(batch.isDone(2));  // Left to a request of its own.
+
+        assertEquals("\"v2\"", first.getCampaignETag());
+        assertEquals("Sat, 18 Oct 2026 10:00:00 GMT", first.getCampaignLastModified());
+        assertEquals("first", first.getCampaignID());
+        assertEquals(0, first.getErrorCounter());
+        assertEquals(0, second.getErrorCounter());
+    }
+
+    @Test
+    public void eachViewIsDealtWithOnce() throws Exception {
+        Response response = new Response()
+                .part("index=0&status=200&etag=one", AppyAdTestManagers.campaign(folder.getRoot(), "first", 1))
+                .part("index=0&status=200&etag=two", AppyAdTestManagers.campaign(folder.getRoot(), "again", 1));
+        batch.readResponse(null, response.stream());
+        assertTrue(batch.isDone(0));
+        assertEquals("one", first.getCampaignETag());
+    }
+
+    @Test
+    public void emptyResponseLeavesEveryView() throws Exception {
+        batch.readResponse(null, new ByteArrayInputStream(new byte[0]));
+        assertFalse(batch.isDone(0));
+        assertFalse(batch.isDone(1));
+        assertFalse(batch.isDone(2));
+    }
+
+    @Test(expected = IOException.class)
+    public void partWithoutLengthIsRejected() throws Exception {
+        batch.readResponse(null, new Response().line("index=0&status=200").stream());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidNumberIsRejected() throws Exception {
+        batch.readResponse(null, new Response().line("index=first&status=200&length=0").stream());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedPartIsRejected() throws Exception {
+        batch.readResponse(null, new Response().line("index=2&status=500&length=100").line("short").stream());
+    }
+
+    @Test(expected = IOException.class)
+    public void overlongHeaderIsRejected() throws Exception {
+        char[] pad = new char[4096];
+        Arrays.fill(pad, 'x');
+        batch.readResponse(null, new Response().line("index=0&status=200&pad=" + new String(pad)).stream());
+    }
+
+    @Test
+    public void plainTextAnswerMeansUnsupported() throws Exception {
+        try {
+            batch.readResponse(null, new Response().line("Please upgrade to the latest version of AppyAds.").stream());
+        } catch (IOException e) {
+            batch.settle(false, 200, new String[] {"Invalid response", e.getMessage()}, 0);
+        }
+        assertTrue(AppyAdBatchRetriever.unsupported);
+        assertFalse(batch.isDone(0));  // Left to requests of their own.
+        assertFalse(batch.isDone(1));
+        assertFalse(batch.isDone(2));
+        assertEquals(0, first.getErrorCounter());
+        assertEquals(0, third.getErrorCounter());
+    }
+
+    @Test
+    public void successfulAnswerWithoutPartsMeansUnsupported() throws Exception {
+        batch.readResponse(null, new ByteArrayInputStream(new byte[0]));
+        batch.settle(true, 200, null, 0);
+        assertTrue(AppyAdBatchRetriever.unsupported);
+        assertFalse(batch.isDone(0));
+        assertEquals(0, first.getErrorCounter());
+    }
+
+    @Test
+    public void brokenOffAnswerLeavesTheRestToTheirOwnRequests() throws Exception {
+        try {
+            batch.readResponse(null, new Response().part("index=1&status=304", new byte[0]).line("index=2&status=200&length=100").stream());
+        } catch (IOException e) {
+            batch.settle(false, 200, new String[] {"Invalid response", e.getMessage()}, 0);
+        }
+        assertFalse(AppyAdBatchRetriever.unsupported);
+        assertTrue(batch.isDone(1));
+        assertFalse(batch.isDone(0));
+        assertFalse(batch.isDone(2));
+        assertEquals(0, third.getErrorCounter());
+    }
+
+    @Test
+    public void serverTroubleIsRecordedAgainstEveryViewLeft() throws Exception {
+        batch.settle(false, 503, new String[] {"Server unavailable", ""}, 0);
+        assertFalse(AppyAdBatchRetriever.unsupported);
+        assertTrue(batch.isDone(0));
+        assertTrue(batch.isDone(2));
+        assertEquals(1, first.getErrorCounter());
+        assertEquals(1, third.getErrorCounter());
+    }
+}
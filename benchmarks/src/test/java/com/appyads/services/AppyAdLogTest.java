@@ -0,0 +1,105 @@
+package com.appyads.services;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the message formatting of {@link AppyAdLog} and the counting of messages dropped when its ring buffer is full.
+ */
+public class AppyAdLogTest {
+
+    @After
+    public void tearDown() {
+        AppyAdLog.setLevel(AppyAdLog.OFF);
+    }
+
+    /**
+     * This method formats a message the way the writer thread does.
+     * @param argc - An int value representing the number of single arguments, or -1 when the arguments are in an array.
+     * @param format - A String representing the message format.
+     * @param args - The arguments.
+     * @return - A String containing the message.
+     */
+    private static String format(int argc, String format, Object... args) {
+        AppyAdLog.Entry entry = new AppyAdLog.Entry();
+        if (argc < 0) entry.set(AppyAdLog.DEBUG, "Test", format, argc, null, null, null, args);
+        else entry.set(AppyAdLog.DEBUG, "Test", format, argc, (argc > 0) ? args[0] : null, (argc > 1) ? args[1] : null, (argc > 2) ? args[2] : null, null);
+        return (entry.format());
+    }
+
+    @Test
+    public void formatsSingleArguments() {
+        assertEquals("Read 3 ads", format(1, "Read {} ads", 3));
+        assertEquals("a=1, b=two", format(2, "a={}, b={}", 1, "two"));
+        assertEquals("1-2-3", format(3, "{}-{}-{}", 1, 2, 3));
+        assertEquals("value null", format(1, "value {}", (Object) null));
+    }
+
+    @Test
+    public void formatsArgumentArrays() {
+        assertEquals("1 2 3 4 5", format(-1, "{} {} {} {} {}", 1, 2, 3, 4, 5));
+        assertEquals("only 1", format(-1, "only {}", 1, 2));
+    }
+
+    @Test
+    public void leavesMissingArgumentsInPlace() {
+        assertEquals("1 and {}", format(1, "{} and {}", 1));
+        assertEquals("none {} here", format(0, "none {} here"));
+        assertEquals("1 {}", format(-1, "{} {}", 1));
+    }
+
+    @Test
+    public void keepsTextAroundArguments() {
+        assertEquals("[x]", format(1, "[{}]", "x"));
+        assertEquals("no placeholders", format(1, "no placeholders", "x"));
+        assertNull(format(1, null, "x"));
+    }
+
+    @Test
+    public void levelsFilterMessages() {
+        AppyAdLog.setLevel(AppyAdLog.ERROR);
+        assertFalse(AppyAdLog.isDebug());
+        assertTrue(AppyAdLog.isError());
+        AppyAdLog.setLevel(AppyAdLog.OFF);
+        assertFalse(AppyAdLog.isError());
+        synchronized (AppyAdLog.lock) {
+            int pending = AppyAdLog.getPending();
+            AppyAdLog.error("Test", "Not logged {}", 1);
+            AppyAdLog.debug("Test", "Not logged either");
+            assertEquals(pending, AppyAdLog.getPending());
+        }
+    }
+
+    @Test
+    public void countsAndReportsDroppedMessages() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream previous = System.err;
+        System.setErr(new PrintStream(err, true, "UTF-8"));
+        try {
+            AppyAdLog.setLevel(AppyAdLog.DEBUG);
+            synchronized (AppyAdLog.lock) {  // The writer thread cannot take anything out meanwhile.
+                int free = AppyAdLog.CAPACITY - AppyAdLog.getPending();
+                int dropped = AppyAdLog.getDropped();
+                for (int i = 0; i < free + 5; i++) AppyAdLog.debug("Test", "Message {}", i);
+                assertEquals(AppyAdLog.CAPACITY, AppyAdLog.getPending());
+                assertEquals(dropped + 5, AppyAdLog.getDropped());
+            }
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((AppyAdLog.getPending() > 0) && (System.currentTimeMillis() < deadline)) Thread.sleep(10);
+            assertEquals(0, AppyAdLog.getPending());
+            assertEquals(0, AppyAdLog.getDropped());
+            assertTrue(err.toString("UTF-8"), err.toString("UTF-8").contains("Log buffer full. Dropped"));
+        } finally {
+            System.setErr(previous);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.appyads.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the ad rotation of the {@link AppyAdManager}.  The sample ads are shown for 5000, 6000, 7000 and
+ * 8000 milliseconds in turn, so the display times reveal which ads are shown and picked next.
+ */
+public class AppyAdManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AppyAdManager toam;
+
+    @Before
+    public void setUp() {
+        toam = AppyAdTestManagers.register(folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        AppyAdService.getInstance().unRegisterManager(toam, true);
+    }
+
+    /**
+     * This method puts a campaign in place, as the rotation does once it has been published.
+     * @param id - A String value representing the campaign ID.
+     * @param ads - An int value representing the number of ads.
+     */
+    private void install(String id, int ads) {
+        toam.publishCampaign(new AppyAdCampaign(AppyAdSampleCampaigns.ads(ads), true, true, "acme", id, null, null, null, null));
+        toam.showNextAd();
+    }
+
+    @Test
+    public void rotationFollowsTheShownAd() {
+        install("first", 3);
+        assertEquals(5000, toam.getSleepInterval());
+
+        assertTrue(toam.prepareNextAd());
+        assertEquals(6000, toam.getNextAdDuration());
+        assertEquals(5000, toam.getCurrentAdDuration());  // Not shown yet.
+        toam.showNextAd();
+        assertEquals(6000, toam.getSleepInterval());
+
+        assertTrue(toam.prepareNextAd());
+        toam.showNextAd();
+        assertEquals(7000, toam.getSleepInterval());
+
+        assertTrue(toam.prepareNextAd());
+        assertEquals(5000, toam.getNextAdDuration());  // Back to the base view index.
+    }
+
+    @Test
+    public void campaignPutInPlaceAfterPreparationStartsOver() {
+        install("first", 4);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(toam.prepareNextAd());
+            toam.showNextAd();
+        }
+        assertEquals(8000, toam.getSleepInterval());
+        assertTrue(toam.prepareNextAd());
+
+        install("second", 2);  // Picked for the last ad of the first campaign, shown with the second.
+        assertEquals("second", toam.getCampaignID());
+        assertEquals(5000, toam.getSleepInterval());
+        assertEquals(5000, toam.getNextAdDuration());
+
+        assertTrue(toam.prepareNextAd());
+        assertEquals(6000, toam.getNextAdDuration());
+    }
+
+    @Test
+    public void rotationStopsOnFinalViewIndexOnceCyclesAreDone() {
+        install("first", 3);
+        toam.setRepeatCycle("0");
+        toam.setFinalViewIndex("1");
+        for (int i = 0; i < 2; i++) {
+            assertTrue(toam.prepareNextAd());
+            toam.showNextAd();
+        }
+        assertTrue(toam.prepareNextAd());
+        assertEquals(6000, toam.getNextAdDuration());  // The final view index, rather than the base one.
+        toam.showNextAd();
+        assertEquals(6000, toam.getSleepInterval());
+        assertFalse(toam.prepareNextAd());
+    }
+}
@@ -0,0 +1,101 @@
+package com.appyads.services;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the distributions kept by {@link AppyAdMetrics}, and of the percentiles estimated from their histograms.
+ */
+public class AppyAdMetricsTest {
+
+    /**
+     * This method records samples into a new distribution and takes a copy of it.
+     * @param samples - The samples.
+     * @return - The {@link AppyAdMetrics.Stat} object.
+     */
+    private static AppyAdMetrics.Stat stat(long... samples) {
+        AppyAdMetrics metrics = new AppyAdMetrics();
+        for (long sample : samples) metrics.record("test", sample);
+        return (metrics.getSnapshot().getStat("test"));
+    }
+
+    @Test
+    public void keepsCountSumMinAndMax() {
+        AppyAdMetrics.Stat stat = stat(5, 1, 9, 3, -4);
+        assertEquals(5, stat.count);
+        assertEquals(18, stat.sum);
+        assertEquals(0, stat.min);  // Negative samples count as 0.
+        assertEquals(9, stat.max);
+        assertEquals(3, stat.getMean());
+    }
+
+    @Test
+    public void unrecordedMetricHasNoStat() {
+        assertNull(new AppyAdMetrics().getSnapshot().getStat("test"));
+    }
+
+    @Test
+    public void percentilesOfOneToHundred() {
+        long[] samples = new long[100];
+        for (int i = 0; i < 100; i++) samples[i] = i + 1;
+        AppyAdMetrics.Stat stat = stat(samples);
+        assertEquals(1, stat.getPercentile(0));
+        assertEquals(63, stat.getPercentile(50));  // 50 is in the bucket of 32 to 63.
+        assertEquals(100, stat.getPercentile(99));  // The bucket of 64 to 127, capped at the maximum.
+        assertEquals(100, stat.getPercentile(100));
+    }
+
+    @Test
+    public void percentilesAreClamped() {
+        AppyAdMetrics.Stat stat = stat(2, 4, 8);
+        assertEquals(stat.getPercentile(0), stat.getPercentile(-10));
+        assertEquals(8, stat.getPercentile(250));
+    }
+
+    @Test
+    public void zeroAndHugeSamples() {
+        assertEquals(0, stat(0, 0, 0).getPercentile(99));
+        AppyAdMetrics.Stat stat = stat(0, Long.MAX_VALUE);
+        assertEquals(0, stat.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, stat.getPercentile(100));
+    }
+
+    @Test
+    public void estimatesAreWithinTheirBucket() {
+        Random random = new Random(42);
+        long[] samples = new long[5000];
+        for (int i = 0; i < samples.length; i++) samples[i] = (long) Math.exp(random.nextDouble() * 16);  // 1 to about 9 million
+        AppyAdMetrics.Stat stat = stat(samples);
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+
+        for (double p : new double[] {1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100}) {
+            long actual = sorted[(int) Math.ceil(sorted.length * p / 100.0) - 1];
+            long estimate = stat.getPercentile(p);
+            assertTrue("p" + p + " estimate " + estimate + " below " + actual, estimate >= actual);
+            assertTrue("p" + p + " estimate " + estimate + " above twice " + actual, estimate <= 2 * actual);
+            assertTrue("p" + p + " estimate " + estimate + " above maximum", estimate <= stat.max);
+        }
+    }
+
+    @Test
+    public void countersAndGauges() {
+        AppyAdMetrics metrics = new AppyAdMetrics();
+        metrics.count(AppyAdMetrics.QUERY_FAILURES);
+        metrics.count(AppyAdMetrics.QUERY_FAILURES);
+        metrics.setGauge("test.gauge", 7);
+        metrics.setGauge("test.gauge", 3);
+        AppyAdMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getStat(AppyAdMetrics.QUERY_FAILURES).count);
+        assertEquals(3, snapshot.getGauge("test.gauge"));
+
+        metrics.reset();
+        assertNull(metrics.getSnapshot().getStat(AppyAdMetrics.QUERY_FAILURES));
+    }
+}
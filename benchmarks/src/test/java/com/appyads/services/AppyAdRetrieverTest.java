@@ -0,0 +1,91 @@
+package com.appyads.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link AppyAdRetriever} steps, run against the Android stand-ins.  The stand-in handler delivers
+ * messages on the thread sending them, so a campaign is put in place as soon as the rotation is started.
+ */
+public class AppyAdRetrieverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AppyAdManager toam;
+
+    @Before
+    public void setUp() {
+        toam = AppyAdTestManagers.register(folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        AppyAdService.getInstance().unRegisterManager(toam, true);
+    }
+
+    @Test
+    public void publishedCampaignCountsBeforeItIsInPlace() {
+        assertFalse(toam.hasAdCampaign());
+        toam.publishCampaign(new AppyAdCampaign(AppyAdSampleCampaigns.ads(2), true, true, "acme", "first", null, null, null, null));
+        assertTrue(toam.hasAdCampaign());
+    }
+
+    @Test
+    public void firstFetchIntoEmptyManagerStartsRotation() throws Exception {
+        assertFalse(toam.hasAdCampaign());
+        AppyAdRetriever retriever = new AppyAdRetriever(toam);
+        assertTrue(retriever.begin());
+
+        retriever.readCampaign(new ByteArrayInputStream(AppyAdTestManagers.campaign(folder.getRoot(), "first", 3)), "\"v1\"", null);
+        retriever.finish(true, false, null, 0);
+
+        assertTrue(toam.hasAdCampaign());
+        assertEquals(0, toam.getErrorCounter());
+        assertFalse(toam.getBackoff().isOpen());
+        assertTrue(toam.adsAreOn());
+        assertEquals("first", toam.getCampaignID());  // Put in place by the rotation.
+    }
+
+    @Test
+    public void probeAnsweredNotModifiedResumesRotation() throws Exception {
+        AppyAdScheduler scheduler = AppyAdService.getInstance().getScheduler();
+        AppyAdRetriever retriever = new AppyAdRetriever(toam);
+        assertTrue(retriever.begin());
+        retriever.readCampaign(new ByteArrayInputStream(AppyAdTestManagers.campaign(folder.getRoot(), "first", 3)), "\"v1\"", null);
+        retriever.finish(true, false, null, 0);
+
+        toam.recordFailure(AppyAdService.getInstance().maxErrors(), 0);
+        assertTrue(toam.getBackoff().isOpen());
+        assertTrue(toam.adsAreOn());  // Left alone by the circuit.
+        assertFalse(toam.isRotating());
+        scheduler.takeDue(AppyAdScheduler.PREPARE, 3600000);
+
+        retriever = new AppyAdRetriever(toam);
+        assertTrue(retriever.begin());
+        assertEquals(AppyAdBackoff.HALF_OPEN, toam.getBackoff().getState());
+        retriever.finish(true, true, null, 0);
+
+        assertTrue(toam.getBackoff().isClosed());
+        assertTrue(toam.isRotating());
+        assertTrue(scheduler.takeDue(AppyAdScheduler.PREPARE, 3600000).contains(toam));
+    }
+
+    @Test
+    public void probeDoesNotOverrideApplication() {
+        toam.recordFailure(AppyAdService.getInstance().maxErrors(), 0);
+        toam.setAdProcessing(false);
+        assertFalse(new AppyAdRetriever(toam).begin());
+        assertTrue(toam.getBackoff().isOpen());
+        assertFalse(toam.adsAreOn());
+    }
+}
@@ -0,0 +1,77 @@
+package com.appyads.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link AppyAdScheduler#takeDue(int, long) takeDue}, which brings forward the tasks of one kind due
+ * within a window.  Every task is due far enough ahead that none becomes due while a test runs.
+ */
+public class AppyAdSchedulerTest {
+
+    private AppyAdScheduler scheduler;
+    private AppyAdManager first;
+    private AppyAdManager second;
+    private AppyAdManager third;
+
+    @Before
+    public void setUp() {
+        scheduler = new AppyAdScheduler(new AppyAdScheduler.Dispatcher() {
+            @Override
+            public void onDue(int kind, AppyAdManager toam) {
+            }
+        });
+        AppyAdJvmContext context = new AppyAdJvmContext(new File(System.getProperty("java.io.tmpdir")));
+        first = new AppyAdManager(context);
+        second = new AppyAdManager(context);
+        third = new AppyAdManager(context);
+    }
+
+    @Test
+    public void takesOnlyTasksOfTheKindWithinTheWindow() {
+        scheduler.schedule(AppyAdScheduler.REFRESH, first, 10000);
+        scheduler.schedule(AppyAdScheduler.REFRESH, second, 30000);
+        scheduler.schedule(AppyAdScheduler.REFRESH, third, 120000);
+        scheduler.schedule(AppyAdScheduler.ROTATE, first, 10000);
+
+        List<AppyAdManager> due = scheduler.takeDue(AppyAdScheduler.REFRESH, 60000);
+        assertEquals(new HashSet<AppyAdManager>(Arrays.asList(first, second)), new HashSet<AppyAdManager>(due));
+        assertEquals(2, due.size());
+
+        assertTrue(scheduler.takeDue(AppyAdScheduler.REFRESH, 60000).isEmpty());
+        assertEquals(Arrays.asList(third), scheduler.takeDue(AppyAdScheduler.REFRESH, 180000));
+        assertEquals(Arrays.asList(first), scheduler.takeDue(AppyAdScheduler.ROTATE, 60000));
+    }
+
+    @Test
+    public void emptyWindowLeavesFutureTasks() {
+        scheduler.schedule(AppyAdScheduler.REFRESH, first, 10000);
+        assertTrue(scheduler.takeDue(AppyAdScheduler.REFRESH, 0).isEmpty());
+        assertEquals(Arrays.asList(first), scheduler.takeDue(AppyAdScheduler.REFRESH, 20000));
+    }
+
+    @Test
+    public void rescheduledTaskIsTakenAtItsNewDeadline() {
+        scheduler.schedule(AppyAdScheduler.REFRESH, first, 10000);
+        scheduler.schedule(AppyAdScheduler.REFRESH, first, 100000);
+        assertTrue(scheduler.takeDue(AppyAdScheduler.REFRESH, 60000).isEmpty());
+        assertEquals(Arrays.asList(first), scheduler.takeDue(AppyAdScheduler.REFRESH, 120000));
+    }
+
+    @Test
+    public void cancelledTasksAreNotTaken() {
+        scheduler.schedule(AppyAdScheduler.REFRESH, first, 10000);
+        scheduler.schedule(AppyAdScheduler.REFRESH, second, 10000);
+        scheduler.cancel(AppyAdScheduler.REFRESH, first);
+        scheduler.cancelAll(second);
+        assertTrue(scheduler.takeDue(AppyAdScheduler.REFRESH, 60000).isEmpty());
+    }
+}
@@ -0,0 +1,47 @@
+package com.appyads.services;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class creates registered {@link AppyAdManager} view objects for the tests.  Each one gets a campaign size
+ * of its own, so that no campaign stored by an earlier test is loaded into it.  Scheduled tasks are dropped, so
+ * nothing goes to the network.  The campaign packages built for them refer to ad elements which are missing files,
+ * so loading them fails at once.
+ */
+public class AppyAdTestManagers {
+
+    private static final AtomicInteger nextWidth = new AtomicInteger(100);
+
+    /**
+     * This method creates and registers a view.
+     * @param dir - A File object representing the directory holding the files of the application.
+     * @return - The {@link AppyAdManager} object.
+     */
+    public static AppyAdManager register(File dir) {
+        AppyAdManager toam = new AppyAdManager(new AppyAdJvmContext(dir));
+        toam.onSizeChanged(nextWidth.getAndIncrement(), 50, 0, 0);  // Registers the view.
+        AppyAdService.getInstance().stopService();
+        return (toam);
+    }
+
+    /**
+     * This method builds a campaign package.
+     * @param dir - A File object representing a directory without ad elements.
+     * @param id - A String value representing the campaign ID.
+     * @param ads - An int value representing the number of ad elements.
+     * @return - A byte array containing the campaign package.
+     * @throws UnsupportedEncodingException - Never, as UTF-8 is always supported.
+     */
+    public static byte[] campaign(File dir, String id, int ads) throws UnsupportedEncodingException {
+        String missing = new File(dir, "missing").toURI().toString();
+        StringBuilder xml = new StringBuilder("<AppyAds>");
+        xml.append("<AppyAdsCampaign id=\"").append(id).append("\" refreshInterval=\"300000\"/>");
+        for (int i = 0; i < ads; i++) {
+            xml.append("<AppyAdsElement type=\"image\" id=\"ad-").append(i).append("\" src=\"").append(missing).append(i)
+                    .append(".png\" displayDuration=\"5000\"/>");
+        }
+        return (xml.append("</AppyAds>").toString().getBytes("UTF-8"));
+    }
+}
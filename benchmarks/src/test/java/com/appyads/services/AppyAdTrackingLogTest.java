@@ -0,0 +1,203 @@
+package com.appyads.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the cursor and the compaction of the {@link AppyAdTrackingLog}.
+ */
+public class AppyAdTrackingLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * This method builds an encoded event of about the given length.
+     * @param i - An int value used to tell the events apart.
+     * @param length - An int value representing the length of the padding.
+     * @return - A String containing the event.
+     */
+    private static String event(int i, int length) {
+        StringBuilder sb = new StringBuilder("ad_id=").append(i).append("&pad=");
+        while (sb.length() < length) sb.append('x');
+        return (sb.toString());
+    }
+
+    /**
+     * This method reads the saved cursor.
+     * @return - A String containing the cursor file.
+     */
+    private String cursorFile() throws Exception {
+        InputStream in = new FileInputStream(new File(folder.getRoot(), "tracking.cursor"));
+        try {
+            return (new String(AppyAdStore.readFully(in), "UTF-8"));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * This method writes a file into the log directory, as a killed application might have left it.
+     * @param name - A String containing the file name.
+     * @param contents - A String containing the file contents.
+     */
+    private void writeFile(String name, String contents) throws Exception {
+        OutputStream out = new FileOutputStream(new File(folder.getRoot(), name));
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void pendingEventsStayUntilCommitted() {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        log.append("a=1");
+        log.append("b=2");
+        log.append("c=3");
+        assertEquals(Arrays.asList("a=1", "b=2"), log.readPending(2));
+        assertEquals(Arrays.asList("a=1", "b=2"), log.readPending(2));
+        log.commitPending();
+        assertEquals(Arrays.asList("c=3"), log.readPending(10));
+    }
+
+    @Test
+    public void cursorSurvivesReopening() throws Exception {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        log.append("a=1");
+        log.append("b=2");
+        log.append("c=3");
+        log.readPending(2);
+        log.commitPending();
+        assertEquals("8", cursorFile());  // "a=1\nb=2\n"
+
+        AppyAdTrackingLog reopened = new AppyAdTrackingLog(folder.getRoot());
+        assertEquals(Arrays.asList("c=3"), reopened.readPending(10));
+        reopened.append("d=4");
+        assertEquals(Arrays.asList("c=3", "d=4"), reopened.readPending(10));
+    }
+
+    @Test
+    public void fullyAcknowledgedLogIsDeleted() {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        log.append("a=1");
+        log.append("b=2");
+        log.readPending(10);
+        log.commitPending();
+        assertFalse(new File(folder.getRoot(), "tracking.log").exists());
+        assertFalse(new File(folder.getRoot(), "tracking.cursor").exists());
+        assertTrue(log.readPending(10).isEmpty());
+
+        log.append("c=3");
+        assertEquals(Arrays.asList("c=3"), log.readPending(10));
+    }
+
+    @Test
+    public void acknowledgedPartIsCompactedAway() throws Exception {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        for (int i = 0; i < 1000; i++) log.append(event(i, 99));  // 100 bytes a line
+        File file = new File(folder.getRoot(), "tracking.log");
+        assertEquals(100000, file.length());
+
+        assertEquals(700, log.readPending(700).size());
+        log.commitPending();
+        assertEquals(30000, file.length());
+        assertEquals("0", cursorFile());
+
+        List<String> rest = log.readPending(1000);
+        assertEquals(300, rest.size());
+        assertEquals(event(700, 99), rest.get(0));
+        assertEquals(event(999, 99), rest.get(299));
+    }
+
+    @Test
+    public void smallAcknowledgementOnlyMovesCursor() throws Exception {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        for (int i = 0; i < 10; i++) log.append(event(i, 99));
+        log.readPending(4);
+        log.commitPending();
+        assertEquals(1000, new File(folder.getRoot(), "tracking.log").length());
+        assertEquals("400", cursorFile());
+    }
+
+    @Test
+    public void oldestEventsAreDroppedWhenFull() {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        int count = (AppyAdTrackingLog.MAX_LOG_BYTES / 1000) + 10;
+        for (int i = 0; i < count; i++) log.append(event(i, 999));  // 1000 bytes a line
+        assertTrue(new File(folder.getRoot(), "tracking.log").length() <= AppyAdTrackingLog.MAX_LOG_BYTES);
+
+        List<String> pending = log.readPending(count);
+        assertTrue(pending.size() < count);
+        assertEquals(event(count - pending.size(), 999), pending.get(0));
+        assertEquals(event(count - 1, 999), pending.get(pending.size() - 1));
+    }
+
+    @Test
+    public void cursorIsWrittenWithoutLeavingTemporaryFile() throws Exception {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        log.append("a=1");
+        log.append("b=2");
+        log.readPending(1);
+        log.commitPending();
+        assertEquals("4", cursorFile());
+        assertFalse(new File(folder.getRoot(), "tracking.cursor.tmp").exists());
+    }
+
+    @Test
+    public void cursorPastEndOfLogStartsFromZero() throws Exception {
+        // Killed after deleting the log but before the cursor, then new events were logged.
+        writeFile("tracking.cursor", "5000");
+        writeFile("tracking.log", "c=3\nd=4\n");
+        assertEquals(Arrays.asList("c=3", "d=4"), new AppyAdTrackingLog(folder.getRoot()).readPending(10));
+
+        // The same, when the first new event is logged before anything is read.
+        writeFile("tracking.cursor", "5000");
+        new File(folder.getRoot(), "tracking.log").delete();
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        log.append("e=5");
+        log.append("f=6");
+        assertEquals(Arrays.asList("e=5", "f=6"), log.readPending(10));
+    }
+
+    @Test
+    public void unreadableCursorReplaysRatherThanSkips() throws Exception {
+        writeFile("tracking.cursor", "");
+        writeFile("tracking.log", "a=1\nb=2\n");
+        assertEquals(Arrays.asList("a=1", "b=2"), new AppyAdTrackingLog(folder.getRoot()).readPending(10));
+    }
+
+    @Test
+    public void interruptedCompactionIsRecovered() throws Exception {
+        // Killed after resetting the cursor and deleting the old log, but before renaming the rewritten one.
+        writeFile("tracking.cursor", "0");
+        writeFile("tracking.log.tmp", "c=3\nd=4\n");
+        AppyAdTrackingLog log = new AppyAdTrackingLog(folder.getRoot());
+        assertEquals(Arrays.asList("c=3", "d=4"), log.readPending(10));
+        assertTrue(new File(folder.getRoot(), "tracking.log").isFile());
+    }
+
+    @Test
+    public void memoryLogWithoutDirectory() {
+        AppyAdTrackingLog log = new AppyAdTrackingLog(null);
+        log.append("a=1");
+        log.append("b=2");
+        assertEquals(Arrays.asList("a=1"), log.readPending(1));
+        log.commitPending();
+        assertEquals(Arrays.asList("b=2"), log.readPending(5));
+    }
+}